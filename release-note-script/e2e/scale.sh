@@ -0,0 +1,130 @@
+#!/usr/bin/env bash
+#
+# Runs ReleaseNoteCreation against FakeGitHub.java, a local stand-in for the GitHub API, with
+# projects of 10, 1k and 10k PRs, and reports the throughput and the peak memory of each run. It
+# doesn't need GitHub or a token. Each run is checked to list all the release notes of the
+# generated PRs.
+#
+# Usage: ./scale.sh [options of ReleaseNoteCreation]
+#
+# The following environment variables change the runs:
+#   SIZES        The numbers of PRs. (default: "10 1000 10000")
+#   CLIENTS      The clients to run with. "gh" runs the fake gh in stub/bin. (default: "http gh")
+#   LATENCY      The latency of each response in milliseconds. (default: 0)
+#   BODY_SIZE    The size of the PR bodies, min[-max] in bytes, up to the 64 KiB fixture.
+#                (default: 1024-65536)
+#   STUB_OPTS    Other options of FakeGitHub.java, e.g., "--na-ratio=0.5 --same-as-ratio=0.2".
+#   JAVA_OPTS    The JVM options of ReleaseNoteCreation, e.g., -Xmx512m.
+#
+# Example:
+#   $ ./scale.sh --parallelism=4
+#   client  prs    seconds  prs/s   peak RSS (MiB)
+#   http    10     1.8      5.5     68
+#   gh      10     0.9      10.6    44
+#   ...
+
+SIZES=${SIZES:-10 1000 10000}
+CLIENTS=${CLIENTS:-http gh}
+LATENCY=${LATENCY:-0}
+BODY_SIZE=${BODY_SIZE:-1024-65536}
+E2E_ROOT=$(realpath "$(dirname "$0")")
+SCRIPT_DIR=$E2E_ROOT/../src/main/java
+STUB_DIR=$E2E_ROOT/stub
+FIXTURE=$E2E_ROOT/fixture/large-pr-body/prbody-64kib
+WORK_DIR=$(mktemp -d "/tmp/rn-scale-XXXXXX")
+STUB_PID=
+trap '[ -n "$STUB_PID" ] && kill $STUB_PID 2> /dev/null; rm -rf "$WORK_DIR"' EXIT
+
+# The scripts are compiled once, so that the compilation isn't measured
+mkdir -p "$WORK_DIR/classes"
+javac -d "$WORK_DIR/classes" "$SCRIPT_DIR"/*.java || exit 1
+javac -d "$WORK_DIR/stub" "$STUB_DIR/FakeGitHub.java" || exit 1
+
+function startStub() {
+    local prs=$1
+
+    rm -f "$WORK_DIR/port"
+    # shellcheck disable=SC2086
+    java -cp "$WORK_DIR/stub" FakeGitHub --prs="$prs" --latency="$LATENCY" --body-size="$BODY_SIZE" \
+        --body-fixture="$FIXTURE" --port-file="$WORK_DIR/port" --summary-file="$WORK_DIR/summary.json" \
+        $STUB_OPTS 2> "$WORK_DIR/stub.log" &
+    STUB_PID=$!
+    for ((i = 0; i < 100; i++)); do
+        [ -f "$WORK_DIR/port" ] && return 0
+        kill -0 $STUB_PID 2> /dev/null || break
+        sleep 0.1
+    done
+    echo "FakeGitHub didn't start" >&2
+    cat "$WORK_DIR/stub.log" >&2
+    exit 1
+}
+
+function stopStub() {
+    kill $STUB_PID 2> /dev/null
+    wait $STUB_PID 2> /dev/null
+    STUB_PID=
+}
+
+# Runs the command, and prints its peak resident set size in KiB to $WORK_DIR/rss. The high water
+# mark of the process is sampled until it exits, since it's gone after that.
+function runWithPeakRss() {
+    "$@" &
+    local pid=$!
+    local rss=0
+    while kill -0 $pid 2> /dev/null; do
+        local hwm
+        hwm=$(awk '/^VmHWM:/ {print $2}' "/proc/$pid/status" 2> /dev/null)
+        [ -n "$hwm" ] && rss=$hwm
+        sleep 0.05
+    done
+    wait $pid
+    local ret=$?
+    echo $rss > "$WORK_DIR/rss"
+    return $ret
+}
+
+function run() {
+    local client=$1
+    local prs=$2
+    shift 2
+    local port
+    port=$(cat "$WORK_DIR/port")
+
+    local start
+    start=$(date +%s%N)
+    # shellcheck disable=SC2086
+    GITHUB_API_URL=http://127.0.0.1:$port GITHUB_GRAPHQL_URL=http://127.0.0.1:$port/graphql \
+        GH_TOKEN=dummy FAKE_GITHUB_URL=http://127.0.0.1:$port PATH=$STUB_DIR/bin:$PATH \
+        runWithPeakRss java $JAVA_OPTS -cp "$WORK_DIR/classes" ReleaseNoteCreation \
+        --client="$client" --no-cache "$@" scalar-labs ScalarDB 4.0.0 scalardb \
+        > "$WORK_DIR/rnbody.md" 2> "$WORK_DIR/run.log"
+    local ret=$?
+    local elapsed=$(($(date +%s%N) - start))
+
+    if [ $ret != 0 ]; then
+        echo -e "\033[31m[NG]\033[0m $client $prs: exited with $ret. See the log below." >&2
+        tail -20 "$WORK_DIR/run.log" >&2
+        return 1
+    fi
+    local expected
+    expected=$(jq .entries "$WORK_DIR/summary.json")
+    local actual
+    actual=$(grep -c '^- ' "$WORK_DIR/rnbody.md")
+    if [ "$actual" != "$expected" ]; then
+        echo -e "\033[31m[NG]\033[0m $client $prs: $actual release notes instead of $expected." >&2
+        return 1
+    fi
+    awk -v client="$client" -v prs="$prs" -v nanos="$elapsed" -v rss="$(cat "$WORK_DIR/rss")" \
+        'BEGIN { printf "%-7s %-6d %-8.1f %-7.1f %d\n", client, prs, nanos / 1e9, prs / (nanos / 1e9), rss / 1024 }'
+}
+
+RET=0
+echo "client  prs    seconds  prs/s   peak RSS (MiB)"
+for prs in $SIZES; do
+    startStub "$prs"
+    for client in $CLIENTS; do
+        run "$client" "$prs" "$@" || RET=1
+    done
+    stopStub
+done
+exit $RET
@@ -0,0 +1,46 @@
+#!/usr/bin/env bash
+#
+# Measures the startup of the scripts run as single-file source programs, from the prebuilt jar,
+# and with the launcher which uses the CDS archive. The runs are offline: `create` replays the
+# responses of the training run, and `merge` merges the release notes in src/test/resources.
+#
+# Run `./gradlew cdsArchive` before this.
+#
+# Usage: ./startup.sh [runs]
+
+RUNS=${1:-10}
+ROOT=$(realpath "$(dirname "$0")/..")
+SCRIPT_DIR=$ROOT/src/main/java
+DIST_DIR=$ROOT/build/release-notes
+WORK_DIR=$(mktemp -d "/tmp/rn-startup-XXXXXX")
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+if [ ! -x "$DIST_DIR/bin/release-notes" ]; then
+    echo "$DIST_DIR doesn't exist. Run ./gradlew cdsArchive first." >&2
+    exit 1
+fi
+
+CREATE_ARGS=(--client=http "--replay=$ROOT/src/cds/training.jsonl" --replay-latency=0 --batch-size=10
+    scalar-labs ScalarDB 4.0.0 scalardb)
+
+# Prints the average wall time of the command in milliseconds
+function measure() {
+    local name=$1
+    shift
+    local start=$(date +%s%N)
+    for ((i = 0; i < RUNS; i++)); do
+        "$@" > /dev/null 2>&1 || { echo "$name failed" >&2; return 1; }
+    done
+    echo "$name: $((($(date +%s%N) - start) / RUNS / 1000000)) ms"
+}
+
+cd "$ROOT/src/test/resources"
+# Create the CDS archive for the JDK in use if it isn't yet
+"$DIST_DIR/bin/release-notes" --help 2> /dev/null
+
+measure "create (java ReleaseNoteCreation.java)" java "$SCRIPT_DIR/ReleaseNoteCreation.java" "${CREATE_ARGS[@]}"
+measure "create (java -jar)" java -jar "$DIST_DIR/lib/release-notes.jar" create "${CREATE_ARGS[@]}"
+measure "create (launcher with CDS)" "$DIST_DIR/bin/release-notes" create "${CREATE_ARGS[@]}"
+measure "merge (java MergeReleaseNotes.java)" java "$SCRIPT_DIR/MergeReleaseNotes.java"
+measure "merge (java -jar)" java -jar "$DIST_DIR/lib/release-notes.jar" merge
+measure "merge (launcher with CDS)" "$DIST_DIR/bin/release-notes" merge
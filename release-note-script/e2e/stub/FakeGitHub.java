@@ -0,0 +1,483 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for the GitHub API, which serves a version project with generated PRs to the
+ * release note script. It answers the GraphQL queries and the REST requests of the script (the
+ * project lookup, the project items, the batched PR queries and the PR by number), so the script
+ * can be run with {@code --client=http} against it, or with the fake {@code gh} in {@code bin}
+ * which sends the requests of {@code gh} to it.
+ *
+ * <p>The PRs are generated from the seed, so the same options always serve the same PRs. Only the
+ * state, labels and section kind of each PR are kept, and the body is generated on each request,
+ * so a project of 10k PRs with 64 KiB bodies doesn't need gigabytes of memory.
+ *
+ * <p>Usage: java FakeGitHub.java [options]
+ *
+ * <pre>
+ *   --port=n                 The port to listen on. 0 uses a free port. (default: 0)
+ *   --port-file=file         Write the port to the file once the server is started.
+ *   --summary-file=file      Write the numbers of the generated PRs as JSON to the file.
+ *   --owner=owner            (default: scalar-labs)
+ *   --repository=repository  (default: scalardb)
+ *   --project-title=title    (default: ScalarDB 4.0.0)
+ *   --prs=n                  The number of PRs in the project. (default: 10)
+ *   --categories=weights     The weights of the category labels, e.g.,
+ *                            enhancement:4,improvement:3,bugfix:2,backward-incompatible:1.
+ *                            A label which isn't a category is listed in miscellaneous.
+ *   --na-ratio=r             The ratio of the PRs whose release note is N/A. (default: 0.2)
+ *   --same-as-ratio=r        The ratio of the PRs whose release note is "Same as #n". (default: 0.1)
+ *   --no-section-ratio=r     The ratio of the PRs without the release note section. (default: 0)
+ *   --unmerged-ratio=r       The ratio of the open or closed PRs. (default: 0.1)
+ *   --body-size=min[-max]    The size of the PR bodies in bytes. (default: 1024)
+ *   --body-fixture=file      The file from which the PR bodies are cut. (default: generated text)
+ *   --latency=ms             The latency added to each response. (default: 0)
+ *   --seed=n                 (default: 0)
+ * </pre>
+ */
+public class FakeGitHub {
+  private static final String UPDATED_AT = "2023-10-01T00:00:00Z";
+  private static final String MERGED_AT = "2023-09-30T00:00:00Z";
+  private static final int MAX_BODY_SIZE = 64 * 1024;
+  private static final Pattern PROJECT_NUMBER = Pattern.compile("projectV2\\(number: (\\d+)\\)");
+  private static final Pattern PAGE_SIZE = Pattern.compile("items\\(first: (\\d+)");
+  private static final Pattern ALIAS = Pattern.compile("pr(\\d+): pullRequest\\(number: (\\d+)\\)");
+  private static final Pattern CURSOR = Pattern.compile("\"(?:cursor|endCursor)\":\"(\\d+)\"");
+  private static final Pattern PULL_REQUEST_PATH =
+      Pattern.compile("/repos/([^/]+)/([^/]+)/pulls/(\\d+)");
+
+  private final Options options;
+  private final List<PullRequest> pullRequests = new ArrayList<>();
+  private final String filler;
+
+  public static void main(String... args) throws Exception {
+    Options options = Options.parse(args);
+    FakeGitHub fakeGitHub = new FakeGitHub(options);
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", options.port), 0);
+    server.createContext("/", fakeGitHub::handle);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+
+    int port = server.getAddress().getPort();
+    if (options.summaryFile != null) {
+      Files.writeString(Paths.get(options.summaryFile), fakeGitHub.summary());
+    }
+    if (options.portFile != null) {
+      // The port is written last since the caller waits for it
+      Path tmp = Paths.get(options.portFile + ".tmp");
+      Files.writeString(tmp, String.valueOf(port));
+      Files.move(tmp, Paths.get(options.portFile));
+    }
+    System.err.printf(
+        "INFO: serving %d PRs of %s/%s in \"%s\" on http://127.0.0.1:%d%n",
+        options.prs, options.owner, options.repository, options.projectTitle, port);
+    System.err.printf(
+        "INFO:   export GITHUB_API_URL=http://127.0.0.1:%d GH_TOKEN=dummy"
+            + " FAKE_GITHUB_URL=http://127.0.0.1:%d%n",
+        port, port);
+  }
+
+  FakeGitHub(Options options) throws IOException {
+    this.options = options;
+    this.filler =
+        options.bodyFixture == null
+            ? generatedFiller()
+            : Files.readString(Paths.get(options.bodyFixture));
+    generatePullRequests();
+  }
+
+  /** Generates the PRs. The topic of a "Same as" PR is an earlier merged PR with a text. */
+  private void generatePullRequests() {
+    Random random = new Random(options.seed);
+    List<Integer> topics = new ArrayList<>();
+    for (int number = 1; number <= options.prs; number++) {
+      PullRequest pr = new PullRequest(number);
+      pr.merged = random.nextDouble() >= options.unmergedRatio;
+      pr.open = !pr.merged && random.nextBoolean();
+      pr.label = pickLabel(random);
+      pr.bodySize =
+          options.minBodySize
+              + (options.maxBodySize > options.minBodySize
+                  ? random.nextInt(options.maxBodySize - options.minBodySize + 1)
+                  : 0);
+      double kind = random.nextDouble();
+      if (kind < options.naRatio) {
+        pr.kind = Kind.NOT_APPLICABLE;
+      } else if (kind < options.naRatio + options.sameAsRatio && !topics.isEmpty()) {
+        pr.kind = Kind.SAME_AS;
+        pr.topic = topics.get(random.nextInt(topics.size()));
+      } else if (kind < options.naRatio + options.sameAsRatio + options.noSectionRatio) {
+        pr.kind = Kind.NO_SECTION;
+      } else {
+        pr.kind = Kind.TEXT;
+      }
+      if (pr.merged && pr.kind == Kind.TEXT) topics.add(number);
+      pullRequests.add(pr);
+    }
+  }
+
+  private String pickLabel(Random random) {
+    int total = options.categories.values().stream().mapToInt(Integer::intValue).sum();
+    int value = random.nextInt(Math.max(total, 1));
+    for (Map.Entry<String, Integer> entry : options.categories.entrySet()) {
+      value -= entry.getValue();
+      if (value < 0) return entry.getKey();
+    }
+    return "miscellaneous";
+  }
+
+  private static String generatedFiller() {
+    StringBuilder builder = new StringBuilder(MAX_BODY_SIZE);
+    for (int line = 0; builder.length() < MAX_BODY_SIZE; line++) {
+      builder.append("- Line ").append(line).append(" of the description of the change.\n");
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Returns the numbers of the generated PRs. {@code entries} is the number of the lines in the
+   * release note, since a "Same as" PR is merged into the line of its topic.
+   */
+  String summary() {
+    int merged = 0;
+    int entries = 0;
+    int notApplicable = 0;
+    int sameAs = 0;
+    for (PullRequest pr : pullRequests) {
+      if (!pr.merged) continue;
+      merged++;
+      if (pr.kind == Kind.TEXT || pr.kind == Kind.NO_SECTION) entries++;
+      if (pr.kind == Kind.NOT_APPLICABLE) notApplicable++;
+      if (pr.kind == Kind.SAME_AS) sameAs++;
+    }
+    return String.format(
+        "{\"prs\":%d,\"merged\":%d,\"entries\":%d,\"notApplicable\":%d,\"sameAs\":%d}%n",
+        pullRequests.size(), merged, entries, notApplicable, sameAs);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+      if (options.latencyMillis > 0) Thread.sleep(options.latencyMillis);
+
+      String path = exchange.getRequestURI().getPath();
+      Matcher pullRequestPath = PULL_REQUEST_PATH.matcher(path);
+      if ("POST".equals(exchange.getRequestMethod()) && path.endsWith("/graphql")) {
+        respond(exchange, 200, graphQl(request));
+      } else if ("GET".equals(exchange.getRequestMethod()) && pullRequestPath.matches()) {
+        PullRequest pr = find(pullRequestPath.group(2), pullRequestPath.group(3));
+        if (pr == null) {
+          respond(exchange, 404, "{\"message\":\"Not Found\"}");
+        } else {
+          respond(exchange, 200, restPullRequest(pr));
+        }
+      } else {
+        respond(exchange, 404, "{\"message\":\"Not Found\"}");
+      }
+    } catch (Exception e) {
+      respond(exchange, 500, "{\"message\":" + quote(String.valueOf(e)) + "}");
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Answers the GraphQL query of the script. The query isn't parsed, but is told by its fields, and
+   * all the fields of the script are returned since the extra ones are ignored.
+   */
+  private String graphQl(String request) {
+    String ownerField = request.contains("viewer {") ? "viewer" : "repositoryOwner";
+    if (request.contains("projectsV2(")) {
+      return String.format(
+          "{\"data\":{\"%s\":{\"projectsV2\":{\"nodes\":[{\"number\":%d,\"title\":%s}],"
+              + "\"pageInfo\":{\"hasNextPage\":false,\"endCursor\":null}}}}}",
+          ownerField, options.projectNumber, quote(options.projectTitle));
+    }
+
+    Matcher projectNumber = PROJECT_NUMBER.matcher(request);
+    if (projectNumber.find()) {
+      if (Integer.parseInt(projectNumber.group(1)) != options.projectNumber) {
+        return "{\"data\":{\"" + ownerField + "\":{\"projectV2\":null}}}";
+      }
+      Matcher pageSize = PAGE_SIZE.matcher(request);
+      int first = pageSize.find() ? Integer.parseInt(pageSize.group(1)) : 100;
+      Matcher cursor = CURSOR.matcher(request);
+      int from = cursor.find() ? Integer.parseInt(cursor.group(1)) : 0;
+      int to = Math.min(from + first, pullRequests.size());
+      // The same as GitHub, the body and labels are returned only if they are queried
+      boolean withBody = request.contains(" body ");
+
+      StringBuilder builder = new StringBuilder();
+      builder.append("{\"data\":{\"").append(ownerField).append("\":{\"projectV2\":{\"items\":{");
+      builder.append("\"nodes\":[");
+      for (int i = from; i < to; i++) {
+        if (i > from) builder.append(',');
+        builder.append("{\"content\":{\"__typename\":\"PullRequest\",");
+        builder.append("\"repository\":{\"name\":").append(quote(options.repository)).append("},");
+        builder.append(graphQlPullRequestFields(pullRequests.get(i), withBody)).append("}}");
+      }
+      builder.append("],\"pageInfo\":{\"hasNextPage\":").append(to < pullRequests.size());
+      builder.append(",\"endCursor\":\"").append(to).append("\"}}}}}}");
+      return builder.toString();
+    }
+
+    if (request.contains("repository(owner: $owner")) {
+      boolean repository = request.contains("\"name\":" + quote(options.repository));
+      boolean withBody = request.contains(" body ");
+      StringBuilder builder = new StringBuilder("{\"data\":{\"repository\":{");
+      Matcher alias = ALIAS.matcher(request);
+      String separator = "";
+      while (alias.find()) {
+        PullRequest pr = repository ? find(options.repository, alias.group(2)) : null;
+        builder.append(separator).append("\"pr").append(alias.group(1)).append("\":");
+        if (pr == null) {
+          builder.append("null");
+        } else if (withBody) {
+          builder.append('{').append(graphQlPullRequestFields(pr, true)).append('}');
+        } else {
+          builder.append(
+              String.format("{\"number\":%d,\"updatedAt\":\"%s\"}", pr.number, UPDATED_AT));
+        }
+        separator = ",";
+      }
+      builder.append("}}}");
+      return builder.toString();
+    }
+
+    return "{\"errors\":[{\"message\":\"Unsupported query\"}]}";
+  }
+
+  private String graphQlPullRequestFields(PullRequest pr, boolean withBody) {
+    String fields =
+        String.format(
+            "\"number\":%d,\"state\":\"%s\",\"updatedAt\":\"%s\"",
+            pr.number, pr.merged ? "MERGED" : pr.open ? "OPEN" : "CLOSED", UPDATED_AT);
+    if (!withBody) return fields;
+    return fields
+        + String.format(
+            ",\"body\":%s,\"labels\":{\"nodes\":[{\"name\":%s}]}",
+            quote(body(pr)), quote(pr.label));
+  }
+
+  private String restPullRequest(PullRequest pr) {
+    return String.format(
+        "{\"number\":%d,\"state\":\"%s\",\"merged_at\":%s,\"updated_at\":\"%s\",\"body\":%s,"
+            + "\"labels\":[{\"name\":%s}]}",
+        pr.number,
+        pr.open ? "open" : "closed",
+        pr.merged ? "\"" + MERGED_AT + "\"" : "null",
+        UPDATED_AT,
+        quote(body(pr)),
+        quote(pr.label));
+  }
+
+  private PullRequest find(String repository, String number) {
+    if (!options.repository.equals(repository)) return null;
+    int index = Integer.parseInt(number) - 1;
+    return index >= 0 && index < pullRequests.size() ? pullRequests.get(index) : null;
+  }
+
+  /**
+   * Generates the body of the PR. The description is cut from the filler so that the body has the
+   * size of the PR, and the release note section is at the end, as in the PR template.
+   */
+  private String body(PullRequest pr) {
+    String section;
+    switch (pr.kind) {
+      case NOT_APPLICABLE:
+        section = "## Release notes\nN/A\n";
+        break;
+      case SAME_AS:
+        section = "## Release notes\nSame as #" + pr.topic + "\n";
+        break;
+      case NO_SECTION:
+        section = "";
+        break;
+      default:
+        section = "## Release notes\nRelease note of #" + pr.number + ".\n";
+        break;
+    }
+    String header = "## Description\n";
+    int fillerSize = pr.bodySize - header.length() - section.length() - 1;
+    StringBuilder builder = new StringBuilder(Math.max(pr.bodySize, 0) + 1).append(header);
+    while (fillerSize > 0) {
+      int size = Math.min(fillerSize, filler.length());
+      builder.append(filler, 0, size);
+      fillerSize -= size;
+    }
+    return builder.append('\n').append(section).toString();
+  }
+
+  private void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(bytes);
+    }
+  }
+
+  private static String quote(String value) {
+    StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          builder.append("\\\"");
+          break;
+        case '\\':
+          builder.append("\\\\");
+          break;
+        case '\n':
+          builder.append("\\n");
+          break;
+        case '\r':
+          builder.append("\\r");
+          break;
+        case '\t':
+          builder.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            builder.append(String.format("\\u%04x", (int) c));
+          } else {
+            builder.append(c);
+          }
+      }
+    }
+    return builder.append('"').toString();
+  }
+
+  private enum Kind {
+    TEXT,
+    NOT_APPLICABLE,
+    SAME_AS,
+    NO_SECTION
+  }
+
+  private static class PullRequest {
+    final int number;
+    boolean merged;
+    boolean open;
+    String label;
+    Kind kind;
+    int topic;
+    int bodySize;
+
+    PullRequest(int number) {
+      this.number = number;
+    }
+  }
+
+  static class Options {
+    int port;
+    String portFile;
+    String summaryFile;
+    String owner = "scalar-labs";
+    String repository = "scalardb";
+    String projectTitle = "ScalarDB 4.0.0";
+    int projectNumber = 1;
+    int prs = 10;
+    Map<String, Integer> categories = new LinkedHashMap<>();
+    double naRatio = 0.2;
+    double sameAsRatio = 0.1;
+    double noSectionRatio;
+    double unmergedRatio = 0.1;
+    int minBodySize = 1024;
+    int maxBodySize = 1024;
+    String bodyFixture;
+    long latencyMillis;
+    long seed;
+
+    static Options parse(String... args) {
+      Options options = new Options();
+      String categories = "enhancement:4,improvement:3,bugfix:2,backward-incompatible:1";
+      for (String arg : args) {
+        if (!arg.startsWith("--") || !arg.contains("=")) {
+          throw new IllegalArgumentException("Unknown argument: " + arg);
+        }
+        String name = arg.substring(2, arg.indexOf('='));
+        String value = arg.substring(arg.indexOf('=') + 1);
+        switch (name) {
+          case "port":
+            options.port = Integer.parseInt(value);
+            break;
+          case "port-file":
+            options.portFile = value;
+            break;
+          case "summary-file":
+            options.summaryFile = value;
+            break;
+          case "owner":
+            options.owner = value;
+            break;
+          case "repository":
+            options.repository = value;
+            break;
+          case "project-title":
+            options.projectTitle = value;
+            break;
+          case "prs":
+            options.prs = Integer.parseInt(value);
+            break;
+          case "categories":
+            categories = value;
+            break;
+          case "na-ratio":
+            options.naRatio = Double.parseDouble(value);
+            break;
+          case "same-as-ratio":
+            options.sameAsRatio = Double.parseDouble(value);
+            break;
+          case "no-section-ratio":
+            options.noSectionRatio = Double.parseDouble(value);
+            break;
+          case "unmerged-ratio":
+            options.unmergedRatio = Double.parseDouble(value);
+            break;
+          case "body-size":
+            String[] sizes = value.split("-", 2);
+            options.minBodySize = Integer.parseInt(sizes[0]);
+            options.maxBodySize = Integer.parseInt(sizes[sizes.length - 1]);
+            break;
+          case "body-fixture":
+            options.bodyFixture = value;
+            break;
+          case "latency":
+            options.latencyMillis = Long.parseLong(value);
+            break;
+          case "seed":
+            options.seed = Long.parseLong(value);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option: " + arg);
+        }
+      }
+      for (String category : categories.split(",")) {
+        String[] weight = category.split(":", 2);
+        options.categories.put(weight[0], weight.length == 2 ? Integer.parseInt(weight[1]) : 1);
+      }
+      if (options.minBodySize > options.maxBodySize || options.maxBodySize > MAX_BODY_SIZE) {
+        throw new IllegalArgumentException(
+            "--body-size must be min[-max] with max up to " + MAX_BODY_SIZE);
+      }
+      return options;
+    }
+  }
+}
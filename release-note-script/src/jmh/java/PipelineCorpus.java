@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A synthetic corpus of PRs for the pipeline benchmarks. This is in the default package to call the
+ * package-private members of the scripts, and the benchmarks call this through method handles.
+ *
+ * <p>The PRs are generated with a fixed seed, so the corpus is the same between runs and commits.
+ * About 5% of them are not merged, 5% are N/A, and 20% are the same as an earlier PR, some of which
+ * form chains.
+ */
+@SuppressWarnings("DefaultPackage")
+public final class PipelineCorpus {
+
+  private static final String[] LABELS = {
+    "backward-incompatible", "enhancement", "improvement", "bugfix", "miscellaneous", "dependencies"
+  };
+  private static final String UPDATED_AT = "2023-10-01T00:00:00Z";
+
+  private final List<String> prNumbers = new ArrayList<>();
+  private final InMemoryGitHubContext ghContext;
+  private final List<ReleaseNoteCreation.ReleaseNoteText> releaseNoteTexts = new ArrayList<>();
+  private final Path mergeInputDirectory;
+
+  public PipelineCorpus(int prCount) throws Exception {
+    Random random = new Random(prCount);
+    Map<String, ReleaseNoteCreation.PullRequest> pullRequests = new HashMap<>();
+    for (int i = 1; i <= prCount; i++) {
+      String prNumber = String.valueOf(i);
+      prNumbers.add(prNumber);
+      int kind = random.nextInt(100);
+      String state = kind < 5 ? "CLOSED" : "MERGED";
+      String releaseNote;
+      if (kind < 10) {
+        releaseNote = "N/A";
+      } else if (kind < 30 && i > 1) {
+        releaseNote = "Same as #" + (i - 1 - random.nextInt(Math.min(i - 1, 50)));
+      } else {
+        releaseNote = "Fixed the issue " + i + " of the component " + random.nextInt(100) + ".";
+      }
+      List<String> labels = new ArrayList<>(List.of(LABELS[random.nextInt(LABELS.length)]));
+      pullRequests.put(
+          prNumber,
+          new ReleaseNoteCreation.PullRequest(
+              prNumber, state, UPDATED_AT, labels, createBody(i, releaseNote)));
+    }
+    ghContext = new InMemoryGitHubContext(pullRequests);
+
+    ReleaseNoteCreation extracted = new ReleaseNoteCreation(ghContext);
+    for (String prNumber : prNumbers) {
+      ReleaseNoteCreation.ReleaseNoteText releaseNoteText =
+          extracted.fetchReleaseNoteText(prNumber);
+      if (releaseNoteText != null) releaseNoteTexts.add(releaseNoteText);
+    }
+
+    mergeInputDirectory = Files.createTempDirectory("merge-release-notes");
+    String[] repositories = {"scalardb", "cluster", "graphql", "sql"};
+    for (int r = 0; r < repositories.length; r++) {
+      StringBuilder sb = new StringBuilder("## Summary\n\n");
+      for (MergeReleaseNotes.Category category : MergeReleaseNotes.Category.values()) {
+        sb.append("## ").append(category.getDisplayName()).append("\n");
+        for (int i = r; i < prCount / 5; i += repositories.length) {
+          sb.append("- A release note text of PR ").append(i).append(" (#").append(i).append(")\n");
+        }
+        sb.append("\n");
+      }
+      Files.writeString(
+          mergeInputDirectory.resolve(repositories[r] + ".md"),
+          sb.toString(),
+          StandardCharsets.UTF_8);
+    }
+  }
+
+  private static String createBody(int prNumber, String releaseNote) {
+    return "## Description\n\nThis PR changes the behavior of the component "
+        + prNumber
+        + " so that it handles the transient errors by retrying the operation.\n\n"
+        + "## Related issues and/or PRs\n\n- #"
+        + (prNumber + 1000)
+        + "\n\n## Changes made\n\n- Added the retry.\n- Updated the tests.\n\n"
+        + "## Checklist\n\n- [x] I have commented my code.\n- [x] I have updated the docs.\n\n"
+        + "## Additional notes (optional)\n\nN/A\n\n"
+        + "## Release notes\n\n"
+        + releaseNote
+        + "\n";
+  }
+
+  /** Parses and categorizes all the PRs with {@code extractReleaseNoteInfo}. */
+  public Object extractReleaseNoteInfo() throws Exception {
+    ReleaseNoteCreation releaseNoteCreation = new ReleaseNoteCreation(ghContext);
+    for (String prNumber : prNumbers) {
+      releaseNoteCreation.extractReleaseNoteInfo(prNumber);
+    }
+    return releaseNoteCreation;
+  }
+
+  /** Returns a new instance which has the parsed PRs but hasn't assorted the same-as items yet. */
+  public Object categorized() {
+    ReleaseNoteCreation releaseNoteCreation = new ReleaseNoteCreation(ghContext);
+    for (ReleaseNoteCreation.ReleaseNoteText original : releaseNoteTexts) {
+      ReleaseNoteCreation.ReleaseNoteText copy = new ReleaseNoteCreation.ReleaseNoteText();
+      copy.category = original.category;
+      copy.text = original.text;
+      copy.prNumbers.addAll(original.prNumbers);
+      copy.sameAsPrNumbers.addAll(original.sameAsPrNumbers);
+      releaseNoteCreation.addReleaseNoteText(copy);
+    }
+    return releaseNoteCreation;
+  }
+
+  /** Returns a new instance which is ready to output the release note. */
+  public Object assorted() {
+    ReleaseNoteCreation releaseNoteCreation = (ReleaseNoteCreation) categorized();
+    releaseNoteCreation.assortSameAsItems();
+    return releaseNoteCreation;
+  }
+
+  public static void assortSameAsItems(Object releaseNoteCreation) {
+    ((ReleaseNoteCreation) releaseNoteCreation).assortSameAsItems();
+  }
+
+  public static void outputReleaseNote(Object releaseNoteCreation) {
+    ((ReleaseNoteCreation) releaseNoteCreation).outputReleaseNote();
+  }
+
+  /** Loads the release notes of the four repositories with {@link MergeReleaseNotes#load}. */
+  public Object loadMergeInputs() throws Exception {
+    MergeReleaseNotes mergeReleaseNotes = new MergeReleaseNotes();
+    mergeReleaseNotes.load(
+        mergeInputDirectory.resolve("scalardb.md").toFile(),
+        MergeReleaseNotes.Edition.COMMUNITY,
+        MergeReleaseNotes.Repository.DB);
+    mergeReleaseNotes.load(
+        mergeInputDirectory.resolve("cluster.md").toFile(),
+        MergeReleaseNotes.Edition.ENTERPRISE,
+        MergeReleaseNotes.Repository.CLUSTER);
+    mergeReleaseNotes.load(
+        mergeInputDirectory.resolve("graphql.md").toFile(),
+        MergeReleaseNotes.Edition.ENTERPRISE,
+        MergeReleaseNotes.Repository.GRAPHQL);
+    mergeReleaseNotes.load(
+        mergeInputDirectory.resolve("sql.md").toFile(),
+        MergeReleaseNotes.Edition.ENTERPRISE,
+        MergeReleaseNotes.Repository.SQL);
+    return mergeReleaseNotes;
+  }
+
+  public static void outputMergedReleaseNote(Object mergeReleaseNotes) {
+    ((MergeReleaseNotes) mergeReleaseNotes).output();
+  }
+
+  public void close() {
+    try {
+      for (String name : new String[] {"scalardb.md", "cluster.md", "graphql.md", "sql.md"}) {
+        Files.deleteIfExists(mergeInputDirectory.resolve(name));
+      }
+      Files.deleteIfExists(mergeInputDirectory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** A GitHubContext which returns the PRs in memory instead of calling the GitHub API. */
+  static class InMemoryGitHubContext extends ReleaseNoteCreation.GitHubContext {
+    private final Map<String, ReleaseNoteCreation.PullRequest> pullRequests;
+
+    InMemoryGitHubContext(Map<String, ReleaseNoteCreation.PullRequest> pullRequests) {
+      super("owner", "ScalarDB", "4.0.0", "scalardb");
+      this.pullRequests = pullRequests;
+    }
+
+    @Override
+    ReleaseNoteCreation.PullRequest fetchPullRequest(String prNumber) {
+      return pullRequests.get(prNumber);
+    }
+  }
+}
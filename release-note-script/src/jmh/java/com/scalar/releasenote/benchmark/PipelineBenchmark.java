@@ -0,0 +1,112 @@
+package com.scalar.releasenote.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how each stage of the release note pipeline scales with the number of PRs. The PRs are
+ * the synthetic corpus of {@code PipelineCorpus}, which are fetched from memory instead of GitHub.
+ * The standard output and error are discarded while measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PipelineBenchmark {
+
+  private static final String CORPUS = "PipelineCorpus";
+  private static final MethodHandle NEW_CORPUS = ScriptClasses.constructor(CORPUS, int.class);
+  private static final MethodHandle EXTRACT_RELEASE_NOTE_INFO =
+      ScriptClasses.method(CORPUS, "extractReleaseNoteInfo");
+  private static final MethodHandle CATEGORIZED = ScriptClasses.method(CORPUS, "categorized");
+  private static final MethodHandle ASSORTED = ScriptClasses.method(CORPUS, "assorted");
+  private static final MethodHandle ASSORT_SAME_AS_ITEMS =
+      ScriptClasses.method(CORPUS, "assortSameAsItems", Object.class);
+  private static final MethodHandle OUTPUT_RELEASE_NOTE =
+      ScriptClasses.method(CORPUS, "outputReleaseNote", Object.class);
+  private static final MethodHandle LOAD_MERGE_INPUTS =
+      ScriptClasses.method(CORPUS, "loadMergeInputs");
+  private static final MethodHandle OUTPUT_MERGED_RELEASE_NOTE =
+      ScriptClasses.method(CORPUS, "outputMergedReleaseNote", Object.class);
+  private static final MethodHandle CLOSE = ScriptClasses.method(CORPUS, "close");
+
+  @Param({"100", "1000", "10000", "100000"})
+  public int prCount;
+
+  private Object corpus;
+  private Object assorted;
+  private Object mergeInputs;
+  private PrintStream originalOut;
+  private PrintStream originalErr;
+
+  @Setup
+  public void setUp() throws Throwable {
+    originalOut = System.out;
+    originalErr = System.err;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+    corpus = (Object) NEW_CORPUS.invokeExact(prCount);
+    assorted = (Object) ASSORTED.invokeExact(corpus);
+    mergeInputs = (Object) LOAD_MERGE_INPUTS.invokeExact(corpus);
+  }
+
+  @TearDown
+  public void tearDown() throws Throwable {
+    System.setOut(originalOut);
+    System.setErr(originalErr);
+    CLOSE.invokeExact(corpus);
+  }
+
+  /** A release note whose same-as items are not assorted yet, which is created for each call. */
+  @State(Scope.Thread)
+  public static class Categorized {
+    Object releaseNoteCreation;
+
+    @Setup(Level.Invocation)
+    public void setUp(PipelineBenchmark benchmark) throws Throwable {
+      releaseNoteCreation = (Object) CATEGORIZED.invokeExact(benchmark.corpus);
+    }
+  }
+
+  @Benchmark
+  public Object extractReleaseNoteInfo() throws Throwable {
+    return (Object) EXTRACT_RELEASE_NOTE_INFO.invokeExact(corpus);
+  }
+
+  @Benchmark
+  public void assortSameAsItems(Categorized categorized) throws Throwable {
+    ASSORT_SAME_AS_ITEMS.invokeExact(categorized.releaseNoteCreation);
+  }
+
+  @Benchmark
+  public void outputReleaseNote() throws Throwable {
+    OUTPUT_RELEASE_NOTE.invokeExact(assorted);
+  }
+
+  @Benchmark
+  public Object loadMergeInputs() throws Throwable {
+    return (Object) LOAD_MERGE_INPUTS.invokeExact(corpus);
+  }
+
+  @Benchmark
+  public void outputMergedReleaseNote() throws Throwable {
+    OUTPUT_MERGED_RELEASE_NOTE.invokeExact(mergeInputs);
+  }
+}
@@ -0,0 +1,128 @@
+package com.scalar.releasenote.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the release note section parser with the regular expressions which were matched against
+ * each line of the PR body before. The bodies follow the PR template, i.e., the release note
+ * section is at the end, so the whole body is scanned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReleaseNoteSectionParserBenchmark {
+
+  private static final String PARSER = "ReleaseNoteCreation$ReleaseNoteSectionParser";
+  private static final MethodHandle PARSE_STRING =
+      ScriptClasses.method(PARSER, "parse", String.class);
+  private static final MethodHandle PARSE_READER =
+      ScriptClasses.method(PARSER, "parse", BufferedReader.class);
+
+  private static final Pattern PATTERN_RELEASE_NOTE_TEXT = Pattern.compile("^ *-? *(\\p{Print}+)$");
+  private static final Pattern PATTERN_SAME_AS_TEXT =
+      Pattern.compile("^ *-? *[Ss]ame ?[Aa]s +#?([0-9]+) *$");
+
+  @Param({"1024", "4096", "16384", "65536"})
+  public int bodySize;
+
+  private String body;
+
+  @Setup
+  public void setUp() {
+    body = createBody(bodySize);
+  }
+
+  @Benchmark
+  public Object regularExpressions() throws IOException {
+    return parseWithRegularExpressions(new BufferedReader(new StringReader(body)));
+  }
+
+  @Benchmark
+  public Object parserFromReader() throws Throwable {
+    return (Object) PARSE_READER.invokeExact(new BufferedReader(new StringReader(body)));
+  }
+
+  @Benchmark
+  public Object parserFromString() throws Throwable {
+    return (Object) PARSE_STRING.invokeExact(body);
+  }
+
+  /** Creates a PR body of about the given size in characters. */
+  static String createBody(int size) {
+    StringBuilder sb = new StringBuilder(size + 256);
+    sb.append("## Description\n\n");
+    int paragraph = 0;
+    while (sb.length() < size - 200) {
+      if (paragraph % 4 == 3) {
+        sb.append("```java\n")
+            .append("DistributedTransaction tx = manager.start();\n")
+            .append("tx.put(Put.newBuilder().namespace(\"ns\").table(\"tbl\").build());\n")
+            .append("```\n\n");
+      } else {
+        sb.append("- This change makes the storage adapter retry the operation when it fails ")
+            .append("with a transient error, paragraph ")
+            .append(paragraph)
+            .append(".\n");
+      }
+      paragraph++;
+    }
+    sb.append("\n## Related issues and/or PRs\n\n- #1234\n\n");
+    sb.append("## Changes made\n\n- Added the retry.\n\n");
+    sb.append("## Checklist\n\n- [x] I have commented my code.\n\n");
+    sb.append(
+        "## Release notes\n\n- Added the retry of transient errors in the storage adapter.\n");
+    return sb.toString();
+  }
+
+  /** The parsing with the regular expressions which was done before. */
+  static Object parseWithRegularExpressions(BufferedReader br) throws IOException {
+    String line;
+    while ((line = br.readLine()) != null) {
+      if (Pattern.matches("^## *[Rr]elease *[Nn]otes? *", line)) {
+        break;
+      }
+    }
+
+    String text = null;
+    List<String> sameAsPrNumbers = new ArrayList<>();
+    while ((line = br.readLine()) != null) {
+      if (Pattern.matches("^## *.*", line)) break;
+      if (Pattern.matches("^ *-? *N/?A *$", line)) return null;
+
+      Matcher releseNoteTextMatcher = PATTERN_RELEASE_NOTE_TEXT.matcher(line);
+      if (releseNoteTextMatcher.matches()) {
+        if (!Pattern.matches("^ *-? *[Ss]ame ?[Aa]s +#?([0-9]+) *$", line)) {
+          text = releseNoteTextMatcher.group(1);
+        }
+      }
+
+      Matcher sameAsTextMatcher = PATTERN_SAME_AS_TEXT.matcher(line);
+      if (sameAsTextMatcher.matches()) {
+        sameAsPrNumbers.add(sameAsTextMatcher.group(1));
+      }
+    }
+    return text == null ? sameAsPrNumbers : text;
+  }
+}
@@ -0,0 +1,59 @@
+package com.scalar.releasenote.benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Looks up the methods of the scripts. The scripts are in the default package since they are
+ * executed as Single-File Source-code programs, while JMH requires the benchmarks to be in a named
+ * package which can't refer to the default package. So the benchmarks call the scripts through
+ * method handles, which are inlined by the JIT compiler when they are held in static final fields.
+ */
+final class ScriptClasses {
+
+  private ScriptClasses() {}
+
+  /**
+   * Returns the handle of the method. The receiver of an instance method is the first parameter.
+   * The types of the scripts in its signature are erased to {@link Object} so that it can be called
+   * with {@code invokeExact}.
+   */
+  static MethodHandle method(String className, String name, Class<?>... parameterTypes) {
+    try {
+      Method method = Class.forName(className).getDeclaredMethod(name, parameterTypes);
+      method.setAccessible(true);
+      MethodHandle handle = MethodHandles.lookup().unreflect(method);
+      return handle.asType(erase(handle.type()));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Couldn't find " + className + "." + name, e);
+    }
+  }
+
+  /** Returns the handle of the constructor, whose return type is erased to {@link Object}. */
+  static MethodHandle constructor(String className, Class<?>... parameterTypes) {
+    try {
+      Constructor<?> constructor = Class.forName(className).getDeclaredConstructor(parameterTypes);
+      constructor.setAccessible(true);
+      MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+      return handle.asType(erase(handle.type()));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Couldn't find the constructor of " + className, e);
+    }
+  }
+
+  private static MethodType erase(MethodType type) {
+    MethodType erased = type.changeReturnType(erase(type.returnType()));
+    for (int i = 0; i < type.parameterCount(); i++) {
+      erased = erased.changeParameterType(i, erase(type.parameterType(i)));
+    }
+    return erased;
+  }
+
+  private static Class<?> erase(Class<?> type) {
+    if (type.isPrimitive() || type.getName().startsWith("java.")) return type;
+    return Object.class;
+  }
+}
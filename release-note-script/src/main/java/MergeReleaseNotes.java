@@ -1,12 +1,30 @@
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,6 +34,11 @@ import java.util.regex.Pattern;
  * markdown files as its input. And then output the merged release note body to standard output as a
  * markdown.
  *
+ * <p>The input files can be listed in a manifest file with their repository and edition, so that
+ * the release note bodies of any number of repositories are merged. The input files are parsed in
+ * parallel. An input file can also be the JSON Lines written by {@code ReleaseNoteCreation.java}
+ * with {@code --output=<file>.jsonl}, which is read without parsing the markdown.
+ *
  * <p>This script is assumed to be executed in a GitHub Actions workflow.
  *
  * <p>Note that it is needed that java 11 to execute this script since it is executed as a
@@ -34,38 +57,112 @@ public class MergeReleaseNotes {
 
   private final Map<Edition, Map<Category, Map<Repository, List<ReleaseNote>>>> editionMap =
       new EnumMap<>(Edition.class);
+  private final List<Path> outputFiles = new ArrayList<>();
 
   public static void main(String... args) throws Exception {
-
-    if (args.length > 0) {
-      if (args[0].equals("-h") || args[0].equals("--help")) {
-        System.err.printf("Usage: java %s.java%n", MergeReleaseNotes.class.getSimpleName());
+    Path manifest = null;
+    List<Path> outputFiles = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.equals("-h") || arg.equals("--help")) {
+        printUsage();
         System.exit(0);
+      } else if (arg.startsWith("--manifest=")) {
+        manifest = Paths.get(arg.substring("--manifest=".length()));
+      } else if (arg.startsWith("--output=")) {
+        outputFiles.add(Paths.get(arg.substring("--output=".length())));
+      } else {
+        printUsage();
+        System.exit(1);
       }
     }
 
-    MergeReleaseNotes mergeReleaseNotes = new MergeReleaseNotes();
-    mergeReleaseNotes.createMergedReleaseNote();
+    MergeReleaseNotes mergeReleaseNotes = new MergeReleaseNotes(outputFiles);
+    if (manifest == null) {
+      mergeReleaseNotes.createMergedReleaseNote();
+    } else {
+      mergeReleaseNotes.createMergedReleaseNote(Input.readManifest(manifest));
+    }
+  }
+
+  public MergeReleaseNotes() {
+    this(List.of());
+  }
+
+  /**
+   * @param outputFiles the files to which the merged release note is also written in the formats of
+   *     their extensions
+   */
+  public MergeReleaseNotes(List<Path> outputFiles) {
+    this.outputFiles.addAll(outputFiles);
+  }
+
+  private static void printUsage() {
+    String name = MergeReleaseNotes.class.getSimpleName();
+    System.err.printf("Usage: java %s.java [--manifest=<file>] [--output=<file>...]%n", name);
+    System.err.printf("%nOptions:%n");
+    System.err.printf(
+        "    --manifest=<file>  The file which lists the input files with their repository and"
+            + " edition. Without it, scalardb.md, cluster.md, graphql.md and sql.md are merged."
+            + " The files are markdown, or JSON Lines if their extension is .jsonl.%n");
+    System.err.printf(
+        "    --output=<file>    Also write the merged release note to the file in the format of"
+            + " its extension (.md, .json or .html). This can be specified more than once.%n");
   }
 
   public void createMergedReleaseNote() throws Exception {
-    load(new File("scalardb.md"), Edition.COMMUNITY, Repository.DB);
-    load(new File("cluster.md"), Edition.ENTERPRISE, Repository.CLUSTER);
-    load(new File("graphql.md"), Edition.ENTERPRISE, Repository.GRAPHQL);
-    load(new File("sql.md"), Edition.ENTERPRISE, Repository.SQL);
+    createMergedReleaseNote(Input.defaults(Paths.get("")));
+  }
+
+  public void createMergedReleaseNote(List<Input> inputs) throws Exception {
+    loadAll(inputs);
     output();
   }
 
   void load(File file, Edition edition, Repository repository) throws Exception {
-    loadAReleaseNoteBody(edition, repository, file);
+    add(edition, repository, parse(new Input(repository, edition, file.toPath())));
   }
 
-  private void loadAReleaseNoteBody(Edition edition, Repository repository, File file)
-      throws Exception {
+  /**
+   * Loads the input files in parallel. Each file is parsed into its own map on a thread, and then
+   * the maps are added in the order of the inputs on the calling thread. So the output is the same
+   * as the one loaded one by one.
+   */
+  void loadAll(List<Input> inputs) throws Exception {
+    int threads = Math.max(1, Math.min(inputs.size(), Runtime.getRuntime().availableProcessors()));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Map<Category, List<ReleaseNote>>>> futures = new ArrayList<>();
+      for (Input input : inputs) {
+        futures.add(executor.submit(() -> parse(input)));
+      }
+      for (int i = 0; i < inputs.size(); i++) {
+        Map<Category, List<ReleaseNote>> releaseNotes;
+        try {
+          releaseNotes = futures.get(i).get();
+        } catch (ExecutionException e) {
+          throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        add(inputs.get(i).edition, inputs.get(i).repository, releaseNotes);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Parses the release note body of the input, which is a markdown unless it's JSON Lines. This can
+   * be called from multiple threads.
+   */
+  static Map<Category, List<ReleaseNote>> parse(Input input) throws IOException {
+    if (input.path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".jsonl")) {
+      return parseJsonLines(input);
+    }
+
+    Map<Category, List<ReleaseNote>> releaseNotes = new EnumMap<>(Category.class);
     Category category = null;
     String line;
 
-    try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+    try (BufferedReader reader = Files.newBufferedReader(input.path, StandardCharsets.UTF_8)) {
       while ((line = reader.readLine()) != null) {
         if (DEBUG != null) System.err.printf("ReadLine: %s%n", line);
         Matcher categoryMatcher = PATTERN_CATEGORY.matcher(line);
@@ -80,35 +177,70 @@ public class MergeReleaseNotes {
             if (category == null)
               throw new IllegalStateException(
                   "Missing category. Release note text: " + releaseNoteTextMatcher.group(1));
-            addReleaseNote(
-                new ReleaseNote(edition, category, repository, releaseNoteTextMatcher.group(1)));
+            ReleaseNote releaseNote =
+                new ReleaseNote(
+                    input.edition, category, input.repository, releaseNoteTextMatcher.group(1));
+            if (releaseNote.edition.equals(Edition.ENTERPRISE)) {
+              removePullRequestNumbers(releaseNote);
+            }
+            releaseNotes.computeIfAbsent(category, k -> new ArrayList<>()).add(releaseNote);
           }
         }
       }
     }
+    return releaseNotes;
   }
 
-  private void addReleaseNote(ReleaseNote releaseNote) {
-    Map<Category, Map<Repository, List<ReleaseNote>>> categoryMap =
-        editionMap.computeIfAbsent(releaseNote.edition, k -> new EnumMap<>(Category.class));
-
-    Map<Repository, List<ReleaseNote>> repositoryMap =
-        categoryMap.computeIfAbsent(releaseNote.category, k -> new EnumMap<>(Repository.class));
-
-    List<ReleaseNote> releaseNotesList =
-        repositoryMap.computeIfAbsent(releaseNote.repository, k -> new ArrayList<>());
-
-    if (releaseNote.edition.equals(Edition.ENTERPRISE)) {
-      removePullRequestNumbers(releaseNote);
+  /**
+   * Reads the release note records in the JSON Lines written by {@code ReleaseNoteCreation.java}
+   * line by line. The category and the PR numbers are read from the fields of each record, so they
+   * don't depend on how the text looks in the markdown.
+   */
+  static Map<Category, List<ReleaseNote>> parseJsonLines(Input input) throws IOException {
+    Map<Category, List<ReleaseNote>> releaseNotes = new EnumMap<>(Category.class);
+    try (BufferedReader reader = Files.newBufferedReader(input.path, StandardCharsets.UTF_8)) {
+      String line;
+      for (int lineNumber = 1; (line = reader.readLine()) != null; lineNumber++) {
+        if (line.isBlank()) continue;
+        ReleaseNote releaseNote;
+        try {
+          JsonLine record = JsonLine.parse(line);
+          releaseNote =
+              ReleaseNote.of(
+                  input.edition,
+                  Category.getByLabel(record.getString("category")),
+                  input.repository,
+                  record.getString("text"),
+                  record.getStrings("pullRequests"));
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException(
+              String.format(
+                  "Invalid release note record at %s:%d: %s",
+                  input.path, lineNumber, e.getMessage()),
+              e);
+        }
+        releaseNotes.computeIfAbsent(releaseNote.category, k -> new ArrayList<>()).add(releaseNote);
+      }
     }
+    return releaseNotes;
+  }
 
-    releaseNotesList.add(releaseNote);
-    repositoryMap.put(releaseNote.repository, releaseNotesList);
-    categoryMap.put(releaseNote.category, repositoryMap);
-    editionMap.put(releaseNote.edition, categoryMap);
+  /**
+   * Adds the release notes of a repository. The repositories are output in the order they are
+   * added.
+   */
+  void add(Edition edition, Repository repository, Map<Category, List<ReleaseNote>> releaseNotes) {
+    Map<Category, Map<Repository, List<ReleaseNote>>> categoryMap =
+        editionMap.computeIfAbsent(edition, k -> new EnumMap<>(Category.class));
+    for (Map.Entry<Category, List<ReleaseNote>> entry : releaseNotes.entrySet()) {
+      categoryMap
+          .computeIfAbsent(entry.getKey(), k -> new LinkedHashMap<>())
+          .computeIfAbsent(repository, k -> new ArrayList<>())
+          .addAll(entry.getValue());
+    }
   }
 
-  private void removePullRequestNumbers(ReleaseNote releaseNote) {
+  private static void removePullRequestNumbers(ReleaseNote releaseNote) {
     Matcher releaseNoteTextMatcher =
         PATTERN_RELEASE_NOTE_TEXT_SPLIT_PRNUMBER.matcher(releaseNote.releaseNoteText);
     if (releaseNoteTextMatcher.matches()) {
@@ -124,51 +256,395 @@ public class MergeReleaseNotes {
     }
   }
 
+  /**
+   * Outputs the merged release note as a markdown to standard output, and also to the output files
+   * in their formats. The release notes are walked once for all the formats, and each of them is
+   * written through a buffered writer.
+   */
   void output() {
-    System.out.print("## Summary\n\n");
-    Arrays.stream(Edition.values())
-        .forEach(
-            edition -> {
-              outputSections(edition);
-              System.out.println();
-            });
+    List<MergedReleaseNoteRenderer> renderers = new ArrayList<>();
+    try {
+      renderers.add(new MarkdownRenderer(new BufferedWriter(new PrintStreamWriter(System.out))));
+      for (Path file : outputFiles) {
+        renderers.add(MergedReleaseNoteRenderer.create(file));
+      }
+
+      for (MergedReleaseNoteRenderer renderer : renderers) renderer.begin();
+      for (Edition edition : Edition.values()) {
+        outputSections(edition, renderers);
+        for (MergedReleaseNoteRenderer renderer : renderers) renderer.endEdition(edition);
+      }
+      for (MergedReleaseNoteRenderer renderer : renderers) renderer.end();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      for (MergedReleaseNoteRenderer renderer : renderers) {
+        try {
+          renderer.close();
+        } catch (IOException e) {
+          System.err.println("WARN: failed closing the output: " + e.getMessage());
+        }
+      }
+    }
   }
 
-  private void outputSections(Edition edition) {
+  private void outputSections(Edition edition, List<MergedReleaseNoteRenderer> renderers)
+      throws IOException {
     Map<Category, Map<Repository, List<ReleaseNote>>> categoryMap = editionMap.get(edition);
     if (categoryMap == null || categoryMap.isEmpty()) return;
 
-    System.out.printf("## %s edition%n", edition.getEdition());
-    Arrays.stream(Category.values())
-        .forEach(category -> outputReleaseNotes(category, categoryMap.get(category)));
-  }
-
-  private void outputReleaseNotes(
-      Category category, Map<Repository, List<ReleaseNote>> repositoryMap) {
-    if (repositoryMap == null || repositoryMap.isEmpty()) return;
-
-    System.out.printf("### %s%n", category.getDisplayName());
-    Arrays.stream(Repository.values())
-        .forEach(
-            repository -> {
-              List<ReleaseNote> releaseNotes = repositoryMap.get(repository);
-              if (releaseNotes != null && !releaseNotes.isEmpty()) {
-                /*
-                 The merged release note body consists of community edition part and
-                 enterprise edition part. The community edition part represents
-                 ScalarDB's release note body, meanwhile the enterprise edition
-                 represents the rest of repositories release note body. The enterprise
-                 edition part shows repository information (ScalarDB Cluster, ScalarDB
-                 GraphQL, ScalarDB SQL) under each category section. Thus, the h4 header
-                 is needed for the repositories in the enterprise edition.
-                */
-                if (!repository.equals(Repository.DB))
-                  System.out.printf("#### %s%n", repository.getDisplayName());
-                for (ReleaseNote rn : releaseNotes) {
-                  System.out.printf("- %s%n", rn.releaseNoteText);
-                }
-              }
-            });
+    /*
+     The merged release note body consists of community edition part and
+     enterprise edition part. The community edition part represents
+     ScalarDB's release note body, meanwhile the enterprise edition
+     represents the rest of repositories release note body. The enterprise
+     edition part shows repository information (ScalarDB Cluster, ScalarDB
+     GraphQL, ScalarDB SQL) under each category section. Thus, the h4 header
+     is needed for the repositories in the enterprise edition, and also in the
+     community edition if it has more than one repository.
+    */
+    Set<Repository> repositories = new LinkedHashSet<>();
+    categoryMap.values().forEach(repositoryMap -> repositories.addAll(repositoryMap.keySet()));
+    boolean withRepositoryHeader = edition.equals(Edition.ENTERPRISE) || repositories.size() > 1;
+    for (MergedReleaseNoteRenderer renderer : renderers) {
+      renderer.beginEdition(edition, withRepositoryHeader);
+    }
+    for (Category category : Category.values()) {
+      Map<Repository, List<ReleaseNote>> repositoryMap = categoryMap.get(category);
+      if (repositoryMap == null || repositoryMap.isEmpty()) continue;
+
+      for (MergedReleaseNoteRenderer renderer : renderers) renderer.beginCategory(category);
+      for (Map.Entry<Repository, List<ReleaseNote>> entry : repositoryMap.entrySet()) {
+        if (entry.getValue().isEmpty()) continue;
+        for (MergedReleaseNoteRenderer renderer : renderers) {
+          renderer.beginRepository(entry.getKey());
+          for (ReleaseNote rn : entry.getValue()) renderer.releaseNote(rn);
+          renderer.endRepository(entry.getKey());
+        }
+      }
+      for (MergedReleaseNoteRenderer renderer : renderers) renderer.endCategory(category);
+    }
+  }
+
+  /**
+   * Renders the merged release note in a format. The renderers are called while the release notes
+   * are walked once. {@link #endEdition} is called for every edition, while {@link #beginEdition}
+   * is called only for the editions which have release notes.
+   */
+  abstract static class MergedReleaseNoteRenderer implements Closeable {
+    final Writer writer;
+
+    MergedReleaseNoteRenderer(Writer writer) {
+      this.writer = writer;
+    }
+
+    /**
+     * Creates the renderer which writes to the file in the format of its extension, i.e., {@code
+     * .md}, {@code .json} or {@code .html}.
+     */
+    static MergedReleaseNoteRenderer create(Path file) throws IOException {
+      String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+      if (name.endsWith(".md") || name.endsWith(".markdown")) {
+        return new MarkdownRenderer(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+      } else if (name.endsWith(".json")) {
+        return new JsonRenderer(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+      } else if (name.endsWith(".html") || name.endsWith(".htm")) {
+        return new HtmlRenderer(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+      }
+      throw new IllegalArgumentException("Unknown output format: " + file);
+    }
+
+    abstract void begin() throws IOException;
+
+    abstract void beginEdition(Edition edition, boolean withRepositoryHeader) throws IOException;
+
+    abstract void beginCategory(Category category) throws IOException;
+
+    abstract void beginRepository(Repository repository) throws IOException;
+
+    abstract void releaseNote(ReleaseNote releaseNote) throws IOException;
+
+    void endRepository(Repository repository) throws IOException {}
+
+    abstract void endCategory(Category category) throws IOException;
+
+    abstract void endEdition(Edition edition) throws IOException;
+
+    abstract void end() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+      writer.close();
+    }
+  }
+
+  /** Renders the merged release note as a markdown, which is the body of the release on GitHub. */
+  static class MarkdownRenderer extends MergedReleaseNoteRenderer {
+    private boolean withRepositoryHeader;
+
+    MarkdownRenderer(Writer writer) {
+      super(writer);
+    }
+
+    @Override
+    void begin() throws IOException {
+      writer.write("## Summary\n\n");
+    }
+
+    @Override
+    void beginEdition(Edition edition, boolean withRepositoryHeader) throws IOException {
+      this.withRepositoryHeader = withRepositoryHeader;
+      writer.write("## " + edition.getEdition() + " edition" + System.lineSeparator());
+    }
+
+    @Override
+    void beginCategory(Category category) throws IOException {
+      writer.write("### " + category.getDisplayName() + System.lineSeparator());
+    }
+
+    @Override
+    void beginRepository(Repository repository) throws IOException {
+      if (withRepositoryHeader) {
+        writer.write("#### " + repository.getDisplayName() + System.lineSeparator());
+      }
+    }
+
+    @Override
+    void releaseNote(ReleaseNote releaseNote) throws IOException {
+      writer.write("- " + releaseNote.releaseNoteText + System.lineSeparator());
+    }
+
+    @Override
+    void endCategory(Category category) {}
+
+    @Override
+    void endEdition(Edition edition) throws IOException {
+      writer.write(System.lineSeparator());
+    }
+
+    @Override
+    void end() {}
+  }
+
+  /**
+   * Renders the merged release note as JSON, e.g., {@code {"editions": [{"edition": "Community",
+   * "categories": [{"category": "Enhancements", "repositories": [{"repository": "scalardb",
+   * "displayName": "ScalarDB", "releaseNotes": ["..."]}]}]}]}}.
+   */
+  static class JsonRenderer extends MergedReleaseNoteRenderer {
+    private boolean firstEdition = true;
+    private boolean editionOpen;
+    private boolean firstCategory;
+    private boolean firstRepository;
+    private boolean firstReleaseNote;
+
+    JsonRenderer(Writer writer) {
+      super(writer);
+    }
+
+    @Override
+    void begin() throws IOException {
+      writer.write("{\"editions\":[");
+    }
+
+    @Override
+    void beginEdition(Edition edition, boolean withRepositoryHeader) throws IOException {
+      if (!firstEdition) writer.write(',');
+      firstEdition = false;
+      editionOpen = true;
+      firstCategory = true;
+      writer.write("\n{\"edition\":" + quote(edition.getEdition()) + ",\"categories\":[");
+    }
+
+    @Override
+    void beginCategory(Category category) throws IOException {
+      if (!firstCategory) writer.write(',');
+      firstCategory = false;
+      firstRepository = true;
+      writer.write("\n{\"category\":" + quote(category.getDisplayName()) + ",\"repositories\":[");
+    }
+
+    @Override
+    void beginRepository(Repository repository) throws IOException {
+      if (!firstRepository) writer.write(',');
+      firstRepository = false;
+      firstReleaseNote = true;
+      writer.write("\n{\"repository\":" + quote(repository.getName()));
+      writer.write(",\"displayName\":" + quote(repository.getDisplayName()));
+      writer.write(",\"releaseNotes\":[");
+    }
+
+    @Override
+    void releaseNote(ReleaseNote releaseNote) throws IOException {
+      if (!firstReleaseNote) writer.write(',');
+      firstReleaseNote = false;
+      writer.write("\n" + quote(releaseNote.releaseNoteText));
+    }
+
+    @Override
+    void endRepository(Repository repository) throws IOException {
+      writer.write("]}");
+    }
+
+    @Override
+    void endCategory(Category category) throws IOException {
+      writer.write("]}");
+    }
+
+    @Override
+    void endEdition(Edition edition) throws IOException {
+      if (editionOpen) writer.write("]}");
+      editionOpen = false;
+    }
+
+    @Override
+    void end() throws IOException {
+      writer.write("\n]}\n");
+    }
+
+    private static String quote(String value) {
+      StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        switch (c) {
+          case '"':
+            sb.append("\\\"");
+            break;
+          case '\\':
+            sb.append("\\\\");
+            break;
+          case '\n':
+            sb.append("\\n");
+            break;
+          case '\r':
+            sb.append("\\r");
+            break;
+          case '\t':
+            sb.append("\\t");
+            break;
+          default:
+            if (c < 0x20) {
+              sb.append(String.format("\\u%04x", (int) c));
+            } else {
+              sb.append(c);
+            }
+        }
+      }
+      return sb.append('"').toString();
+    }
+  }
+
+  /** Renders the merged release note as an HTML fragment. */
+  static class HtmlRenderer extends MergedReleaseNoteRenderer {
+    private boolean withRepositoryHeader;
+    private boolean listOpen;
+
+    HtmlRenderer(Writer writer) {
+      super(writer);
+    }
+
+    @Override
+    void begin() throws IOException {
+      writer.write("<h2>Summary</h2>\n");
+    }
+
+    @Override
+    void beginEdition(Edition edition, boolean withRepositoryHeader) throws IOException {
+      this.withRepositoryHeader = withRepositoryHeader;
+      writer.write("<h2>" + escape(edition.getEdition()) + " edition</h2>\n");
+    }
+
+    @Override
+    void beginCategory(Category category) throws IOException {
+      writer.write("<h3>" + escape(category.getDisplayName()) + "</h3>\n");
+    }
+
+    @Override
+    void beginRepository(Repository repository) throws IOException {
+      if (withRepositoryHeader) {
+        writer.write("<h4>" + escape(repository.getDisplayName()) + "</h4>\n");
+      }
+      if (withRepositoryHeader || !listOpen) {
+        writer.write("<ul>\n");
+        listOpen = true;
+      }
+    }
+
+    @Override
+    void releaseNote(ReleaseNote releaseNote) throws IOException {
+      writer.write("<li>" + escape(releaseNote.releaseNoteText) + "</li>\n");
+    }
+
+    @Override
+    void endRepository(Repository repository) throws IOException {
+      if (withRepositoryHeader) {
+        writer.write("</ul>\n");
+        listOpen = false;
+      }
+    }
+
+    @Override
+    void endCategory(Category category) throws IOException {
+      if (listOpen) writer.write("</ul>\n");
+      listOpen = false;
+    }
+
+    @Override
+    void endEdition(Edition edition) {}
+
+    @Override
+    void end() {}
+
+    private static String escape(String text) {
+      StringBuilder sb = new StringBuilder(text.length());
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        switch (c) {
+          case '&':
+            sb.append("&amp;");
+            break;
+          case '<':
+            sb.append("&lt;");
+            break;
+          case '>':
+            sb.append("&gt;");
+            break;
+          case '"':
+            sb.append("&quot;");
+            break;
+          default:
+            sb.append(c);
+        }
+      }
+      return sb.toString();
+    }
+  }
+
+  /**
+   * Writes the characters to the print stream in its charset, e.g., {@code System.out}. Closing
+   * this writer only flushes the print stream.
+   */
+  static class PrintStreamWriter extends Writer {
+    private final PrintStream out;
+
+    PrintStreamWriter(PrintStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+      out.append(CharBuffer.wrap(buffer, offset, length));
+    }
+
+    @Override
+    public void flush() {
+      out.flush();
+    }
+
+    @Override
+    public void close() {
+      out.flush();
+    }
   }
 
   enum Edition {
@@ -187,16 +663,18 @@ public class MergeReleaseNotes {
   }
 
   enum Category {
-    BACKWARD_INCOMPATIBLE("Backward incompatible changes"),
-    ENHANCEMENT("Enhancements"),
-    IMPROVEMENT("Improvements"),
-    BUGFIX("Bug fixes"),
-    MISCELLANEOUS("Miscellaneous");
+    BACKWARD_INCOMPATIBLE("Backward incompatible changes", "backward-incompatible"),
+    ENHANCEMENT("Enhancements", "enhancement"),
+    IMPROVEMENT("Improvements", "improvement"),
+    BUGFIX("Bug fixes", "bugfix"),
+    MISCELLANEOUS("Miscellaneous", "miscellaneous");
 
     private final String displayName;
+    private final String label;
 
-    Category(String displayName) {
+    Category(String displayName, String label) {
       this.displayName = displayName;
+      this.label = label;
     }
 
     public String getDisplayName() {
@@ -209,25 +687,96 @@ public class MergeReleaseNotes {
           .findFirst()
           .orElseThrow(() -> new IllegalArgumentException("Invalid displayName: " + displayName));
     }
-  }
 
-  enum Repository {
-    DB("ScalarDB"),
-    CLUSTER("ScalarDB Cluster"),
-    GRAPHQL("ScalarDB GraphQL"),
-    SQL("ScalarDB SQL");
+    public String getLabel() {
+      return this.label;
+    }
+
+    public static Category getByLabel(String label) {
+      return Arrays.stream(Category.values())
+          .filter(v -> v.getLabel().equals(label))
+          .findFirst()
+          .orElseThrow(() -> new IllegalArgumentException("Invalid label: " + label));
+    }
+  }
 
+  /**
+   * A repository whose release note body is merged. The repositories are given in the manifest, and
+   * the constants are the ones merged by default.
+   */
+  static final class Repository {
+    static final Repository DB = new Repository("scalardb", "ScalarDB");
+    static final Repository CLUSTER = new Repository("cluster", "ScalarDB Cluster");
+    static final Repository GRAPHQL = new Repository("graphql", "ScalarDB GraphQL");
+    static final Repository SQL = new Repository("sql", "ScalarDB SQL");
+
+    private final String name;
     private final String displayName;
 
-    Repository(String displayName) {
+    Repository(String name, String displayName) {
+      this.name = name;
       this.displayName = displayName;
     }
 
+    public String getName() {
+      return this.name;
+    }
+
     public String getDisplayName() {
       return this.displayName;
     }
   }
 
+  /** An input file of the release note body of a repository. */
+  static final class Input {
+    final Repository repository;
+    final Edition edition;
+    final Path path;
+
+    Input(Repository repository, Edition edition, Path path) {
+      this.repository = repository;
+      this.edition = edition;
+      this.path = path;
+    }
+
+    /** Returns the inputs merged by default, which are in the given directory. */
+    static List<Input> defaults(Path directory) {
+      return List.of(
+          new Input(Repository.DB, Edition.COMMUNITY, directory.resolve("scalardb.md")),
+          new Input(Repository.CLUSTER, Edition.ENTERPRISE, directory.resolve("cluster.md")),
+          new Input(Repository.GRAPHQL, Edition.ENTERPRISE, directory.resolve("graphql.md")),
+          new Input(Repository.SQL, Edition.ENTERPRISE, directory.resolve("sql.md")));
+    }
+
+    /**
+     * Reads the manifest. Each line of the manifest is an input of the form {@code <repository>,
+     * <edition>, <display name>, <file>}, e.g., {@code cluster, enterprise, ScalarDB Cluster,
+     * cluster.md}. The edition is {@code community} or {@code enterprise}, and the file is relative
+     * to the manifest. Empty lines and lines starting with {@code #} are ignored.
+     */
+    static List<Input> readManifest(Path manifest) throws IOException {
+      Path directory = manifest.toAbsolutePath().getParent();
+      Map<String, Repository> repositories = new HashMap<>();
+      List<Input> inputs = new ArrayList<>();
+      List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+      for (int i = 0; i < lines.size(); i++) {
+        String line = lines.get(i).trim();
+        if (line.isEmpty() || line.startsWith("#")) continue;
+
+        String[] fields = line.split(" *, *", -1);
+        if (fields.length != 4 || Arrays.stream(fields).anyMatch(String::isEmpty)) {
+          throw new IllegalArgumentException(
+              String.format("Invalid manifest entry at %s:%d: %s", manifest, i + 1, line));
+        }
+        Repository repository =
+            repositories.computeIfAbsent(fields[0], name -> new Repository(name, fields[2]));
+        Edition edition = Edition.valueOf(fields[1].toUpperCase(Locale.ROOT));
+        inputs.add(new Input(repository, edition, directory.resolve(fields[3])));
+      }
+      return inputs;
+    }
+  }
+
   static class ReleaseNote {
     Edition edition;
     Category category;
@@ -241,5 +790,179 @@ public class MergeReleaseNotes {
       this.repository = repository;
       this.releaseNoteText = releaseNoteText;
     }
+
+    /**
+     * Creates the release note of the text and its PR numbers. The PR numbers are only kept in the
+     * community edition, the same as the ones parsed from the markdown.
+     */
+    static ReleaseNote of(
+        Edition edition,
+        Category category,
+        Repository repository,
+        String text,
+        List<String> prNumbers) {
+      String releaseNoteText = String.valueOf(text);
+      if (edition == Edition.COMMUNITY && !prNumbers.isEmpty()) {
+        releaseNoteText += " (#" + String.join(" #", prNumbers) + ")";
+      }
+      return new ReleaseNote(edition, category, repository, releaseNoteText);
+    }
+  }
+
+  /**
+   * A record of the JSON Lines written by {@code ReleaseNoteCreation.java}, which is a JSON object
+   * whose values are strings, arrays of strings or null. This script is a Single-File Source-code
+   * program, so it has its own parser only for the records.
+   */
+  static final class JsonLine {
+    private final String line;
+    private final Map<String, Object> fields = new HashMap<>();
+    private int pos;
+
+    private JsonLine(String line) {
+      this.line = line;
+    }
+
+    static JsonLine parse(String line) {
+      JsonLine record = new JsonLine(line);
+      record.readObject();
+      record.skipWhitespace();
+      if (record.pos != line.length()) throw record.error("Unexpected trailing characters");
+      return record;
+    }
+
+    /** Returns the string field, or null if it's null or missing. */
+    String getString(String name) {
+      Object value = fields.get(name);
+      if (value != null && !(value instanceof String)) {
+        throw new IllegalArgumentException("Not a string: " + name);
+      }
+      return (String) value;
+    }
+
+    /** Returns the array field of strings, or an empty list if it's null or missing. */
+    @SuppressWarnings("unchecked")
+    List<String> getStrings(String name) {
+      Object value = fields.get(name);
+      if (value != null && !(value instanceof List)) {
+        throw new IllegalArgumentException("Not an array: " + name);
+      }
+      return value == null ? List.of() : (List<String>) value;
+    }
+
+    private void readObject() {
+      skipWhitespace();
+      expect('{');
+      skipWhitespace();
+      if (peek() == '}') {
+        pos++;
+        return;
+      }
+      while (true) {
+        skipWhitespace();
+        String name = readString();
+        skipWhitespace();
+        expect(':');
+        skipWhitespace();
+        fields.put(name, readValue());
+        skipWhitespace();
+        if (peek() == ',') {
+          pos++;
+        } else {
+          expect('}');
+          return;
+        }
+      }
+    }
+
+    private Object readValue() {
+      switch (peek()) {
+        case '"':
+          return readString();
+        case 'n':
+          if (!line.startsWith("null", pos)) throw error("Unexpected token");
+          pos += "null".length();
+          return null;
+        case '[':
+          pos++;
+          List<String> values = new ArrayList<>();
+          skipWhitespace();
+          if (peek() == ']') {
+            pos++;
+            return values;
+          }
+          while (true) {
+            skipWhitespace();
+            values.add(readString());
+            skipWhitespace();
+            if (peek() == ',') {
+              pos++;
+            } else {
+              expect(']');
+              return values;
+            }
+          }
+        default:
+          throw error("Unexpected token");
+      }
+    }
+
+    private String readString() {
+      expect('"');
+      StringBuilder sb = new StringBuilder();
+      while (true) {
+        if (pos >= line.length()) throw error("Unterminated string");
+        char c = line.charAt(pos++);
+        if (c == '"') return sb.toString();
+        if (c != '\\') {
+          sb.append(c);
+          continue;
+        }
+        if (pos >= line.length()) throw error("Unterminated string");
+        char escaped = line.charAt(pos++);
+        switch (escaped) {
+          case 'b':
+            sb.append('\b');
+            break;
+          case 'f':
+            sb.append('\f');
+            break;
+          case 'n':
+            sb.append('\n');
+            break;
+          case 'r':
+            sb.append('\r');
+            break;
+          case 't':
+            sb.append('\t');
+            break;
+          case 'u':
+            if (pos + 4 > line.length()) throw error("Invalid unicode escape");
+            sb.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+            pos += 4;
+            break;
+          default:
+            sb.append(escaped);
+        }
+      }
+    }
+
+    private void skipWhitespace() {
+      while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) pos++;
+    }
+
+    private char peek() {
+      if (pos >= line.length()) throw error("Unexpected end of the record");
+      return line.charAt(pos);
+    }
+
+    private void expect(char c) {
+      if (peek() != c) throw error("Expected '" + c + "'");
+      pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at " + pos);
+    }
   }
 }
@@ -0,0 +1,242 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ReleaseAll creates the release note bodies of all the repositories of a product and the merged
+ * release note body in one process. It's the same as running {@code ReleaseNoteCreation} for each
+ * repository and then {@code MergeReleaseNotes}, but the release notes of the repositories are
+ * created concurrently, they share the project lookup and the HTTP client, and they are handed to
+ * the merge as they are instead of being written to and parsed from the markdown files.
+ *
+ * <p>The release note body of each repository is written to the file in the manifest (or the
+ * default files of {@code MergeReleaseNotes}) as a markdown, and the merged release note body is
+ * output to standard output as a markdown.
+ *
+ * <p>Unlike the other scripts, this can't be executed as a Single-File Source-code program since it
+ * uses both of them. Run it as the {@code all} subcommand of the prebuilt jar, or compile them
+ * together, e.g., {@code javac -d classes *.java}, and then run it with {@code java -cp classes
+ * ReleaseAll}.
+ */
+@SuppressWarnings("DefaultPackage")
+public class ReleaseAll {
+
+  private final ReleaseNoteCreation.GitHubContext ghContext;
+  private final ReleaseNoteCreation.Options options;
+  private final List<MergeReleaseNotes.Input> inputs;
+  private final List<Path> outputFiles;
+  private ReleaseNoteCreation.GitHubFixtures fixtures;
+  /**
+   * The scheduler of the requests of all the repositories, so that they share the concurrency, the
+   * retry budget and the deadline of the run.
+   */
+  final ReleaseNoteCreation.RequestScheduler scheduler;
+  /** The PRs which failed to be processed and the reasons, by repository. */
+  final Map<String, Map<String, String>> droppedPullRequests = new LinkedHashMap<>();
+  /** Whether the release note of any repository is partial since the deadline passed. */
+  boolean deadlineExceeded;
+
+  public static void main(String... args) throws Exception {
+    Path manifest = null;
+    List<Path> outputFiles = new ArrayList<>();
+    List<String> rest = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.equals("-h") || arg.equals("--help")) {
+        printUsage();
+        System.exit(0);
+      } else if (arg.startsWith("--manifest=")) {
+        manifest = Paths.get(arg.substring("--manifest=".length()));
+      } else if (arg.startsWith("--output=")) {
+        outputFiles.add(Paths.get(arg.substring("--output=".length())));
+      } else {
+        rest.add(arg);
+      }
+    }
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    List<String> arguments = options.parse(rest.toArray(new String[0]));
+    if (arguments.size() != 3) {
+      printUsage();
+      System.exit(1);
+    }
+
+    List<MergeReleaseNotes.Input> inputs =
+        manifest == null
+            ? MergeReleaseNotes.Input.defaults(Paths.get(""))
+            : MergeReleaseNotes.Input.readManifest(manifest);
+    ReleaseAll main =
+        new ReleaseAll(
+            arguments.get(0), arguments.get(1), arguments.get(2), options, inputs, outputFiles);
+    main.createReleaseNotes();
+    if (main.deadlineExceeded) {
+      System.exit(ReleaseNoteCreation.EXIT_CODE_DEADLINE_EXCEEDED);
+    } else if (!main.droppedPullRequests.isEmpty() && !options.allowDroppedPullRequests) {
+      System.exit(ReleaseNoteCreation.EXIT_CODE_DROPPED_PULL_REQUESTS);
+    }
+  }
+
+  private static void printUsage() {
+    String name = ReleaseAll.class.getSimpleName();
+    System.err.printf("Usage:%n");
+    System.err.printf(
+        "    java -cp <classes> %s [--manifest=<file>] [--output=<file>...] [options] <owner>"
+            + " <projectTitlePrefix> <version>%n",
+        name);
+    System.err.printf("%nOptions:%n");
+    System.err.printf(
+        "    --manifest=<file>  The file which lists the repositories with their edition and the"
+            + " file to which their release note is written. Without it, the release notes of"
+            + " scalardb, cluster, graphql and sql are written to scalardb.md, cluster.md,"
+            + " graphql.md and sql.md.%n");
+    System.err.printf(
+        "    --output=<file>    Also write the merged release note to the file in the format of"
+            + " its extension (.md, .json or .html). This can be specified more than once.%n");
+    System.err.printf(
+        "    The other options are the same as %s.java, and applied to each repository.%n",
+        ReleaseNoteCreation.class.getSimpleName());
+    System.err.printf("%nExample:%n");
+    System.err.printf("    java -cp <classes> %s scalar-labs ScalarDB 4.0.0%n", name);
+  }
+
+  /**
+   * @param outputFiles the files to which the merged release note is also written in the formats of
+   *     their extensions
+   */
+  public ReleaseAll(
+      String owner,
+      String projectTitlePrefix,
+      String version,
+      ReleaseNoteCreation.Options options,
+      List<MergeReleaseNotes.Input> inputs,
+      List<Path> outputFiles) {
+    this(
+        ReleaseNoteCreation.createGitHubContext(
+            owner, projectTitlePrefix, version, inputs.get(0).repository.getName(), options),
+        options,
+        inputs,
+        outputFiles);
+  }
+
+  /** @param ghContext the context from which the contexts of the repositories are created */
+  ReleaseAll(
+      ReleaseNoteCreation.GitHubContext ghContext,
+      ReleaseNoteCreation.Options options,
+      List<MergeReleaseNotes.Input> inputs,
+      List<Path> outputFiles) {
+    this.ghContext = ghContext;
+    this.options = options;
+    this.inputs = inputs;
+    this.outputFiles = new ArrayList<>(outputFiles);
+    scheduler = ReleaseNoteCreation.createScheduler(options, new ReleaseNoteCreation.Metrics());
+    if (options.recordFile != null && options.replayFile != null) {
+      throw new IllegalArgumentException("--record and --replay can't be specified together");
+    } else if (options.recordFile != null) {
+      fixtures = ReleaseNoteCreation.GitHubFixtures.record(Paths.get(options.recordFile));
+    } else if (options.replayFile != null) {
+      try {
+        fixtures =
+            ReleaseNoteCreation.GitHubFixtures.replay(
+                Paths.get(options.replayFile), options.replayLatencyMillis);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    // All the repositories are recorded to or replayed from the same fixtures
+    if (fixtures != null) ghContext.setFixtures(fixtures);
+  }
+
+  /**
+   * Creates the release notes of the repositories concurrently, and then merges them in the order
+   * of the inputs. The merged release note is the same as the one merged from the markdown files.
+   */
+  public void createReleaseNotes() throws Exception {
+    List<ReleaseNoteCreation> creations = new ArrayList<>();
+    for (MergeReleaseNotes.Input input : inputs) {
+      ReleaseNoteCreation.Options repositoryOptions =
+          options.forRepository(input.repository.getName());
+      repositoryOptions.outputFiles.clear();
+      repositoryOptions.outputFiles.add(input.path.toString());
+      repositoryOptions.standardOutput = false;
+      ReleaseNoteCreation.GitHubContext repositoryContext =
+          ghContext.forRepository(input.repository.getName());
+      creations.add(new ReleaseNoteCreation(repositoryContext, repositoryOptions, scheduler));
+      // The project is listed for each repository, which would download the bodies of the PRs of
+      // all the repositories each time
+      repositoryContext.setBodiesListed(false);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, inputs.size()));
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (ReleaseNoteCreation creation : creations) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  creation.createReleaseNote();
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+      if (fixtures != null) {
+        try {
+          fixtures.save();
+        } catch (IOException e) {
+          System.err.println("WARN: failed writing the fixtures: " + e.getMessage());
+        }
+      }
+    }
+
+    MergeReleaseNotes merge = new MergeReleaseNotes(outputFiles);
+    for (int i = 0; i < inputs.size(); i++) {
+      MergeReleaseNotes.Input input = inputs.get(i);
+      ReleaseNoteCreation creation = creations.get(i);
+      merge.add(input.edition, input.repository, toMergedReleaseNotes(input, creation));
+      if (!creation.droppedPullRequests.isEmpty()) {
+        droppedPullRequests.put(input.repository.getName(), creation.droppedPullRequests);
+      }
+      if (creation.isDeadlineExceeded()) deadlineExceeded = true;
+    }
+    merge.output();
+  }
+
+  /**
+   * Converts the release note of a repository to the one to be merged. The texts are the same as
+   * the ones parsed from the markdown, i.e., the PR numbers are only kept in the community edition.
+   */
+  static Map<MergeReleaseNotes.Category, List<MergeReleaseNotes.ReleaseNote>> toMergedReleaseNotes(
+      MergeReleaseNotes.Input input, ReleaseNoteCreation creation) {
+    Map<MergeReleaseNotes.Category, List<MergeReleaseNotes.ReleaseNote>> releaseNotes =
+        new EnumMap<>(MergeReleaseNotes.Category.class);
+    for (Map.Entry<ReleaseNoteCreation.Category, List<ReleaseNoteCreation.ReleaseNoteText>> entry :
+        creation.categoryMap.entrySet()) {
+      if (entry.getValue().isEmpty()) continue;
+      MergeReleaseNotes.Category category =
+          MergeReleaseNotes.Category.getByDisplayName(entry.getKey().getDisplayName());
+      List<MergeReleaseNotes.ReleaseNote> texts = new ArrayList<>();
+      for (ReleaseNoteCreation.ReleaseNoteText rnText : entry.getValue()) {
+        texts.add(
+            MergeReleaseNotes.ReleaseNote.of(
+                input.edition, category, input.repository, rnText.text, rnText.prNumbers));
+      }
+      releaseNotes.put(category, texts);
+    }
+    return releaseNotes;
+  }
+}
@@ -1,20 +1,89 @@
 import static java.lang.String.format;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * ReleaseNoteCreation creates the body of the release note for a repository of Scalar products. The
@@ -29,22 +98,42 @@ import java.util.stream.Collectors;
 public class ReleaseNoteCreation {
 
   private static final String DEBUG = System.getenv("DEBUG");
-  private static final Pattern PATTERN_RELEASE_NOTE_TEXT = Pattern.compile("^ *-? *(\\p{Print}+)$");
-  private static final Pattern PATTERN_SAME_AS_TEXT =
-      Pattern.compile("^ *-? *[Ss]ame ?[Aa]s +#?([0-9]+) *$");
+  /** The exit code when some PRs were dropped from the release note since they failed. */
+  static final int EXIT_CODE_DROPPED_PULL_REQUESTS = 2;
+  /** The exit code when the release note is partial since the deadline of the run passed. */
+  static final int EXIT_CODE_DEADLINE_EXCEEDED = 3;
 
   private final GitHubContext ghContext;
+  private int batchSize = Options.DEFAULT_BATCH_SIZE;
+  private int parallelism = 1;
+  private boolean useVirtualThreads;
+  private Path snapshotFile;
+  private GitRange gitRange;
+  private boolean checkProject;
+  private final List<Path> outputFiles = new ArrayList<>();
+  private Path metricsFile;
+  private Deadline deadline = Deadline.NONE;
+  private boolean standardOutput = true;
+  private GitHubFixtures fixtures;
+  final Metrics metrics = new Metrics();
+  /** The PRs which failed to be processed and the reasons, in the order of the PR numbers. */
+  final Map<String, String> droppedPullRequests = new LinkedHashMap<>();
+  /** The PRs which weren't processed since the deadline passed, in the order of the PR numbers. */
+  final Set<String> unprocessedPullRequests = new LinkedHashSet<>();
+  /** Whether the deadline passed before all the PRs were listed. */
+  boolean listingIncomplete;
 
   final Map<Category, List<ReleaseNoteText>> categoryMap = new EnumMap<>(Category.class);
-  final Map<String, List<ReleaseNoteText>> sameAsItems = new HashMap<>();
+  /** The release note texts which are the same as other PRs, in the order they were added. */
+  final List<ReleaseNoteText> sameAsItems = new ArrayList<>();
+  /** All the added release note texts indexed by their PR number. */
+  final Map<String, ReleaseNoteText> releaseNoteTextIndex = new HashMap<>();
 
   public static void main(String... args) throws Exception {
-    if (args.length != 4) {
-      System.err.printf(
-          "Usage:%n    java %s.java <owner> <projectTitlePrefix> <version>"
-              + " <repository>%n%nExample:%n    java %s.java scalar-labs ScalarDB 4.0.0"
-              + " scalardb%n",
-          ReleaseNoteCreation.class.getSimpleName(), ReleaseNoteCreation.class.getSimpleName());
+    Options options = new Options();
+    List<String> arguments = options.parse(args);
+    if (arguments.size() != 4) {
+      printUsage();
       System.exit(1);
     }
 
@@ -53,133 +142,842 @@ public class ReleaseNoteCreation {
     parameters are passed in the workflow automatically. Therefore, the
     validation for the arguments is omitted.
     */
-    String owner = args[0];
-    String projectTitlePrefix = args[1];
-    String version = args[2];
-    String repository = args[3];
+    String owner = arguments.get(0);
+    String projectTitlePrefix = arguments.get(1);
+    String version = arguments.get(2);
+    String repository = arguments.get(3);
+
+    List<String> versions = Arrays.asList(version.split(" *, *"));
+    if (versions.size() > 1) {
+      Map<String, ReleaseNoteCreation> releaseNotes =
+          createReleaseNotes(
+              createGitHubContext(owner, projectTitlePrefix, versions.get(0), repository, options),
+              versions,
+              options);
+      if (releaseNotes.values().stream().anyMatch(ReleaseNoteCreation::isDeadlineExceeded)) {
+        System.exit(EXIT_CODE_DEADLINE_EXCEEDED);
+      } else if (releaseNotes.values().stream().anyMatch(rn -> !rn.droppedPullRequests.isEmpty())
+          && !options.allowDroppedPullRequests) {
+        System.exit(EXIT_CODE_DROPPED_PULL_REQUESTS);
+      }
+      return;
+    }
 
     ReleaseNoteCreation main =
-        new ReleaseNoteCreation(owner, projectTitlePrefix, version, repository);
+        new ReleaseNoteCreation(owner, projectTitlePrefix, version, repository, options);
+    if (options.servePort != null) {
+      // The server keeps running until the process is killed
+      ReleaseNoteDaemon daemon =
+          new ReleaseNoteDaemon(
+              main, new InetSocketAddress(InetAddress.getLoopbackAddress(), options.servePort));
+      daemon.load();
+      daemon.start();
+      return;
+    }
     main.createReleaseNote();
+    if (main.isDeadlineExceeded()) {
+      System.exit(EXIT_CODE_DEADLINE_EXCEEDED);
+    } else if (!main.droppedPullRequests.isEmpty() && !options.allowDroppedPullRequests) {
+      System.exit(EXIT_CODE_DROPPED_PULL_REQUESTS);
+    }
+  }
+
+  private static void printUsage() {
+    String name = ReleaseNoteCreation.class.getSimpleName();
+    System.err.printf("Usage:%n");
+    System.err.printf(
+        "    java %s.java [options] <owner> <projectTitlePrefix> <version> <repository>%n", name);
+    System.err.printf("%nOptions:%n");
+    System.err.printf(
+        "    --batch-size=<n>   Number of PRs fetched in one GraphQL query (default: %d)."
+            + " 1 disables the batched fetch.%n",
+        Options.DEFAULT_BATCH_SIZE);
+    System.err.printf(
+        "    --parallelism=<n>  Number of PRs (or batches) fetched in parallel (default: 1).%n");
+    System.err.printf(
+        "    --virtual-threads  Use virtual threads for the parallel fetch if available.%n");
+    System.err.printf(
+        "    --cache-dir=<dir>  Cache PRs in the directory and fetch only the updated PRs"
+            + " (default: $RELEASE_NOTE_CACHE_DIR). This can't be used with --batch-size=1.%n");
+    System.err.printf(
+        "    --cache-size=<n>   Maximum number of the cached PRs (default: %d).%n",
+        Options.DEFAULT_CACHE_SIZE);
+    System.err.printf("    --no-cache         Don't use the cache.%n");
+    System.err.printf(
+        "    --snapshot=<file>  Reuse the PRs in the snapshot of the last run and fetch only the"
+            + " added or updated PRs.%n");
+    System.err.printf(
+        "    --output=<file>    Also write the release note to the file in the format of its"
+            + " extension (.md, .json, .jsonl or .html). This can be specified more than once.%n");
+    System.err.printf(
+        "    --metrics=<file>   Write the timings and counters of the run to the file as JSON.%n");
+    System.err.printf(
+        "    --retry-budget=<n> Maximum number of the retries of the failed GitHub requests in"
+            + " the run (default: %d).%n",
+        RequestScheduler.DEFAULT_RETRY_BUDGET);
+    System.err.printf(
+        "    --allow-dropped-prs Exit with 0 even if some PRs couldn't be processed. Otherwise,"
+            + " exit with %d after listing them.%n",
+        EXIT_CODE_DROPPED_PULL_REQUESTS);
+    System.err.printf(
+        "    --deadline=<sec>   Deadline of the whole run. The release note is created from the"
+            + " PRs processed before it, and the script exits with %d after listing the others.%n",
+        EXIT_CODE_DEADLINE_EXCEEDED);
+    System.err.printf(
+        "    --git-range=<from>..<to> List the PRs merged in the range of the git history instead"
+            + " of the project.%n");
+    System.err.printf(
+        "    --git-dir=<dir>    The local clone of the repository for --git-range (default: .).%n");
+    System.err.printf(
+        "    --check-project    Warn about the PRs in the git range which are missing from the"
+            + " project.%n");
+    System.err.printf(
+        "    --record=<file>    Record the responses from GitHub to the fixture file.%n");
+    System.err.printf(
+        "    --replay=<file>    Replay the responses in the fixture file instead of calling"
+            + " GitHub.%n");
+    System.err.printf(
+        "    --replay-latency=<recorded|ms> Latency injected into each replayed response"
+            + " (default: recorded).%n");
+    System.err.printf(
+        "    --serve=<port>     Keep running and serve the release note on the local port, which"
+            + " is updated when a PR is notified to be changed.%n");
+    System.err.printf(
+        "    --client=<gh|http> Call GitHub with the gh command or the built-in HTTP client"
+            + " (default: gh).%n");
+    System.err.printf(
+        "%nThe version can be a comma-separated list of versions, e.g., 3.12.3,3.13.1. Then the"
+            + " PRs in their projects are fetched once, and the release note of each version is"
+            + " written to the output files with the version inserted before the extension"
+            + " (default: <version>.md).%n");
+    System.err.printf("%nExample:%n");
+    System.err.printf("    java %s.java scalar-labs ScalarDB 4.0.0 scalardb%n", name);
   }
 
   public ReleaseNoteCreation(
       String owner, String projectTitlePrefix, String version, String repository) {
-    ghContext = new GitHubContext(owner, projectTitlePrefix, version, repository);
+    this(owner, projectTitlePrefix, version, repository, new Options());
+  }
+
+  public ReleaseNoteCreation(
+      String owner, String projectTitlePrefix, String version, String repository, Options options) {
+    this(createGitHubContext(owner, projectTitlePrefix, version, repository, options), options);
+  }
+
+  ReleaseNoteCreation(GitHubContext ghContext, Options options) {
+    this(ghContext, options, null);
+  }
+
+  /**
+   * @param scheduler the scheduler shared with the other release notes created in the same run, or
+   *     null to create one from the options. Its deadline is the deadline of the release note.
+   */
+  ReleaseNoteCreation(GitHubContext ghContext, Options options, RequestScheduler scheduler) {
+    this.ghContext = ghContext;
+    ghContext.setMetrics(metrics);
+    if (options.deadlineSeconds > 0 && options.servePort != null) {
+      throw new IllegalArgumentException("--deadline can't be used with --serve");
+    }
+    // The PRs fetched with gh pr view for each field can't be cached
+    if (options.cacheDirectory != null && options.batchSize <= 1) {
+      throw new IllegalArgumentException(
+          "--cache-dir (or $RELEASE_NOTE_CACHE_DIR) can't be used with --batch-size=1."
+              + " Specify --no-cache to disable the cache");
+    }
+    if (scheduler == null) scheduler = createScheduler(options, metrics);
+    deadline = scheduler.getDeadline();
+    ghContext.setScheduler(scheduler);
+    ghContext.setBatchSize(options.batchSize);
+    // The bodies read from the cache or the snapshot shouldn't be listed on every run
+    ghContext.setBodiesListed(options.cacheDirectory == null && options.snapshotFile == null);
+    batchSize = Math.max(options.batchSize, 1);
+    parallelism = options.parallelism;
+    useVirtualThreads = options.useVirtualThreads;
+    if (options.cacheDirectory != null) {
+      Path cacheDirectory = Paths.get(options.cacheDirectory);
+      ghContext.setCache(new PullRequestCache(cacheDirectory, options.cacheSize));
+      ghContext.setProjectIndex(new ProjectIndex(cacheDirectory.resolve("projects.index")));
+    }
+    if (options.snapshotFile != null) snapshotFile = Paths.get(options.snapshotFile);
+    if (options.gitRange != null) {
+      gitRange = new GitRange(Paths.get(options.gitDirectory), options.gitRange, metrics);
+      checkProject = options.checkProject;
+    }
+    options.outputFiles.forEach(file -> outputFiles.add(Paths.get(file)));
+    if (options.metricsFile != null) metricsFile = Paths.get(options.metricsFile);
+    standardOutput = options.standardOutput;
+    if (options.recordFile != null && options.replayFile != null) {
+      throw new IllegalArgumentException("--record and --replay can't be specified together");
+    } else if (options.recordFile != null) {
+      fixtures = GitHubFixtures.record(Paths.get(options.recordFile));
+    } else if (options.replayFile != null) {
+      try {
+        fixtures =
+            GitHubFixtures.replay(Paths.get(options.replayFile), options.replayLatencyMillis);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    if (fixtures != null) ghContext.setFixtures(fixtures);
+  }
+
+  /**
+   * Creates the scheduler of the requests of a run. The retry budget and the deadline, which starts
+   * now, are of the whole run.
+   */
+  static RequestScheduler createScheduler(Options options, Metrics metrics) {
+    RequestScheduler scheduler =
+        new RequestScheduler(options.parallelism, options.retryBudget, metrics);
+    if (options.deadlineSeconds > 0) {
+      scheduler.setDeadline(Deadline.after(Duration.ofSeconds(options.deadlineSeconds)));
+    }
+    return scheduler;
+  }
+
+  static GitHubContext createGitHubContext(
+      String owner, String projectTitlePrefix, String version, String repository, Options options) {
+    switch (options.client) {
+      case "gh":
+        return new GitHubContext(owner, projectTitlePrefix, version, repository);
+      case "http":
+        // The token isn't needed to replay the responses
+        return HttpGitHubContext.fromEnvironment(
+            owner, projectTitlePrefix, version, repository, options.replayFile == null);
+      default:
+        throw new IllegalArgumentException("Unknown client: " + options.client);
+    }
   }
 
   /** This constructor is only for test */
   public ReleaseNoteCreation(GitHubContext ghContext) {
     this.ghContext = ghContext;
+    ghContext.setMetrics(metrics);
+    ghContext.setScheduler(new RequestScheduler(1, RequestScheduler.DEFAULT_RETRY_BUDGET, metrics));
   }
 
+  /**
+   * Creates the release note. The wall time of each phase is recorded in {@link #metrics}, and the
+   * metrics are written to the metrics file at the end even if the run fails. The PRs which were
+   * dropped since they failed even after the retries are listed at the end.
+   *
+   * <p>If the deadline passes, the PRs which are still being processed are cancelled, and the
+   * release note is created from the PRs processed before it. The unprocessed PRs are listed at the
+   * end.
+   */
   public void createReleaseNote() throws Exception {
-    String projectId = ghContext.getProjectId();
-    List<String> prNumbers = ghContext.getPullRequestNumbers(projectId);
-
-    for (String prNumber : prNumbers) {
+    try {
       try {
-        System.err.println("INFO: Processing PR: " + prNumber);
-        extractReleaseNoteInfo(prNumber);
+        processPullRequests();
       } catch (Exception e) {
-        System.err.println("ERROR: failed processing the PR: " + prNumber);
-        e.printStackTrace();
+        if (!deadline.hasPassed()) throw e;
+        listingIncomplete = true;
+        System.err.println("ERROR: the deadline passed before all the PRs were listed: " + e);
       }
+
+      metrics.runPhase("assortSameAsItems", this::assortSameAsItems);
+      metrics.runPhase("outputReleaseNote", this::outputReleaseNote);
+      reportDroppedPullRequests();
+      reportUnprocessedPullRequests();
+    } finally {
+      saveFixturesAndMetrics();
+    }
+  }
+
+  private void processPullRequests() throws Exception {
+    // The project isn't needed to list the PRs in the git range
+    String projectId =
+        gitRange == null || checkProject
+            ? metrics.phase("getProjectId", ghContext::getProjectId)
+            : null;
+
+    ExecutorService executor = createExecutor();
+    try {
+      metrics.runPhase(
+          "processPullRequests",
+          () -> {
+            if (gitRange != null) {
+              List<String> prNumbers =
+                  metrics.time("listPullRequests", gitRange::pullRequestNumbers);
+              if (projectId != null) reportMissingFromProject(projectId, prNumbers);
+              if (snapshotFile != null) {
+                processPullRequestsIncrementally(prNumbers, executor);
+              } else {
+                processPullRequests(prNumbers.iterator(), executor);
+              }
+            } else if (snapshotFile != null) {
+              List<String> prNumbers =
+                  metrics.time(
+                      "listPullRequests", () -> ghContext.getPullRequestNumbers(projectId));
+              processPullRequestsIncrementally(prNumbers, executor);
+            } else {
+              processPullRequests(
+                  metrics.timeIterator("listPullRequests", ghContext.pullRequestNumbers(projectId)),
+                  executor);
+            }
+          });
+    } finally {
+      executor.shutdownNow();
     }
+  }
 
-    assortSameAsItems();
-    outputReleaseNote();
+  /** Whether the release note is partial since the deadline passed. */
+  boolean isDeadlineExceeded() {
+    return listingIncomplete || !unprocessedPullRequests.isEmpty();
   }
 
-  void extractReleaseNoteInfo(String prNumber) throws Exception {
-    if (!ghContext.isPullRequestMerged(prNumber)) return;
+  /**
+   * Creates the release notes of the versions of the repository at once, e.g., of the patch
+   * releases cut at the same time. The projects of all the versions are listed first, and each
+   * distinct PR in them is fetched and parsed only once, even if it's backported to all the
+   * versions. Then the release note of each version is created from the parsed texts of its PRs,
+   * and written to the output files whose names have the version inserted before the extension,
+   * e.g., {@code release-note.3.12.3.md}, or to {@code <version>.md} if no output file is given.
+   *
+   * @param ghContext the context from which the contexts of the versions are created
+   * @return the release note of each version, in the order of the versions
+   */
+  static Map<String, ReleaseNoteCreation> createReleaseNotes(
+      GitHubContext ghContext, List<String> versions, Options options) throws Exception {
+    if (options.gitRange != null || options.snapshotFile != null || options.servePort != null) {
+      throw new IllegalArgumentException(
+          "--git-range, --snapshot and --serve can't be used with multiple versions");
+    }
+    // This fetches the PRs of all the versions, and records or replays them if specified
+    ReleaseNoteCreation fetcher = new ReleaseNoteCreation(ghContext, options);
+    Map<String, ReleaseNoteCreation> releaseNotes = new LinkedHashMap<>();
+    for (String version : versions) {
+      // The versions share the retry budget and the deadline of the run
+      releaseNotes.put(
+          version,
+          new ReleaseNoteCreation(
+              ghContext.forVersion(version), options.forVersion(version), ghContext.scheduler));
+    }
 
-    Category category = ghContext.getCategoryFromPullRequest(prNumber);
-    BufferedReader br = ghContext.getPullRequestBody(prNumber);
+    try {
+      Map<String, List<String>> prNumbers = new LinkedHashMap<>();
+      Set<String> distinctPrNumbers = new LinkedHashSet<>();
+      fetcher.metrics.runPhase(
+          "listPullRequests",
+          () -> {
+            for (Map.Entry<String, ReleaseNoteCreation> entry : releaseNotes.entrySet()) {
+              GitHubContext versionContext = entry.getValue().ghContext;
+              List<String> versionPrNumbers =
+                  versionContext.getPullRequestNumbers(versionContext.getProjectId());
+              prNumbers.put(entry.getKey(), versionPrNumbers);
+              distinctPrNumbers.addAll(versionPrNumbers);
+            }
+          });
+      System.err.printf(
+          "INFO: %d distinct PRs of %d in the projects of %d versions are fetched%n",
+          distinctPrNumbers.size(),
+          prNumbers.values().stream().mapToInt(List::size).sum(),
+          versions.size());
 
-    String line;
-    while ((line = br.readLine()) != null) {
-      if (Pattern.matches("^## *[Rr]elease *[Nn]otes? *", line)) {
-        break;
+      Map<String, ReleaseNoteText> releaseNoteTexts;
+      ExecutorService executor = fetcher.createExecutor();
+      try {
+        releaseNoteTexts =
+            fetcher.metrics.phase(
+                "processPullRequests",
+                () -> fetcher.fetchReleaseNoteTexts(new ArrayList<>(distinctPrNumbers), executor));
+      } finally {
+        executor.shutdownNow();
+      }
+
+      for (Map.Entry<String, ReleaseNoteCreation> entry : releaseNotes.entrySet()) {
+        ReleaseNoteCreation releaseNote = entry.getValue();
+        for (String prNumber : prNumbers.get(entry.getKey())) {
+          ReleaseNoteText releaseNoteText = releaseNoteTexts.get(prNumber);
+          String reason = fetcher.droppedPullRequests.get(prNumber);
+          if (reason != null) {
+            releaseNote.droppedPullRequests.put(prNumber, reason);
+          } else if (fetcher.unprocessedPullRequests.contains(prNumber)) {
+            releaseNote.unprocessedPullRequests.add(prNumber);
+          } else if (releaseNoteText != null) {
+            // The texts are copied since the topic texts are changed when they are merged
+            releaseNote.addReleaseNoteText(releaseNoteText.copy());
+          }
+        }
+        releaseNote.assortSameAsItems();
+        releaseNote.outputReleaseNote();
+        if (!releaseNote.droppedPullRequests.isEmpty() || releaseNote.isDeadlineExceeded()) {
+          System.err.println("ERROR: the release note of " + entry.getKey() + " is incomplete");
+          releaseNote.reportDroppedPullRequests();
+          releaseNote.reportUnprocessedPullRequests();
+        }
       }
+      return releaseNotes;
+    } finally {
+      fetcher.saveFixturesAndMetrics();
     }
+  }
 
-    ReleaseNoteText releaseNoteText = extractReleaseNoteText(category, prNumber, br);
-    if (releaseNoteText != null) {
-      categorizeReleaseNoteText(releaseNoteText);
+  private void saveFixturesAndMetrics() {
+    if (fixtures != null) {
+      try {
+        fixtures.save();
+      } catch (IOException e) {
+        System.err.println("WARN: failed writing the fixtures: " + e.getMessage());
+      }
+    }
+    if (metricsFile != null) {
+      try {
+        metrics.write(metricsFile);
+      } catch (IOException e) {
+        System.err.println("WARN: failed writing the metrics: " + e.getMessage());
+      }
     }
   }
 
-  private ReleaseNoteText extractReleaseNoteText(
-      Category category, String prNumber, BufferedReader br) throws Exception {
-    ReleaseNoteText releaseNoteText = new ReleaseNoteText();
-    releaseNoteText.category = category;
-    releaseNoteText.prNumbers.add(prNumber);
+  void processPullRequests(List<String> prNumbers, ExecutorService executor) throws Exception {
+    processPullRequests(prNumbers.iterator(), executor);
+  }
+
+  /**
+   * Fetches and parses the PRs on the given executor, and then adds the results to {@code
+   * categoryMap} and {@code sameAsItems} in the order of the given PR numbers on the calling
+   * thread. So the release note is the same regardless of the parallelism.
+   *
+   * <p>The PR numbers are consumed as they arrive, and each batch of PRs starts being fetched as
+   * soon as it's filled, while the following PR numbers are still being listed.
+   */
+  void processPullRequests(Iterator<String> prNumberIterator, ExecutorService executor)
+      throws Exception {
+    List<String> prNumbers = new ArrayList<>();
+    List<Future<ReleaseNoteText>> futures = new ArrayList<>();
+    List<String> batch = new ArrayList<>();
+    try {
+      while (prNumberIterator.hasNext()) {
+        batch.add(prNumberIterator.next());
+        if (batch.size() >= batchSize) {
+          submitBatch(batch, executor, prNumbers, futures);
+          batch = new ArrayList<>();
+        }
+      }
+    } catch (RuntimeException e) {
+      if (!deadline.hasPassed()) throw e;
+      // The PRs listed before the deadline are still added
+      listingIncomplete = true;
+      System.err.println("ERROR: the deadline passed before all the PRs were listed: " + e);
+    }
+    submitBatch(batch, executor, prNumbers, futures);
 
-    String line;
-    while ((line = br.readLine()) != null) {
-      if (Pattern.matches("^## *.*", line))
-        break; // Reached to the next section header (ended release note section)
-      if (Pattern.matches("^ *-? *N/?A *$", line)) return null; // This PR is not user-facing
+    for (int i = 0; i < prNumbers.size(); i++) {
+      try {
+        ReleaseNoteText releaseNoteText = await(futures.get(i), executor);
+        if (releaseNoteText != null) addReleaseNoteText(releaseNoteText);
+      } catch (ExecutionException e) {
+        dropPullRequest(prNumbers.get(i), e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #processPullRequests(Iterator, ExecutorService)}, but the release note texts are
+   * returned by PR number instead of being added. The PRs which don't have a release note or were
+   * dropped aren't in the returned map.
+   */
+  Map<String, ReleaseNoteText> fetchReleaseNoteTexts(
+      List<String> prNumbers, ExecutorService executor) throws Exception {
+    List<String> processedPrNumbers = new ArrayList<>();
+    List<Future<ReleaseNoteText>> futures = new ArrayList<>();
+    for (int from = 0; from < prNumbers.size(); from += batchSize) {
+      List<String> batch =
+          new ArrayList<>(prNumbers.subList(from, Math.min(from + batchSize, prNumbers.size())));
+      submitBatch(batch, executor, processedPrNumbers, futures);
+    }
+
+    Map<String, ReleaseNoteText> releaseNoteTexts = new HashMap<>();
+    for (int i = 0; i < processedPrNumbers.size(); i++) {
+      try {
+        ReleaseNoteText releaseNoteText = await(futures.get(i), executor);
+        if (releaseNoteText != null)
+          releaseNoteTexts.put(processedPrNumbers.get(i), releaseNoteText);
+      } catch (ExecutionException e) {
+        dropPullRequest(processedPrNumbers.get(i), e.getCause());
+      }
+    }
+    return releaseNoteTexts;
+  }
+
+  /**
+   * Same as {@link #processPullRequests(Iterator, ExecutorService)}, but only the PRs which were
+   * added or updated since the snapshot of the last run are fetched and parsed. The parsed results
+   * of the other PRs are read from the snapshot. The results are added in the order of the given PR
+   * numbers in either case, so the release note is the same as the one created from scratch. The
+   * snapshot is updated with the results at the end.
+   */
+  void processPullRequestsIncrementally(List<String> prNumbers, ExecutorService executor)
+      throws Exception {
+    ReleaseNoteSnapshot snapshot = ReleaseNoteSnapshot.load(snapshotFile, snapshotKey());
+    Map<String, String> updatedAts = ghContext.fetchUpdatedAts(prNumbers, executor);
+
+    List<String> targets = new ArrayList<>();
+    for (String prNumber : prNumbers) {
+      if (!snapshot.isUpToDate(prNumber, updatedAts.get(prNumber))) targets.add(prNumber);
+    }
+    System.err.printf(
+        "INFO: %d of %d PRs are read from the snapshot%n",
+        prNumbers.size() - targets.size(), prNumbers.size());
+
+    List<String> processedPrNumbers = new ArrayList<>();
+    List<Future<ReleaseNoteText>> futures = new ArrayList<>();
+    for (int from = 0; from < targets.size(); from += batchSize) {
+      List<String> batch =
+          new ArrayList<>(targets.subList(from, Math.min(from + batchSize, targets.size())));
+      submitBatch(batch, executor, processedPrNumbers, futures);
+    }
 
-      Matcher releseNoteTextMatcher =
-          PATTERN_RELEASE_NOTE_TEXT.matcher(line); // Extract Release note text
-      if (releseNoteTextMatcher.matches()) {
-        if (!Pattern.matches("^ *-? *[Ss]ame ?[Aa]s +#?([0-9]+) *$", line)) {
-          String matched = releseNoteTextMatcher.group(1);
-          if (DEBUG != null) System.err.printf("matched: %s%n", matched);
-          releaseNoteText.text = releseNoteTextMatcher.group(1);
+    int processed = 0;
+    for (String prNumber : prNumbers) {
+      ReleaseNoteText releaseNoteText;
+      if (processed < processedPrNumbers.size()
+          && processedPrNumbers.get(processed).equals(prNumber)) {
+        try {
+          releaseNoteText = await(futures.get(processed++), executor);
+        } catch (ExecutionException e) {
+          dropPullRequest(prNumber, e.getCause());
+          snapshot.remove(prNumber); // Retry it in the next run
+          continue;
         }
+        snapshot.put(prNumber, updatedAts.get(prNumber), releaseNoteText);
+      } else {
+        metrics.increment(Metrics.SNAPSHOT_HITS);
+        releaseNoteText = snapshot.get(prNumber);
       }
+      if (releaseNoteText != null) addReleaseNoteText(releaseNoteText);
+    }
+
+    snapshot.retainAll(prNumbers);
+    snapshot.save();
+  }
+
+  /**
+   * Waits for the result of a PR until the deadline. If the deadline passes, the PR fails with a
+   * {@link DeadlineExceededException}, and the PRs still being processed on the executor are
+   * cancelled by interrupting them since cancelling the future doesn't interrupt its task.
+   */
+  private <T> T await(Future<T> future, ExecutorService executor)
+      throws ExecutionException, InterruptedException {
+    try {
+      return future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      executor.shutdownNow();
+      throw new ExecutionException(
+          new DeadlineExceededException("The deadline passed while processing the PR"));
+    }
+  }
+
+  /**
+   * Fails the PR if the deadline has passed, so that a PR isn't started after it. This is checked
+   * in the task since the tasks run on the calling thread with the parallelism 1, where the
+   * deadline can't be awaited.
+   */
+  private void checkDeadline() {
+    if (deadline.hasPassed()) {
+      throw new CompletionException(
+          new DeadlineExceededException("The deadline passed before processing the PR"));
+    }
+  }
+
+  private static boolean causedByDeadline(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof DeadlineExceededException) return true;
+    }
+    return false;
+  }
+
+  private void dropPullRequest(String prNumber, Throwable cause) {
+    if (causedByDeadline(cause)) {
+      // Not a failure of the PR itself, so it's listed separately
+      metrics.increment(Metrics.PRS_UNPROCESSED);
+      unprocessedPullRequests.add(prNumber);
+      return;
+    }
+    metrics.increment(Metrics.PRS_FAILED);
+    droppedPullRequests.put(prNumber, String.valueOf(cause));
+    System.err.println("ERROR: failed processing the PR: " + prNumber);
+    cause.printStackTrace();
+  }
+
+  /** Lists the dropped PRs so that they are not silently missing from the release note. */
+  private void reportDroppedPullRequests() {
+    if (droppedPullRequests.isEmpty()) return;
+    System.err.printf(
+        "ERROR: %d PRs are missing from the release note since they couldn't be processed:%n",
+        droppedPullRequests.size());
+    droppedPullRequests.forEach(
+        (prNumber, reason) -> System.err.printf("ERROR:   #%s: %s%n", prNumber, reason));
+  }
+
+  /** Lists the PRs of the release, which are in the git range or in the project. */
+  List<String> listPullRequests(String projectId) throws Exception {
+    return gitRange != null
+        ? gitRange.pullRequestNumbers()
+        : ghContext.getPullRequestNumbers(projectId);
+  }
+
+  /**
+   * Lists the PRs which weren't processed before the deadline, so that the partial release note is
+   * not mistaken for the complete one.
+   */
+  void reportUnprocessedPullRequests() {
+    if (!isDeadlineExceeded()) return;
+    System.err.printf(
+        "ERROR: the deadline passed. %d PRs are missing from the release note since they weren't"
+            + " processed%s:%n",
+        unprocessedPullRequests.size(),
+        listingIncomplete ? ", and the PRs which weren't listed are also missing" : "");
+    unprocessedPullRequests.forEach(prNumber -> System.err.printf("ERROR:   #%s%n", prNumber));
+  }
+
+  private String snapshotKey() {
+    return format(
+        "%s/%s %s",
+        ghContext.owner,
+        ghContext.repository,
+        gitRange == null ? ghContext.getProjectTitle() : gitRange.range);
+  }
+
+  /**
+   * Warns about the PRs in the git range which aren't in the project, e.g., the ones which were
+   * forgotten to be added to the project. They are still in the release note.
+   */
+  void reportMissingFromProject(String projectId, List<String> prNumbers) throws Exception {
+    Set<String> projectPrNumbers =
+        new HashSet<>(
+            metrics.time(
+                "listProjectPullRequests", () -> ghContext.getPullRequestNumbers(projectId)));
+    List<String> missing =
+        prNumbers.stream()
+            .filter(prNumber -> !projectPrNumbers.contains(prNumber))
+            .collect(Collectors.toList());
+    if (missing.isEmpty()) return;
+
+    System.err.printf(
+        "WARN: %d PRs in %s are missing from the project %s%n",
+        missing.size(), gitRange.range, ghContext.getProjectTitle());
+    for (String prNumber : missing) System.err.printf("WARN:   #%s%n", prNumber);
+  }
+
+  private void submitBatch(
+      List<String> batch,
+      ExecutorService executor,
+      List<String> prNumbers,
+      List<Future<ReleaseNoteText>> futures) {
+    if (batch.isEmpty()) return;
+
+    // The PRs in the batch are fetched at once first, and then each of them is parsed
+    CompletableFuture<Void> fetched =
+        CompletableFuture.runAsync(
+            () -> {
+              checkDeadline();
+              prefetchPullRequests(batch);
+            },
+            executor);
+    for (String prNumber : batch) {
+      prNumbers.add(prNumber);
+      futures.add(
+          fetched.thenApplyAsync(
+              v -> {
+                checkDeadline();
+                System.err.println("INFO: Processing PR: " + prNumber);
+                try {
+                  return fetchReleaseNoteText(prNumber);
+                } catch (Exception e) {
+                  throw new CompletionException(e);
+                }
+              },
+              executor));
+    }
+  }
+
+  private void prefetchPullRequests(List<String> batch) {
+    try {
+      ghContext.fetchPullRequests(batch);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    }
+  }
 
-      Matcher sameAsTextMatcher = PATTERN_SAME_AS_TEXT.matcher(line); // It has a related PR
-      if (sameAsTextMatcher.matches()) {
-        String topicPrNumber = sameAsTextMatcher.group(1);
-        if (DEBUG != null)
-          System.err.printf("PR:%s sameAs:%s%n", releaseNoteText.prNumbers.get(0), topicPrNumber);
-        List<ReleaseNoteText> relatedPrs =
-            sameAsItems.computeIfAbsent(topicPrNumber, k -> new ArrayList<>());
-        relatedPrs.add(releaseNoteText);
-        sameAsItems.put(topicPrNumber, relatedPrs);
+  private ExecutorService createExecutor() {
+    if (parallelism <= 1) return new DirectExecutorService();
+    if (useVirtualThreads) {
+      try {
+        ExecutorService executor =
+            (ExecutorService)
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        return new BoundedExecutorService(executor, parallelism);
+      } catch (ReflectiveOperationException e) {
+        System.err.println("WARN: virtual threads are not available. Use platform threads.");
       }
     }
+    return Executors.newFixedThreadPool(parallelism);
+  }
+
+  void extractReleaseNoteInfo(String prNumber) throws Exception {
+    ReleaseNoteText releaseNoteText = fetchReleaseNoteText(prNumber);
+    if (releaseNoteText != null) {
+      addReleaseNoteText(releaseNoteText);
+    }
+  }
+
+  /**
+   * Fetches the PR and parses its release note section. This method can be called from multiple
+   * threads since it doesn't touch {@code categoryMap} and {@code sameAsItems}.
+   *
+   * <p>A PR which says N/A after "Same as" lines is still merged into the PRs which it's the same
+   * as, the same as the sequential run before.
+   *
+   * @return the release note text, or null if the PR isn't merged or isn't user-facing
+   */
+  ReleaseNoteText fetchReleaseNoteText(String prNumber) throws Exception {
+    if (!metrics.time("isPullRequestMerged", () -> ghContext.isPullRequestMerged(prNumber))) {
+      metrics.increment(Metrics.PRS_UNMERGED);
+      return null;
+    }
+
+    Category category =
+        metrics.time(
+            "getCategoryFromPullRequest", () -> ghContext.getCategoryFromPullRequest(prNumber));
+    ReleaseNoteSection section;
+    // Closing the reader stops reading the rest of the body after the release note section
+    try (BufferedReader br =
+        metrics.time("getPullRequestBody", () -> ghContext.getPullRequestBody(prNumber))) {
+      section = ReleaseNoteSectionParser.parse(br);
+    }
+    if (section.kind == ReleaseNoteSection.Kind.NOT_APPLICABLE) {
+      metrics.increment(Metrics.PRS_NOT_APPLICABLE);
+      if (section.sameAsPrNumbers.isEmpty()) return null;
+    } else {
+      metrics.increment(Metrics.PRS_MERGED);
+    }
 
+    ReleaseNoteText releaseNoteText = new ReleaseNoteText();
+    releaseNoteText.category = category;
+    releaseNoteText.prNumbers.add(prNumber);
+    releaseNoteText.text = section.text;
+    releaseNoteText.sameAsPrNumbers.addAll(section.sameAsPrNumbers);
+    if (DEBUG != null) {
+      if (section.text != null) System.err.printf("matched: %s%n", section.text);
+      for (String topicPrNumber : section.sameAsPrNumbers) {
+        System.err.printf("PR:%s sameAs:%s%n", prNumber, topicPrNumber);
+      }
+    }
     return releaseNoteText;
   }
 
+  void addReleaseNoteText(ReleaseNoteText releaseNoteText) {
+    releaseNoteTextIndex.putIfAbsent(releaseNoteText.prNumbers.get(0), releaseNoteText);
+    if (!releaseNoteText.sameAsPrNumbers.isEmpty()) sameAsItems.add(releaseNoteText);
+    categorizeReleaseNoteText(releaseNoteText);
+  }
+
+  /**
+   * Returns the release note section (from its header to the line before the next header) of the PR
+   * body, or an empty string if the body doesn't have the section.
+   */
+  static String extractReleaseNoteSection(String body) {
+    StringBuilder section = null;
+    int length = body.length();
+    for (int start = 0; start < length; ) {
+      int end = ReleaseNoteSectionParser.lineEnd(body, start);
+      if (section == null) {
+        if (ReleaseNoteSectionParser.isReleaseNoteHeader(body, start, end)) {
+          section = new StringBuilder(end - start + 1);
+        }
+      } else if (ReleaseNoteSectionParser.isHeader(body, start, end)) {
+        break;
+      }
+      if (section != null) section.append(body, start, end).append('\n');
+      start = ReleaseNoteSectionParser.nextLineStart(body, end);
+    }
+    return section == null ? "" : section.toString();
+  }
+
   private void categorizeReleaseNoteText(ReleaseNoteText rnText) {
     setMiscellaneousCategoryIfCategoryIsNull(rnText);
-    Arrays.stream(Category.values())
-        .forEach(
-            category -> {
-              if (rnText.category.equals(category)) {
-                List<ReleaseNoteText> releaseNoteTexts =
-                    categoryMap.computeIfAbsent(category, k -> new ArrayList<>());
-                if (!isContainedInSameAsItems(rnText)) releaseNoteTexts.add(rnText);
-                categoryMap.put(category, releaseNoteTexts);
-              }
-            });
+    List<ReleaseNoteText> releaseNoteTexts =
+        categoryMap.computeIfAbsent(rnText.category, k -> new ArrayList<>());
+    // The texts which are the same as other PRs are merged into them in assortSameAsItems()
+    if (rnText.sameAsPrNumbers.isEmpty()) releaseNoteTexts.add(rnText);
   }
 
+  /**
+   * Merges each release note text which is the same as other PRs into the topic PRs, in the order
+   * the texts were added. A chain like "#3 is the same as #2, which is the same as #1" is resolved
+   * to the topic PR #1 in any category. If the PRs are the same as each other in a cycle, the PR
+   * with the smallest number in the cycle becomes the topic PR. The texts whose topic PR isn't in
+   * the release note (e.g., not merged or N/A) are dropped.
+   */
   void assortSameAsItems() {
-    for (Entry<String, List<ReleaseNoteText>> entry : sameAsItems.entrySet()) {
-      String topicPrNumber = entry.getKey();
-      List<ReleaseNoteText> releaseNoteTextsInSameAs = entry.getValue();
-
-      Arrays.stream(Category.values())
-          .forEach(
-              category -> {
-                List<ReleaseNoteText> releaseNoteTextsInACategory = categoryMap.get(category);
-                if (releaseNoteTextsInACategory != null) {
-                  releaseNoteTextsInACategory.forEach(
-                      rnInfo -> {
-                        if (rnInfo.prNumbers.get(0).equals(topicPrNumber)) {
-                          releaseNoteTextsInSameAs.forEach(from -> merge(from, rnInfo));
-                        }
-                      });
-                }
-              });
+    Map<String, ReleaseNoteText> topics = new HashMap<>();
+    for (ReleaseNoteText rnText : sameAsItems) {
+      List<ReleaseNoteText> mergedTopics = new ArrayList<>(1);
+      for (String topicPrNumber : rnText.sameAsPrNumbers) {
+        ReleaseNoteText topic = resolveTopic(topicPrNumber, topics);
+        if (topic == null) {
+          System.err.printf(
+              "WARN: PR #%s is the same as #%s, which isn't in the release note%n",
+              rnText.prNumbers.get(0), topicPrNumber);
+        } else if (topic != rnText && !containsIdentical(mergedTopics, topic)) {
+          merge(rnText, topic);
+          mergedTopics.add(topic);
+        }
+      }
+    }
+  }
+
+  /**
+   * Follows the "Same as" links from the PR to its topic PR. The topic of each PR on the way is
+   * memoized in {@code topics}, so each link is followed only once in total.
+   *
+   * @return the topic release note text, or null if the link is dangling
+   */
+  private ReleaseNoteText resolveTopic(String prNumber, Map<String, ReleaseNoteText> topics) {
+    List<String> path = new ArrayList<>();
+    Map<String, Integer> positions = new HashMap<>();
+    String current = prNumber;
+    ReleaseNoteText topic;
+    while (true) {
+      if (topics.containsKey(current)) {
+        topic = topics.get(current);
+        break;
+      }
+      ReleaseNoteText rnText = releaseNoteTextIndex.get(current);
+      if (rnText == null || rnText.sameAsPrNumbers.isEmpty()) {
+        topic = rnText;
+        break;
+      }
+      Integer cycleStart = positions.putIfAbsent(current, path.size());
+      if (cycleStart != null) {
+        topic = breakCycle(path.subList(cycleStart, path.size()));
+        break;
+      }
+      path.add(current);
+      current = rnText.sameAsPrNumbers.get(0);
+    }
+
+    for (String prNumberOnPath : path) topics.put(prNumberOnPath, topic);
+    return topic;
+  }
+
+  private ReleaseNoteText breakCycle(List<String> cycle) {
+    String topicPrNumber = cycle.stream().min(Comparator.comparing(Long::parseLong)).orElseThrow();
+    System.err.printf(
+        "WARN: PRs %s are the same as each other. They are merged into #%s%n",
+        cycle, topicPrNumber);
+    ReleaseNoteText topic = releaseNoteTextIndex.get(topicPrNumber);
+    categoryMap.computeIfAbsent(topic.category, k -> new ArrayList<>()).add(topic);
+    return topic;
+  }
+
+  private static boolean containsIdentical(List<ReleaseNoteText> rnTexts, ReleaseNoteText rnText) {
+    for (ReleaseNoteText element : rnTexts) {
+      if (element == rnText) return true;
     }
+    return false;
   }
 
   private void merge(ReleaseNoteText from, ReleaseNoteText to) {
@@ -190,32 +988,65 @@ public class ReleaseNoteCreation {
     to.prNumbers.addAll(from.prNumbers);
   }
 
+  /**
+   * Outputs the release note as a markdown to standard output unless it's disabled, and also to the
+   * output files in their formats. The release note is walked once for all the formats, and each of
+   * them is written through a buffered writer.
+   */
   void outputReleaseNote() {
-    StringBuilder builder = new StringBuilder();
-    builder.append("## Summary\n\n");
-
-    Arrays.stream(Category.values())
-        .forEach(
-            category -> {
-              List<ReleaseNoteText> releaseNotes = categoryMap.get(category);
-              if (releaseNotes != null && !releaseNotes.isEmpty()) {
-                builder.append(String.format("## %s%n", category.getDisplayName()));
-                builder.append(getFormattedReleaseNotes(releaseNotes)).append("\n");
-              }
-            });
-    System.out.println(builder);
+    List<ReleaseNoteRenderer> renderers = new ArrayList<>();
+    try {
+      if (standardOutput) {
+        renderers.add(new MarkdownRenderer(new BufferedWriter(new PrintStreamWriter(System.out))));
+      }
+      for (Path file : outputFiles) {
+        renderers.add(ReleaseNoteRenderer.create(file, ghContext.repository, pullRequestUrl()));
+      }
+      render(renderers);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      for (ReleaseNoteRenderer renderer : renderers) {
+        try {
+          renderer.close();
+        } catch (IOException e) {
+          System.err.println("WARN: failed closing the output: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  /** Returns the release note as a markdown, which is the same as the standard output. */
+  String renderMarkdown() {
+    StringWriter writer = new StringWriter();
+    try {
+      render(List.of(new MarkdownRenderer(writer)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return writer.toString();
+  }
+
+  private void render(List<ReleaseNoteRenderer> renderers) throws IOException {
+    for (ReleaseNoteRenderer renderer : renderers) renderer.begin();
+    for (Category category : Category.values()) {
+      List<ReleaseNoteText> releaseNotes = categoryMap.get(category);
+      if (releaseNotes == null || releaseNotes.isEmpty()) continue;
+
+      for (ReleaseNoteRenderer renderer : renderers) renderer.beginCategory(category);
+      for (ReleaseNoteText rnText : releaseNotes) {
+        for (ReleaseNoteRenderer renderer : renderers) renderer.releaseNote(rnText);
+      }
+      for (ReleaseNoteRenderer renderer : renderers) renderer.endCategory(category);
+    }
+    for (ReleaseNoteRenderer renderer : renderers) renderer.end();
   }
 
-  private String getFormattedReleaseNotes(List<ReleaseNoteText> releaseNotes) {
-    StringBuilder builder = new StringBuilder();
-    releaseNotes.forEach(
-        rnText -> {
-          builder.append(String.format("- %s (", rnText.text));
-          rnText.prNumbers.forEach(prNum -> builder.append(String.format("#%s ", prNum)));
-          builder.deleteCharAt(builder.length() - 1); // delete the last space character
-          builder.append(")\n");
-        });
-    return builder.toString();
+  /** Returns the URL of the PRs without the PR number, or null if the repository is unknown. */
+  private String pullRequestUrl() {
+    if (ghContext.owner == null || ghContext.repository == null) return null;
+    String serverUrl = System.getenv().getOrDefault("GITHUB_SERVER_URL", "https://github.com");
+    return format("%s/%s/%s/pull/", serverUrl, ghContext.owner, ghContext.repository);
   }
 
   private void setMiscellaneousCategoryIfCategoryIsNull(ReleaseNoteText rnText) {
@@ -224,10 +1055,6 @@ public class ReleaseNoteCreation {
     }
   }
 
-  private boolean isContainedInSameAsItems(ReleaseNoteText rnText) {
-    return sameAsItems.values().stream().anyMatch(items -> items.contains(rnText));
-  }
-
   public enum Category {
     BACKWARD_INCOMPATIBLE("Backward incompatible changes", "backward-incompatible"),
     ENHANCEMENT("Enhancements", "enhancement"),
@@ -251,6 +1078,11 @@ public class ReleaseNoteCreation {
       return this.label;
     }
 
+    public static boolean isValidLabel(String label) {
+      return Arrays.stream(Category.values())
+          .anyMatch(target -> target.getLabel().equalsIgnoreCase(label));
+    }
+
     public static Category fromLabel(String label) {
       return Arrays.stream(Category.values())
           .filter(v -> v.getLabel().equalsIgnoreCase(label))
@@ -263,130 +1095,3657 @@ public class ReleaseNoteCreation {
     public Category category;
     public String text;
     public List<String> prNumbers = new ArrayList<>();
+    public List<String> sameAsPrNumbers = new ArrayList<>();
+
+    /** Returns a copy, which can be merged with the others without changing this text. */
+    ReleaseNoteText copy() {
+      ReleaseNoteText copy = new ReleaseNoteText();
+      copy.category = category;
+      copy.text = text;
+      copy.prNumbers.addAll(prNumbers);
+      copy.sameAsPrNumbers.addAll(sameAsPrNumbers);
+      return copy;
+    }
   }
 
-  public static class GitHubContext {
+  /** The release note section of a PR body, parsed by {@link ReleaseNoteSectionParser}. */
+  static final class ReleaseNoteSection {
+    enum Kind {
+      /** The body doesn't have the release note section. */
+      MISSING,
+      /**
+       * The section says N/A, i.e., the PR isn't user-facing. The text and the PRs which the PR is
+       * the same as are the ones before the N/A line.
+       */
+      NOT_APPLICABLE,
+      /** The section has the release note text and/or the PRs which the PR is the same as. */
+      FOUND
+    }
 
-    private static final String MERGED_STATE = "merged";
-    private static final int LIMIT_NUMBER_OF_RETRIEVE_PULL_REQUESTS = 10000;
-    private static final int PROCESS_TIME_OUT_IN_SEC = 10;
+    final Kind kind;
+    /** The last text line of the section, or null if the section doesn't have it. */
+    final String text;
 
-    private final String owner;
-    private final String projectTitlePrefix;
-    private final String version;
-    private final String repository;
+    final List<String> sameAsPrNumbers;
 
-    public GitHubContext(String owner, String projectTitString, String version, String repository) {
-      this.owner = owner;
-      this.projectTitlePrefix = projectTitString;
-      this.version = version;
-      this.repository = repository;
+    ReleaseNoteSection(Kind kind, String text, List<String> sameAsPrNumbers) {
+      this.kind = kind;
+      this.text = text;
+      this.sameAsPrNumbers = sameAsPrNumbers;
     }
+  }
 
-    private String getProjectId() throws Exception {
-      /*
-       * Includes closed project if we get the project list so that we can run
-       * this script to the closed project for debug.
-       */
-      BufferedReader br =
-          runSubProcessAndGetOutputAsReader(
-              format(
-                  "gh project list --owner %s --closed | awk '/%s/ {print}' | awk '/%s/ {print $1}'",
-                  this.owner, this.projectTitlePrefix, getVersion()));
+  /**
+   * Parses the release note section of a PR body in a single pass. Each line is classified by
+   * scanning its characters once, so no regular expression is evaluated. The lines are recognized
+   * in the same way as the following patterns, which were matched against each line before:
+   *
+   * <ul>
+   *   <li>The section header: {@code ^## *[Rr]elease *[Nn]otes? *}
+   *   <li>The next section header: {@code ^## *.*}
+   *   <li>N/A: {@code ^ *-? *N/?A *$}
+   *   <li>Same as: {@code ^ *-? *[Ss]ame ?[Aa]s +#?([0-9]+) *$}
+   *   <li>The release note text: {@code ^ *-? *(\p{Print}+)$}
+   * </ul>
+   *
+   * <p>Only the offsets of the text line are kept while scanning, and the text is copied once at
+   * the end. An instance isn't thread-safe, but the static {@code parse} methods can be called from
+   * any thread.
+   */
+  static final class ReleaseNoteSectionParser {
+    private boolean inSection;
+    private boolean notApplicable;
+    private CharSequence textLine;
+    private int textStart;
+    private int textEnd;
+    private List<String> sameAsPrNumbers;
 
-      String line = br.readLine(); // Assuming only one line exists.
-      if (line == null) throw new RuntimeException("Couldn't get the projectId");
-      return line;
+    static ReleaseNoteSection parse(String body) {
+      ReleaseNoteSectionParser parser = new ReleaseNoteSectionParser();
+      int length = body.length();
+      for (int start = 0; start < length; ) {
+        int end = lineEnd(body, start);
+        if (!parser.accept(body, start, end)) break;
+        start = nextLineStart(body, end);
+      }
+      return parser.result();
     }
 
-    private String getVersion() {
-      int index = this.version.indexOf("-");
-      if (index == -1) {
-        return this.version;
+    /** Parses the body read from the reader. The lines after the section are not read. */
+    static ReleaseNoteSection parse(BufferedReader reader) throws IOException {
+      ReleaseNoteSectionParser parser = new ReleaseNoteSectionParser();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!parser.accept(line, 0, line.length())) break;
       }
-      // Remove the suffix after the dash. (e.g., 4.0.0-rc1 -> 4.0.0)
-      return this.version.substring(0, index);
+      return parser.result();
     }
 
-    private List<String> getPullRequestNumbers(String projectId) throws Exception {
-      BufferedReader br =
-          runSubProcessAndGetOutputAsReader(
-              format(
-                  "gh project item-list %s --owner %s --limit %d | awk -F'\\t' '/\\/%s\\t/ {print"
-                      + " $3}'",
-                  projectId, this.owner, LIMIT_NUMBER_OF_RETRIEVE_PULL_REQUESTS, this.repository));
+    /**
+     * Accepts the line {@code [start, end)} of the sequence.
+     *
+     * @return false if the rest of the body doesn't need to be parsed
+     */
+    boolean accept(CharSequence line, int start, int end) {
+      if (!inSection) {
+        inSection = isReleaseNoteHeader(line, start, end);
+        return true;
+      }
+      // Reached to the next section header (ended release note section)
+      if (isHeader(line, start, end)) return false;
 
-      String line;
-      List<String> prNumbers = new ArrayList<>();
-      while ((line = br.readLine()) != null) {
-        prNumbers.add(line);
+      int pos = skipListMarker(line, start, end);
+      if (isNotApplicable(line, pos, end)) {
+        notApplicable = true; // This PR is not user-facing
+        return false;
       }
-      return prNumbers;
+      if (start == end || !isPrintable(line, start, end)) return true;
+
+      int digitsStart = sameAsDigitsStart(line, pos, end);
+      if (digitsStart >= 0) {
+        int digitsEnd = digitsStart;
+        while (digitsEnd < end && isDigit(line.charAt(digitsEnd))) digitsEnd++;
+        if (sameAsPrNumbers == null) sameAsPrNumbers = new ArrayList<>(1);
+        sameAsPrNumbers.add(line.subSequence(digitsStart, digitsEnd).toString());
+        return true;
+      }
+
+      // The text needs at least one character even if the line has only the list marker
+      textLine = line;
+      textStart = pos < end ? pos : end - 1;
+      textEnd = end;
+      return true;
     }
 
-    private String getPullRequestState(String prNumber) throws Exception {
-      BufferedReader br =
-          runSubProcessAndGetOutputAsReader(
-              format(
-                  "gh pr view %s --repo %s/%s --jq \".state\" --json state",
-                  prNumber, this.owner, this.repository));
+    ReleaseNoteSection result() {
+      if (!inSection) {
+        return new ReleaseNoteSection(ReleaseNoteSection.Kind.MISSING, null, List.of());
+      }
+      return new ReleaseNoteSection(
+          notApplicable ? ReleaseNoteSection.Kind.NOT_APPLICABLE : ReleaseNoteSection.Kind.FOUND,
+          textLine == null ? null : textLine.subSequence(textStart, textEnd).toString(),
+          sameAsPrNumbers == null ? List.of() : sameAsPrNumbers);
+    }
 
-      String line = br.readLine(); // Assuming only one line exists.
-      if (line == null) throw new RuntimeException("Couldn't get the project state");
-      return line;
+    /** Returns the end of the line starting at {@code start}, as {@link BufferedReader} does. */
+    static int lineEnd(CharSequence s, int start) {
+      int end = start;
+      int length = s.length();
+      while (end < length) {
+        char c = s.charAt(end);
+        if (c == '\n' || c == '\r') break;
+        end++;
+      }
+      return end;
     }
 
-    boolean isPullRequestMerged(String prNumber) throws Exception {
-      String state = getPullRequestState(prNumber);
-      return MERGED_STATE.equalsIgnoreCase(state);
+    /** Returns the start of the next line, skipping the line terminator at {@code end}. */
+    static int nextLineStart(CharSequence s, int end) {
+      if (end == s.length()) return end;
+      if (s.charAt(end) == '\r' && end + 1 < s.length() && s.charAt(end + 1) == '\n') {
+        return end + 2;
+      }
+      return end + 1;
     }
 
-    Category getCategoryFromPullRequest(String prNumber) throws Exception {
-      BufferedReader br =
-          runSubProcessAndGetOutputAsReader(
-              format(
-                  "gh pr view %s --repo %s/%s --jq \".labels[].name\" --json labels",
-                  prNumber, this.owner, this.repository));
+    static boolean isReleaseNoteHeader(CharSequence s, int start, int end) {
+      if (!isHeader(s, start, end)) return false;
+      int pos = skipSpaces(s, start + 2, end);
+      if (!startsWithIgnoringFirstCase(s, pos, end, "release")) return false;
+      pos = skipSpaces(s, pos + 7, end);
+      if (!startsWithIgnoringFirstCase(s, pos, end, "note")) return false;
+      pos += 4;
+      if (pos < end && s.charAt(pos) == 's') pos++;
+      return skipSpaces(s, pos, end) == end;
+    }
 
-      String line;
-      while ((line = br.readLine()) != null) {
-        if (isValidCategory(line)) return Category.fromLabel(line);
+    /** Returns true if the line starts with {@code ##} and the rest is matched with {@code .*}. */
+    static boolean isHeader(CharSequence s, int start, int end) {
+      if (end - start < 2 || s.charAt(start) != '#' || s.charAt(start + 1) != '#') return false;
+      for (int i = start + 2; i < end; i++) {
+        char c = s.charAt(i);
+        if (c == '\u0085' || c == '\u2028' || c == '\u2029') return false;
       }
-      return Category.MISCELLANEOUS;
+      return true;
     }
 
-    BufferedReader getPullRequestBody(String prNumber) throws Exception {
-      return runSubProcessAndGetOutputAsReader(
-          format(
-              "gh pr view %s --repo %s/%s --jq \".body\" --json body",
-              prNumber, this.owner, this.repository));
+    private static boolean isNotApplicable(CharSequence s, int pos, int end) {
+      if (pos >= end || s.charAt(pos) != 'N') return false;
+      pos++;
+      if (pos < end && s.charAt(pos) == '/') pos++;
+      if (pos >= end || s.charAt(pos) != 'A') return false;
+      return skipSpaces(s, pos + 1, end) == end;
     }
 
-    BufferedReader runSubProcessAndGetOutputAsReader(String command) throws Exception {
-      if (DEBUG != null) System.err.printf("Executed: %s%n", command);
-      Process p = new ProcessBuilder("bash", "-c", command).start();
+    /** Returns the start of the PR number if the line says "Same as #N", otherwise -1. */
+    private static int sameAsDigitsStart(CharSequence s, int pos, int end) {
+      if (!startsWithIgnoringFirstCase(s, pos, end, "same")) return -1;
+      pos += 4;
+      if (pos < end && s.charAt(pos) == ' ') pos++;
+      if (!startsWithIgnoringFirstCase(s, pos, end, "as")) return -1;
+      pos += 2;
+      int digitsStart = skipSpaces(s, pos, end);
+      if (digitsStart == pos) return -1;
+      if (digitsStart < end && s.charAt(digitsStart) == '#') digitsStart++;
+      int digitsEnd = digitsStart;
+      while (digitsEnd < end && isDigit(s.charAt(digitsEnd))) digitsEnd++;
+      if (digitsEnd == digitsStart || skipSpaces(s, digitsEnd, end) != end) return -1;
+      return digitsStart;
+    }
 
-      BufferedReader result = null;
-      try (BufferedReader br =
-          new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8)); ) {
-        String processOutput = br.lines().collect(Collectors.joining(System.lineSeparator()));
-        result = new BufferedReader(new StringReader(processOutput));
+    /** Skips {@code *-? *}. */
+    private static int skipListMarker(CharSequence s, int pos, int end) {
+      pos = skipSpaces(s, pos, end);
+      if (pos < end && s.charAt(pos) == '-') pos++;
+      return skipSpaces(s, pos, end);
+    }
+
+    private static int skipSpaces(CharSequence s, int pos, int end) {
+      while (pos < end && s.charAt(pos) == ' ') pos++;
+      return pos;
+    }
+
+    /** Matches the lower case word, whose first character may be upper case, e.g. [Rr]elease. */
+    private static boolean startsWithIgnoringFirstCase(
+        CharSequence s, int pos, int end, String word) {
+      if (end - pos < word.length()) return false;
+      char first = s.charAt(pos);
+      if (first != word.charAt(0) && first != Character.toUpperCase(word.charAt(0))) return false;
+      for (int i = 1; i < word.length(); i++) {
+        if (s.charAt(pos + i) != word.charAt(i)) return false;
       }
+      return true;
+    }
 
-      boolean isTerminated = p.waitFor(PROCESS_TIME_OUT_IN_SEC, TimeUnit.SECONDS);
-      if (!isTerminated) {
-        throw new RuntimeException(
-            format(
-                "WARN: Process was exceeded timeout(%d sec). command: %s%n",
-                PROCESS_TIME_OUT_IN_SEC, command));
+    /**
+     * Returns true if all the characters are matched with {@code \p{Print}}, i.e., ASCII 0x20-0x7E.
+     */
+    private static boolean isPrintable(CharSequence s, int start, int end) {
+      for (int i = start; i < end; i++) {
+        char c = s.charAt(i);
+        if (c < 0x20 || c > 0x7E) return false;
       }
+      return true;
+    }
 
-      return result;
+    private static boolean isDigit(char c) {
+      return c >= '0' && c <= '9';
     }
+  }
 
-    private boolean isValidCategory(String category) {
-      return Arrays.stream(Category.values())
-          .anyMatch(target -> target.getLabel().equalsIgnoreCase(category));
+  /**
+   * Renders the release note in a format. The renderers are called while the release note is walked
+   * once: {@link #begin()}, and then {@link #beginCategory}, {@link #releaseNote} for each text and
+   * {@link #endCategory} for each category which has texts, and finally {@link #end()}.
+   */
+  abstract static class ReleaseNoteRenderer implements Closeable {
+    final Writer writer;
+
+    ReleaseNoteRenderer(Writer writer) {
+      this.writer = writer;
+    }
+
+    /**
+     * Creates the renderer which writes to the file in the format of its extension, i.e., {@code
+     * .md}, {@code .json}, {@code .jsonl} or {@code .html}.
+     *
+     * @param repository the name of the repository, which is written in each JSON Lines record
+     * @param pullRequestUrl the URL of the PRs without the PR number, which is used for the links
+     *     in HTML. The links are omitted if this is null.
+     */
+    static ReleaseNoteRenderer create(Path file, String repository, String pullRequestUrl)
+        throws IOException {
+      String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+      if (name.endsWith(".md") || name.endsWith(".markdown")) {
+        return new MarkdownRenderer(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+      } else if (name.endsWith(".json")) {
+        return new JsonRenderer(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+      } else if (name.endsWith(".jsonl")) {
+        return new JsonLinesRenderer(
+            Files.newBufferedWriter(file, StandardCharsets.UTF_8), repository);
+      } else if (name.endsWith(".html") || name.endsWith(".htm")) {
+        return new HtmlRenderer(
+            Files.newBufferedWriter(file, StandardCharsets.UTF_8), pullRequestUrl);
+      }
+      throw new IllegalArgumentException("Unknown output format: " + file);
+    }
+
+    abstract void begin() throws IOException;
+
+    abstract void beginCategory(Category category) throws IOException;
+
+    abstract void releaseNote(ReleaseNoteText rnText) throws IOException;
+
+    abstract void endCategory(Category category) throws IOException;
+
+    abstract void end() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+      writer.close();
+    }
+  }
+
+  /** Renders the release note as a markdown, which is the body of the release on GitHub. */
+  static class MarkdownRenderer extends ReleaseNoteRenderer {
+    MarkdownRenderer(Writer writer) {
+      super(writer);
+    }
+
+    @Override
+    void begin() throws IOException {
+      writer.write("## Summary\n\n");
+    }
+
+    @Override
+    void beginCategory(Category category) throws IOException {
+      writer.write("## ");
+      writer.write(category.getDisplayName());
+      writer.write(System.lineSeparator());
+    }
+
+    @Override
+    void releaseNote(ReleaseNoteText rnText) throws IOException {
+      writer.write("- ");
+      writer.write(String.valueOf(rnText.text));
+      writer.write(" (");
+      for (int i = 0; i < rnText.prNumbers.size(); i++) {
+        if (i > 0) writer.write(' ');
+        writer.write('#');
+        writer.write(rnText.prNumbers.get(i));
+      }
+      writer.write(")\n");
+    }
+
+    @Override
+    void endCategory(Category category) throws IOException {
+      writer.write("\n");
+    }
+
+    @Override
+    void end() throws IOException {
+      writer.write(System.lineSeparator());
+    }
+  }
+
+  /**
+   * Renders the release note as JSON, e.g., {@code {"categories": [{"category": "enhancement",
+   * "displayName": "Enhancements", "releaseNotes": [{"text": "...", "pullRequests": ["1",
+   * "2"]}]}]}}.
+   */
+  static class JsonRenderer extends ReleaseNoteRenderer {
+    private boolean firstCategory = true;
+    private boolean firstReleaseNote;
+
+    JsonRenderer(Writer writer) {
+      super(writer);
+    }
+
+    @Override
+    void begin() throws IOException {
+      writer.write("{\"categories\":[");
+    }
+
+    @Override
+    void beginCategory(Category category) throws IOException {
+      if (!firstCategory) writer.write(',');
+      firstCategory = false;
+      firstReleaseNote = true;
+      writer.write("\n{\"category\":");
+      writer.write(Json.quote(category.getLabel()));
+      writer.write(",\"displayName\":");
+      writer.write(Json.quote(category.getDisplayName()));
+      writer.write(",\"releaseNotes\":[");
+    }
+
+    @Override
+    void releaseNote(ReleaseNoteText rnText) throws IOException {
+      if (!firstReleaseNote) writer.write(',');
+      firstReleaseNote = false;
+      writer.write("\n{\"text\":");
+      writer.write(rnText.text == null ? "null" : Json.quote(rnText.text));
+      writer.write(",\"pullRequests\":[");
+      for (int i = 0; i < rnText.prNumbers.size(); i++) {
+        if (i > 0) writer.write(',');
+        writer.write(Json.quote(rnText.prNumbers.get(i)));
+      }
+      writer.write("]}");
+    }
+
+    @Override
+    void endCategory(Category category) throws IOException {
+      writer.write("]}");
+    }
+
+    @Override
+    void end() throws IOException {
+      writer.write("\n]}\n");
+    }
+  }
+
+  /**
+   * Renders the release note as JSON Lines with a record for each release note text, e.g., {@code
+   * {"repository":"scalardb","category":"enhancement","text":"...","pullRequests":["1","2"]}}. The
+   * records are in the same order as the markdown, and {@code MergeReleaseNotes.java} reads them as
+   * they are instead of parsing the markdown.
+   */
+  static class JsonLinesRenderer extends ReleaseNoteRenderer {
+    private final String repository;
+    private Category category;
+
+    JsonLinesRenderer(Writer writer, String repository) {
+      super(writer);
+      this.repository = repository;
+    }
+
+    @Override
+    void begin() {}
+
+    @Override
+    void beginCategory(Category category) {
+      this.category = category;
+    }
+
+    @Override
+    void releaseNote(ReleaseNoteText rnText) throws IOException {
+      Map<String, Object> record = new LinkedHashMap<>();
+      record.put("repository", repository);
+      record.put("category", category.getLabel());
+      record.put("text", rnText.text);
+      record.put("pullRequests", rnText.prNumbers);
+      writer.write(Json.write(record));
+      writer.write('\n');
+    }
+
+    @Override
+    void endCategory(Category category) {}
+
+    @Override
+    void end() {}
+  }
+
+  /** Renders the release note as an HTML fragment, whose PR numbers are linked to the PRs. */
+  static class HtmlRenderer extends ReleaseNoteRenderer {
+    private final String pullRequestUrl;
+
+    HtmlRenderer(Writer writer, String pullRequestUrl) {
+      super(writer);
+      this.pullRequestUrl = pullRequestUrl;
+    }
+
+    @Override
+    void begin() throws IOException {
+      writer.write("<h2>Summary</h2>\n");
+    }
+
+    @Override
+    void beginCategory(Category category) throws IOException {
+      writer.write("<h2>");
+      writeEscaped(category.getDisplayName());
+      writer.write("</h2>\n<ul>\n");
+    }
+
+    @Override
+    void releaseNote(ReleaseNoteText rnText) throws IOException {
+      writer.write("<li>");
+      writeEscaped(String.valueOf(rnText.text));
+      writer.write(" (");
+      for (int i = 0; i < rnText.prNumbers.size(); i++) {
+        if (i > 0) writer.write(' ');
+        String prNumber = rnText.prNumbers.get(i);
+        if (pullRequestUrl == null) {
+          writer.write('#');
+          writeEscaped(prNumber);
+        } else {
+          writer.write("<a href=\"");
+          writeEscaped(pullRequestUrl + prNumber);
+          writer.write("\">#");
+          writeEscaped(prNumber);
+          writer.write("</a>");
+        }
+      }
+      writer.write(")</li>\n");
+    }
+
+    @Override
+    void endCategory(Category category) throws IOException {
+      writer.write("</ul>\n");
+    }
+
+    @Override
+    void end() {}
+
+    private void writeEscaped(String text) throws IOException {
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        switch (c) {
+          case '&':
+            writer.write("&amp;");
+            break;
+          case '<':
+            writer.write("&lt;");
+            break;
+          case '>':
+            writer.write("&gt;");
+            break;
+          case '"':
+            writer.write("&quot;");
+            break;
+          case '\'':
+            writer.write("&#39;");
+            break;
+          default:
+            writer.write(c);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the characters to the print stream in its charset, e.g., {@code System.out}. Closing
+   * this writer only flushes the print stream.
+   */
+  static class PrintStreamWriter extends Writer {
+    private final PrintStream out;
+
+    PrintStreamWriter(PrintStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+      out.append(CharBuffer.wrap(buffer, offset, length));
+    }
+
+    @Override
+    public void flush() {
+      out.flush();
+    }
+
+    @Override
+    public void close() {
+      out.flush();
+    }
+  }
+
+  /**
+   * Collects the metrics of a run: the wall time of each phase, a latency histogram of each
+   * operation on GitHub, and counters such as the number of subprocesses, HTTP requests, bytes
+   * read, retries, timeouts and the PRs by their outcome. This is thread-safe. The metrics are
+   * written as a JSON report, e.g., {@code {"version": 1, "totalMillis": 1234.5, "phases":
+   * {"getProjectId": 12.3, ...}, "operations": {"queryPullRequests": {"count": 3, "errors": 0,
+   * "totalMillis": ..., "minMillis": ..., "maxMillis": ..., "buckets": [{"le": 1, "count": 0}, ...,
+   * {"le": "+Inf", "count": 0}]}, ...}, "counters": {"subprocesses": 5, ...}}}.
+   */
+  static class Metrics {
+    static final String SUBPROCESSES = "subprocesses";
+    static final String HTTP_REQUESTS = "httpRequests";
+    static final String BYTES_READ = "bytesRead";
+    static final String RETRIES = "retries";
+    static final String TIMEOUTS = "timeouts";
+    static final String BATCH_FAILURES = "batchFailures";
+    static final String CACHE_HITS = "cacheHits";
+    static final String SNAPSHOT_HITS = "snapshotHits";
+    static final String PRS_MERGED = "prs.merged";
+    static final String PRS_UNMERGED = "prs.unmerged";
+    static final String PRS_NOT_APPLICABLE = "prs.notApplicable";
+    static final String PRS_FAILED = "prs.failed";
+    static final String PRS_UNPROCESSED = "prs.unprocessed";
+    private static final int VERSION = 1;
+    /** The upper bounds of the buckets of the latency histograms in milliseconds. */
+    static final long[] BUCKET_BOUNDS_MILLIS = {
+      1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000
+    };
+
+    private final long startNanos = System.nanoTime();
+    /** The wall time of the phases in nanoseconds, in the order they started. */
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private final Map<String, Histogram> operations = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    Metrics() {
+      // The counters are always reported so that the report has the same fields in every run
+      for (String counter :
+          List.of(
+              SUBPROCESSES,
+              HTTP_REQUESTS,
+              BYTES_READ,
+              RETRIES,
+              TIMEOUTS,
+              BATCH_FAILURES,
+              CACHE_HITS,
+              SNAPSHOT_HITS,
+              PRS_MERGED,
+              PRS_UNMERGED,
+              PRS_NOT_APPLICABLE,
+              PRS_FAILED,
+              PRS_UNPROCESSED)) {
+        counters.put(counter, new LongAdder());
+      }
+    }
+
+    /** Runs the phase and records its wall time. */
+    <T> T phase(String name, Callable<T> phase) throws Exception {
+      long start = System.nanoTime();
+      try {
+        return phase.call();
+      } finally {
+        recordPhase(name, System.nanoTime() - start);
+      }
+    }
+
+    /** Same as {@link #phase(String, Callable)}, but for a phase which returns nothing. */
+    void runPhase(String name, Task phase) throws Exception {
+      long start = System.nanoTime();
+      try {
+        phase.run();
+      } finally {
+        recordPhase(name, System.nanoTime() - start);
+      }
+    }
+
+    private void recordPhase(String name, long nanos) {
+      synchronized (phases) {
+        phases.merge(name, nanos, Long::sum);
+      }
+    }
+
+    /** Calls the operation and records its latency. A failed call is also counted as an error. */
+    <T> T time(String operation, Callable<T> callable) throws Exception {
+      long start = System.nanoTime();
+      boolean failed = true;
+      try {
+        T result = callable.call();
+        failed = false;
+        return result;
+      } finally {
+        histogram(operation).record(System.nanoTime() - start, failed);
+      }
+    }
+
+    /**
+     * Returns the iterator which records the time spent in it as one call of the operation when
+     * it's exhausted. The time spent by the caller between the elements isn't included.
+     */
+    <T> Iterator<T> timeIterator(String operation, Iterator<T> iterator) {
+      return new Iterator<T>() {
+        private long nanos;
+        private boolean recorded;
+
+        @Override
+        public boolean hasNext() {
+          long start = System.nanoTime();
+          boolean failed = true;
+          try {
+            boolean hasNext = iterator.hasNext();
+            failed = false;
+            nanos += System.nanoTime() - start;
+            if (!hasNext) record(false);
+            return hasNext;
+          } finally {
+            if (failed) {
+              nanos += System.nanoTime() - start;
+              record(true);
+            }
+          }
+        }
+
+        @Override
+        public T next() {
+          long start = System.nanoTime();
+          try {
+            return iterator.next();
+          } finally {
+            nanos += System.nanoTime() - start;
+          }
+        }
+
+        private void record(boolean failed) {
+          if (recorded) return;
+          recorded = true;
+          histogram(operation).record(nanos, failed);
+        }
+      };
+    }
+
+    /** Records a call of the operation which took the given time. */
+    void record(String operation, long nanos) {
+      histogram(operation).record(nanos, false);
+    }
+
+    void increment(String counter) {
+      add(counter, 1);
+    }
+
+    void add(String counter, long n) {
+      counters.computeIfAbsent(counter, k -> new LongAdder()).add(n);
+    }
+
+    long count(String counter) {
+      LongAdder adder = counters.get(counter);
+      return adder == null ? 0 : adder.sum();
+    }
+
+    Histogram histogram(String operation) {
+      return operations.computeIfAbsent(operation, k -> new Histogram());
+    }
+
+    /**
+     * Returns the stream which adds the number of the bytes read from it to {@link #BYTES_READ}.
+     */
+    InputStream countBytesRead(InputStream in) {
+      LongAdder bytesRead = counters.computeIfAbsent(BYTES_READ, k -> new LongAdder());
+      return new FilterInputStream(in) {
+        @Override
+        public int read() throws IOException {
+          int b = super.read();
+          if (b != -1) bytesRead.increment();
+          return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+          int n = super.read(buffer, offset, length);
+          if (n > 0) bytesRead.add(n);
+          return n;
+        }
+      };
+    }
+
+    /** Returns the report, whose operations and counters are sorted by their names. */
+    Map<String, Object> toReport() {
+      Map<String, Object> report = new LinkedHashMap<>();
+      report.put("version", VERSION);
+      report.put("totalMillis", millis(System.nanoTime() - startNanos));
+
+      Map<String, Object> phaseReport = new LinkedHashMap<>();
+      synchronized (phases) {
+        phases.forEach((name, nanos) -> phaseReport.put(name, millis(nanos)));
+      }
+      report.put("phases", phaseReport);
+
+      Map<String, Object> operationReport = new LinkedHashMap<>();
+      new TreeMap<>(operations).forEach((name, h) -> operationReport.put(name, h.toReport()));
+      report.put("operations", operationReport);
+
+      Map<String, Object> counterReport = new LinkedHashMap<>();
+      new TreeMap<>(counters).forEach((name, adder) -> counterReport.put(name, adder.sum()));
+      report.put("counters", counterReport);
+      return report;
+    }
+
+    /** Writes the report to the file as JSON. */
+    void write(Path file) throws IOException {
+      Path parent = file.toAbsolutePath().getParent();
+      if (parent != null) Files.createDirectories(parent);
+      Files.writeString(file, Json.write(toReport()) + "\n", StandardCharsets.UTF_8);
+    }
+
+    static double millis(long nanos) {
+      return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    interface Task {
+      void run() throws Exception;
+    }
+
+    /** A latency histogram of an operation, whose buckets are {@link #BUCKET_BOUNDS_MILLIS}. */
+    static class Histogram {
+      private final LongAdder count = new LongAdder();
+      private final LongAdder errors = new LongAdder();
+      private final LongAdder totalNanos = new LongAdder();
+      private final AtomicLong minNanos = new AtomicLong(Long.MAX_VALUE);
+      private final AtomicLong maxNanos = new AtomicLong();
+      private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+
+      void record(long nanos, boolean failed) {
+        count.increment();
+        if (failed) errors.increment();
+        totalNanos.add(nanos);
+        minNanos.accumulateAndGet(nanos, Math::min);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length
+            && nanos > TimeUnit.MILLISECONDS.toNanos(BUCKET_BOUNDS_MILLIS[bucket])) {
+          bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+      }
+
+      long count() {
+        return count.sum();
+      }
+
+      long errors() {
+        return errors.sum();
+      }
+
+      Map<String, Object> toReport() {
+        long n = count.sum();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("count", n);
+        report.put("errors", errors.sum());
+        report.put("totalMillis", millis(totalNanos.sum()));
+        report.put("minMillis", n == 0 ? 0.0 : millis(minNanos.get()));
+        report.put("maxMillis", millis(maxNanos.get()));
+        List<Object> bucketReport = new ArrayList<>();
+        for (int i = 0; i < buckets.length(); i++) {
+          Map<String, Object> bucket = new LinkedHashMap<>();
+          bucket.put("le", i < BUCKET_BOUNDS_MILLIS.length ? BUCKET_BOUNDS_MILLIS[i] : "+Inf");
+          bucket.put("count", buckets.get(i));
+          bucketReport.add(bucket);
+        }
+        report.put("buckets", bucketReport);
+        return report;
+      }
+    }
+  }
+
+  /**
+   * Schedules the requests to GitHub. All the requests are reads, so a request which failed with a
+   * {@link RetryableException} is retried after a backoff with jitter, up to {@link #MAX_ATTEMPTS}
+   * times and within the retry budget of the run. The number of concurrent requests is limited: the
+   * limit is halved when requests are throttled and grows back one by one as they succeed. All the
+   * requests are paused until the reset time when the remaining quota of the rate limit runs out or
+   * GitHub asks to retry after a while.
+   *
+   * <p>The requests must not be nested, i.e., a request must not schedule another request, since it
+   * would wait for the limit held by itself.
+   */
+  static class RequestScheduler {
+    static final int DEFAULT_RETRY_BUDGET = 100;
+    static final int MAX_ATTEMPTS = 5;
+    static final long BASE_BACKOFF_MILLIS = 1000;
+    static final long MAX_BACKOFF_MILLIS = 60_000;
+    /** The ratio of the remaining quota under which the requests are sent one by one. */
+    private static final double LOW_QUOTA_RATIO = 0.05;
+
+    private final int maxConcurrency;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final AtomicInteger retryBudget;
+    private final Metrics metrics;
+    private final Lock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private int concurrency;
+    private int inFlight;
+    private int successes;
+    private long pausedUntilMillis;
+    private Deadline deadline = Deadline.NONE;
+
+    RequestScheduler(int maxConcurrency, int retryBudget, Metrics metrics) {
+      this(maxConcurrency, retryBudget, BASE_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS, metrics);
+    }
+
+    RequestScheduler(
+        int maxConcurrency,
+        int retryBudget,
+        long baseBackoffMillis,
+        long maxBackoffMillis,
+        Metrics metrics) {
+      this.maxConcurrency = Math.max(maxConcurrency, 1);
+      this.concurrency = this.maxConcurrency;
+      this.retryBudget = new AtomicInteger(retryBudget);
+      this.baseBackoffMillis = baseBackoffMillis;
+      this.maxBackoffMillis = maxBackoffMillis;
+      this.metrics = metrics;
+    }
+
+    /**
+     * Sets the deadline of the run. The requests aren't sent after the deadline, and they aren't
+     * retried if the backoff doesn't end before it.
+     */
+    void setDeadline(Deadline deadline) {
+      this.deadline = deadline;
+    }
+
+    Deadline getDeadline() {
+      return deadline;
+    }
+
+    /**
+     * Sends the request, retrying it if it fails with a {@link RetryableException}.
+     *
+     * @throws Exception the exception of the last attempt if the request still fails after the
+     *     attempts or the retry budget ran out
+     * @throws DeadlineExceededException if the deadline passes before the request succeeds
+     */
+    <T> T call(String operation, Callable<T> request) throws Exception {
+      return call(metrics, operation, request);
+    }
+
+    /**
+     * Same as {@link #call(String, Callable)}, but the request and its retries are recorded to the
+     * metrics of the caller, e.g., of a repository whose requests share the scheduler with others.
+     */
+    <T> T call(Metrics metrics, String operation, Callable<T> request) throws Exception {
+      for (int attempt = 1; ; attempt++) {
+        acquire();
+        RetryableException failure;
+        try {
+          T result = metrics.time(operation, request);
+          release(true);
+          return result;
+        } catch (RetryableException e) {
+          release(!e.throttled);
+          failure = e;
+        } catch (Exception | Error e) {
+          release(true);
+          throw e;
+        }
+
+        if (failure.throttled) throttled(failure.retryAfterMillis);
+        if (attempt >= MAX_ATTEMPTS || retryBudget.getAndDecrement() <= 0) {
+          System.err.printf(
+              "WARN: gave up %s after %d attempts: %s%n", operation, attempt, failure.getMessage());
+          throw failure;
+        }
+        long backoff = Math.max(backoffMillis(attempt), failure.retryAfterMillis);
+        if (backoff >= deadline.remainingMillis()) {
+          throw new DeadlineExceededException(
+              format("%s can't be retried before the deadline", operation), failure);
+        }
+        metrics.increment(Metrics.RETRIES);
+        System.err.printf(
+            "WARN: %s failed (%s). Retry in %d ms%n", operation, failure.getMessage(), backoff);
+        Thread.sleep(backoff);
+      }
+    }
+
+    /**
+     * Returns the backoff before the next attempt, which is "full jitter" of exponential backoff.
+     */
+    long backoffMillis(int attempt) {
+      long cap = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+      return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * Updates the rate limit with the headers of a response. The requests are paused until the
+     * reset time if the quota ran out, and are sent one by one if the quota is running out.
+     */
+    void onRateLimit(long limit, long remaining, long resetEpochSeconds) {
+      lock.lock();
+      try {
+        if (remaining <= 0) {
+          pauseUntil(TimeUnit.SECONDS.toMillis(resetEpochSeconds) + 1000);
+        } else if (limit > 0 && remaining < limit * LOW_QUOTA_RATIO) {
+          concurrency = 1;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    int concurrency() {
+      lock.lock();
+      try {
+        return concurrency;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    int remainingRetryBudget() {
+      return Math.max(retryBudget.get(), 0);
+    }
+
+    private void throttled(long retryAfterMillis) {
+      lock.lock();
+      try {
+        concurrency = Math.max(1, concurrency / 2);
+        successes = 0;
+        if (retryAfterMillis > 0) pauseUntil(System.currentTimeMillis() + retryAfterMillis);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void pauseUntil(long epochMillis) {
+      if (epochMillis > pausedUntilMillis) {
+        pausedUntilMillis = epochMillis;
+        System.err.printf(
+            "WARN: GitHub requests are paused for %d ms due to the rate limit%n",
+            epochMillis - System.currentTimeMillis());
+      }
+    }
+
+    private void acquire() throws InterruptedException, DeadlineExceededException {
+      lock.lock();
+      try {
+        while (true) {
+          long remaining = deadline.remainingMillis();
+          long pause = pausedUntilMillis - System.currentTimeMillis();
+          if (remaining <= 0 || pause >= remaining) {
+            throw new DeadlineExceededException("The deadline passed before sending the request");
+          } else if (pause > 0) {
+            available.await(pause, TimeUnit.MILLISECONDS);
+          } else if (inFlight >= concurrency) {
+            available.await(remaining, TimeUnit.MILLISECONDS);
+          } else {
+            inFlight++;
+            return;
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void release(boolean succeeded) {
+      lock.lock();
+      try {
+        inFlight--;
+        if (succeeded && concurrency < maxConcurrency && ++successes >= concurrency) {
+          concurrency++;
+          successes = 0;
+        }
+        available.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * A failure of a request which may succeed when it's retried, e.g., a timeout, a rate limit or a
+   * server error.
+   */
+  static class RetryableException extends IOException {
+    private static final long serialVersionUID = 1L;
+    /** Whether GitHub throttled the request, in which case the concurrency is reduced. */
+    final boolean throttled;
+    /** The time GitHub asked to wait before retrying in milliseconds, or 0 if not specified. */
+    final long retryAfterMillis;
+
+    RetryableException(String message, boolean throttled, long retryAfterMillis) {
+      super(message);
+      this.throttled = throttled;
+      this.retryAfterMillis = retryAfterMillis;
+    }
+
+    RetryableException(String message, Throwable cause) {
+      super(message, cause);
+      this.throttled = false;
+      this.retryAfterMillis = 0;
+    }
+  }
+
+  /** A failure of a request or the processing of a PR since the deadline of the run passed. */
+  static class DeadlineExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    DeadlineExceededException(String message) {
+      super(message);
+    }
+
+    DeadlineExceededException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+
+  /**
+   * The deadline of the whole run. The timeouts of the requests and the backoffs of the retries are
+   * drawn from the time remaining until the deadline, so that the run ends in a bounded time even
+   * if GitHub is slow.
+   */
+  static final class Deadline {
+    /** No deadline. */
+    static final Deadline NONE = new Deadline(0);
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    static Deadline after(Duration duration) {
+      return new Deadline(System.nanoTime() + duration.toNanos());
+    }
+
+    /** Returns the time until the deadline, or {@link Long#MAX_VALUE} if there's no deadline. */
+    long remainingMillis() {
+      if (this == NONE) return Long.MAX_VALUE;
+      return Math.max(TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()), 0);
+    }
+
+    boolean hasPassed() {
+      return remainingMillis() == 0;
+    }
+
+    /** Returns the timeout which ends by the deadline. The timeout is at least one second. */
+    int timeOutInSec(int timeOutInSec) {
+      if (this == NONE) return timeOutInSec;
+      long remaining = (remainingMillis() + 999) / 1000;
+      return (int) Math.max(Math.min(timeOutInSec, remaining), 1);
+    }
+
+    /** Returns the timeout which ends by the deadline. The timeout is at least one millisecond. */
+    Duration timeout(Duration timeout) {
+      return Duration.ofMillis(Math.max(Math.min(timeout.toMillis(), remainingMillis()), 1));
+    }
+  }
+
+  /** Runs tasks on the calling thread. This is used when the parallelism is 1. */
+  static class DirectExecutorService extends AbstractExecutorService {
+    private volatile boolean shutdown;
+
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+
+    @Override
+    public void shutdown() {
+      shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      shutdown = true;
+      return new ArrayList<>();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return shutdown;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return true;
+    }
+  }
+
+  /**
+   * Limits the number of tasks running at the same time on an executor which creates a thread per
+   * task (e.g., virtual threads).
+   */
+  static class BoundedExecutorService extends AbstractExecutorService {
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+
+    BoundedExecutorService(ExecutorService delegate, int parallelism) {
+      this.delegate = delegate;
+      this.permits = new Semaphore(parallelism);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      delegate.execute(
+          () -> {
+            try {
+              permits.acquire();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              return;
+            }
+            try {
+              command.run();
+            } finally {
+              permits.release();
+            }
+          });
+    }
+
+    @Override
+    public void shutdown() {
+      delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      return delegate.awaitTermination(timeout, unit);
+    }
+  }
+
+  /** Command line options. Each option is given as {@code --name=value} before the arguments. */
+  static class Options {
+    static final int DEFAULT_BATCH_SIZE = 50;
+    static final int DEFAULT_CACHE_SIZE = 10000;
+
+    int batchSize = DEFAULT_BATCH_SIZE;
+    int parallelism = 1;
+    boolean useVirtualThreads;
+    String cacheDirectory = System.getenv("RELEASE_NOTE_CACHE_DIR");
+    String client = "gh";
+    int cacheSize = DEFAULT_CACHE_SIZE;
+    String snapshotFile;
+    final List<String> outputFiles = new ArrayList<>();
+    String metricsFile;
+    int retryBudget = RequestScheduler.DEFAULT_RETRY_BUDGET;
+    boolean allowDroppedPullRequests;
+    /** The deadline of the whole run in seconds, or 0 for no deadline. */
+    long deadlineSeconds;
+
+    String recordFile;
+    String replayFile;
+    /** The latency injected into each replayed response, or -1 for the recorded latency. */
+    long replayLatencyMillis = GitHubFixtures.RECORDED_LATENCY;
+
+    String gitRange;
+    String gitDirectory = ".";
+    boolean checkProject;
+    /** The local port on which the release note is served, or null to create it only once. */
+    Integer servePort;
+    /** Whether the release note is output to standard output. This isn't a command line option. */
+    boolean standardOutput = true;
+
+    /**
+     * Returns the options for one of the repositories whose release notes are created in the same
+     * run. The files of the snapshot and the metrics are per repository, so the name of the
+     * repository is inserted before their extensions, e.g., {@code metrics.json} is {@code
+     * metrics.scalardb.json}. The clone of the repository is the directory of its name in the git
+     * directory. The fixtures aren't copied since they are shared by the repositories.
+     */
+    Options forRepository(String repository) {
+      Options options = copy();
+      options.snapshotFile = insertName(snapshotFile, repository);
+      options.gitDirectory = Paths.get(gitDirectory, repository).toString();
+      options.outputFiles.addAll(outputFiles);
+      options.metricsFile = insertName(metricsFile, repository);
+      return options;
+    }
+
+    /**
+     * Returns the options for one of the versions whose release notes are created in the same run.
+     * The release note of each version is written to the output files with the version inserted
+     * before their extensions, or to {@code <version>.md}, instead of standard output. The PRs are
+     * fetched for all the versions at once, so the options for fetching them aren't needed.
+     */
+    Options forVersion(String version) {
+      Options options = copy();
+      if (outputFiles.isEmpty()) options.outputFiles.add(version + ".md");
+      outputFiles.forEach(file -> options.outputFiles.add(insertName(file, version)));
+      options.standardOutput = false;
+      return options;
+    }
+
+    /** Returns a copy of the options except for the files, which are per repository or version. */
+    private Options copy() {
+      Options options = new Options();
+      options.batchSize = batchSize;
+      options.parallelism = parallelism;
+      options.useVirtualThreads = useVirtualThreads;
+      options.cacheDirectory = cacheDirectory;
+      options.client = client;
+      options.cacheSize = cacheSize;
+      options.gitRange = gitRange;
+      options.gitDirectory = gitDirectory;
+      options.checkProject = checkProject;
+      options.retryBudget = retryBudget;
+      options.allowDroppedPullRequests = allowDroppedPullRequests;
+      options.deadlineSeconds = deadlineSeconds;
+      options.standardOutput = standardOutput;
+      return options;
+    }
+
+    private static String insertName(String file, String name) {
+      if (file == null) return null;
+      int index = file.lastIndexOf('.');
+      if (index <= file.lastIndexOf('/') + 1) return file + "." + name;
+      return file.substring(0, index) + "." + name + file.substring(index);
+    }
+
+    /**
+     * Parses the options in the given arguments.
+     *
+     * @return the remaining (non-option) arguments
+     */
+    List<String> parse(String... args) {
+      List<String> arguments = new ArrayList<>();
+      for (String arg : args) {
+        if (!arg.startsWith("--")) {
+          arguments.add(arg);
+          continue;
+        }
+        int index = arg.indexOf('=');
+        String name = index == -1 ? arg.substring(2) : arg.substring(2, index);
+        String value = index == -1 ? null : arg.substring(index + 1);
+        switch (name) {
+          case "batch-size":
+            batchSize = Integer.parseInt(requireValue(name, value));
+            break;
+          case "parallelism":
+            parallelism = Integer.parseInt(requireValue(name, value));
+            break;
+          case "virtual-threads":
+            useVirtualThreads = true;
+            break;
+          case "cache-dir":
+            cacheDirectory = requireValue(name, value);
+            break;
+          case "cache-size":
+            cacheSize = Integer.parseInt(requireValue(name, value));
+            break;
+          case "no-cache":
+            cacheDirectory = null;
+            break;
+          case "client":
+            client = requireValue(name, value);
+            break;
+          case "snapshot":
+            snapshotFile = requireValue(name, value);
+            break;
+          case "output":
+            outputFiles.add(requireValue(name, value));
+            break;
+          case "metrics":
+            metricsFile = requireValue(name, value);
+            break;
+          case "retry-budget":
+            retryBudget = Integer.parseInt(requireValue(name, value));
+            break;
+          case "allow-dropped-prs":
+            allowDroppedPullRequests = true;
+            break;
+          case "deadline":
+            deadlineSeconds = Long.parseLong(requireValue(name, value));
+            break;
+          case "git-range":
+            gitRange = requireValue(name, value);
+            break;
+          case "git-dir":
+            gitDirectory = requireValue(name, value);
+            break;
+          case "check-project":
+            checkProject = true;
+            break;
+          case "serve":
+            servePort = Integer.parseInt(requireValue(name, value));
+            break;
+          case "record":
+            recordFile = requireValue(name, value);
+            break;
+          case "replay":
+            replayFile = requireValue(name, value);
+            break;
+          case "replay-latency":
+            String latency = requireValue(name, value);
+            replayLatencyMillis =
+                latency.equals("recorded")
+                    ? GitHubFixtures.RECORDED_LATENCY
+                    : Long.parseLong(latency);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option: " + arg);
+        }
+      }
+      return arguments;
+    }
+
+    private static String requireValue(String name, String value) {
+      if (value == null || value.isEmpty())
+        throw new IllegalArgumentException("Missing value for the option: --" + name);
+      return value;
+    }
+  }
+
+  /**
+   * The state, labels and body of a pull request. These are fetched at once for many PRs by {@link
+   * GitHubContext#fetchPullRequests(List)} and kept during the run.
+   */
+  static class PullRequest {
+    final String number;
+    final String state;
+    final String updatedAt;
+    final List<String> labels;
+    final String body;
+
+    PullRequest(String number, String state, String updatedAt, List<String> labels, String body) {
+      this.number = number;
+      this.state = state;
+      this.updatedAt = updatedAt;
+      this.labels = labels;
+      this.body = body;
+    }
+  }
+
+  /** Iterates over the elements of pages, which are fetched one by one with a cursor. */
+  abstract static class PageIterator implements Iterator<String> {
+    private final Deque<String> elements = new ArrayDeque<>();
+    private String cursor;
+    private boolean lastPage;
+
+    /**
+     * Fetches the page at the cursor and adds its elements to the list.
+     *
+     * @return the cursor of the next page, or null if it's the last page
+     */
+    abstract String fetchPage(String cursor, List<String> elements) throws Exception;
+
+    @Override
+    public boolean hasNext() {
+      while (elements.isEmpty() && !lastPage) {
+        List<String> page = new ArrayList<>();
+        try {
+          cursor = fetchPage(cursor, page);
+        } catch (RuntimeException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new IllegalStateException("Failed fetching the page", e);
+        }
+        lastPage = cursor == null;
+        elements.addAll(page);
+      }
+      return !elements.isEmpty();
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      return elements.poll();
+    }
+  }
+
+  /**
+   * Reads the standard output of a process. The standard error is drained by another thread and
+   * only its tail is kept for the warning. If the process doesn't end within the timeout, it's
+   * killed and reading the output fails.
+   *
+   * <p>If the process fails due to the rate limit or a server error of GitHub, or times out,
+   * reading the output fails with a {@link RetryableException} at the end of the output.
+   */
+  static class ProcessOutputReader extends Reader {
+    private static final int STDERR_TAIL_LENGTH = 4096;
+    private static final Pattern RETRYABLE_ERROR =
+        Pattern.compile(
+            "rate limit|HTTP 429|HTTP 5[0-9][0-9]|submitted too quickly|timed out|connection reset",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern THROTTLED_ERROR =
+        Pattern.compile("rate limit|HTTP 429|submitted too quickly", Pattern.CASE_INSENSITIVE);
+    private static final ScheduledExecutorService WATCHDOG =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "process-watchdog");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    private final Process process;
+    private final String command;
+    private final int timeOutInSec;
+    private final Metrics metrics;
+    private final long startNanos = System.nanoTime();
+    private final long deadlineNanos;
+    private final Reader stdout;
+    private final StringBuilder stderrTail = new StringBuilder();
+    private final Thread stderrDrainer;
+    private final ScheduledFuture<?> watchdog;
+    private volatile boolean timedOut;
+    private boolean finished;
+    private boolean recorded;
+
+    ProcessOutputReader(Process process, String command, int timeOutInSec) {
+      this(process, command, timeOutInSec, new Metrics());
+    }
+
+    /**
+     * @param metrics the metrics to which the lifetime of the process, the bytes of its standard
+     *     output and the timeout are recorded
+     */
+    ProcessOutputReader(Process process, String command, int timeOutInSec, Metrics metrics) {
+      this.process = process;
+      this.command = command;
+      this.timeOutInSec = timeOutInSec;
+      this.metrics = metrics;
+      this.deadlineNanos = startNanos + TimeUnit.SECONDS.toNanos(timeOutInSec);
+      this.stdout =
+          new InputStreamReader(
+              metrics.countBytesRead(process.getInputStream()), StandardCharsets.UTF_8);
+      this.stderrDrainer = new Thread(this::drainStderr, "stderr-drainer");
+      this.stderrDrainer.setDaemon(true);
+      this.stderrDrainer.start();
+      this.watchdog =
+          WATCHDOG.schedule(
+              () -> {
+                if (process.isAlive()) {
+                  timedOut = true;
+                  metrics.increment(Metrics.TIMEOUTS);
+                  process.destroyForcibly();
+                }
+              },
+              timeOutInSec,
+              TimeUnit.SECONDS);
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+      if (finished) return -1;
+      int n;
+      try {
+        n = stdout.read(buffer, offset, length);
+      } catch (IOException e) {
+        if (timedOut) throw timeOutException();
+        throw e;
+      }
+      if (n == -1) {
+        finish();
+      }
+      return n;
+    }
+
+    private void finish() throws IOException {
+      finished = true;
+      try {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (!process.waitFor(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) {
+          timedOut = true;
+          metrics.increment(Metrics.TIMEOUTS);
+          process.destroyForcibly();
+        }
+        stderrDrainer.join(TimeUnit.SECONDS.toMillis(1));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        process.destroyForcibly();
+        throw new InterruptedIOException("Interrupted while waiting for: " + command);
+      } finally {
+        watchdog.cancel(false);
+        recordLifetime();
+      }
+      if (timedOut) throw timeOutException();
+
+      if (process.exitValue() != 0) {
+        String stderr;
+        synchronized (stderrTail) {
+          stderr = stderrTail.toString();
+        }
+        if (RETRYABLE_ERROR.matcher(stderr).find()) {
+          throw new RetryableException(
+              format(
+                  "Process exited with %d. command: %s%n%s", process.exitValue(), command, stderr),
+              THROTTLED_ERROR.matcher(stderr).find(),
+              0);
+        }
+        System.err.printf(
+            "WARN: Process exited with %d. command: %s%n%s%n",
+            process.exitValue(), command, stderr);
+      }
+    }
+
+    private IOException timeOutException() {
+      return new RetryableException(
+          format("WARN: Process was exceeded timeout(%d sec). command: %s", timeOutInSec, command),
+          false,
+          0);
+    }
+
+    private void drainStderr() {
+      try (Reader stderr =
+          new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8)) {
+        char[] buffer = new char[1024];
+        int n;
+        while ((n = stderr.read(buffer)) != -1) {
+          synchronized (stderrTail) {
+            stderrTail.append(buffer, 0, n);
+            if (stderrTail.length() > STDERR_TAIL_LENGTH) {
+              stderrTail.delete(0, stderrTail.length() - STDERR_TAIL_LENGTH);
+            }
+          }
+        }
+      } catch (IOException e) {
+        // The process was killed
+      }
+    }
+
+    /** Records the time from the start of the process until its end or the close of the reader. */
+    private void recordLifetime() {
+      if (recorded) return;
+      recorded = true;
+      metrics.record("subprocess", System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void close() throws IOException {
+      watchdog.cancel(false);
+      recordLifetime();
+      if (process.isAlive()) process.destroyForcibly();
+      stdout.close();
+    }
+  }
+
+  /**
+   * Records the responses from GitHub to a fixture file, or replays them from the file instead of
+   * calling GitHub, so that a run can be repeated offline and deterministically, e.g., to profile
+   * and benchmark a production-sized release. Both the outputs of {@code gh} and the HTTP responses
+   * are recorded with their latencies, keyed by the command or the request. The token is never
+   * recorded.
+   *
+   * <p>The fixture file is JSON Lines, which is gzipped if the file name ends with {@code .gz},
+   * whose first line is the header {@code {"version": 1}}, followed by the responses in the order
+   * they were received, e.g., {@code {"type": "gh", "request": "gh api graphql ...", "millis": 523,
+   * "output": "..."}} and {@code {"type": "http", "request": "POST /graphql\n{...}", "millis": 120,
+   * "status": 200, "headers": {...}, "body": "..."}}. A run must be replayed with the same options
+   * as recorded, since the options such as the batch size change the requests. If the same request
+   * was recorded more than once, the responses are replayed in the recorded order and the last one
+   * is repeated.
+   */
+  static class GitHubFixtures {
+    /** The latency to replay each response with the latency it was recorded with. */
+    static final long RECORDED_LATENCY = -1;
+
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final boolean replaying;
+    private final long latencyMillis;
+    private final List<Map<String, Object>> recorded = new ArrayList<>();
+    private final Map<String, Deque<Map<String, Object>>> responses = new HashMap<>();
+
+    private GitHubFixtures(Path file, boolean replaying, long latencyMillis) {
+      this.file = file;
+      this.replaying = replaying;
+      this.latencyMillis = latencyMillis;
+    }
+
+    static GitHubFixtures record(Path file) {
+      return new GitHubFixtures(file, false, 0);
+    }
+
+    /**
+     * Loads the fixtures to replay.
+     *
+     * @param latencyMillis the latency injected into each response, or {@link #RECORDED_LATENCY}
+     */
+    static GitHubFixtures replay(Path file, long latencyMillis) throws IOException {
+      GitHubFixtures fixtures = new GitHubFixtures(file, true, latencyMillis);
+      try (BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(
+                  isGzipped(file)
+                      ? new GZIPInputStream(Files.newInputStream(file))
+                      : Files.newInputStream(file),
+                  StandardCharsets.UTF_8))) {
+        Object header = Json.parse(reader.readLine());
+        Object version = Json.get(header, "version");
+        if (!(version instanceof Number) || ((Number) version).intValue() != VERSION) {
+          throw new IOException("Unsupported fixture file: " + file);
+        }
+        String line;
+        while ((line = reader.readLine()) != null) {
+          Map<String, Object> entry = Json.asObject(Json.parse(line));
+          fixtures.responses.computeIfAbsent(key(entry), k -> new ArrayDeque<>()).add(entry);
+        }
+      }
+      return fixtures;
+    }
+
+    boolean isReplaying() {
+      return replaying;
+    }
+
+    /** Returns the reader which records the output of the command when it's read to the end. */
+    Reader recordOutput(String command, Reader reader) {
+      long start = System.nanoTime();
+      StringBuilder output = new StringBuilder();
+      return new FilterReader(reader) {
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+          char[] buffer = new char[1];
+          return read(buffer, 0, 1) == -1 ? -1 : buffer[0];
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+          int n;
+          try {
+            n = super.read(buffer, offset, length);
+          } catch (IOException e) {
+            done = true; // A failed output isn't recorded
+            throw e;
+          }
+          if (n > 0) output.append(buffer, offset, n);
+          if (n == -1) record();
+          return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+          // The output read so far is recorded, which is all the caller needs when it's replayed
+          record();
+          super.close();
+        }
+
+        private void record() {
+          if (done) return;
+          done = true;
+          Map<String, Object> entry = new LinkedHashMap<>();
+          entry.put("type", "gh");
+          entry.put("request", command);
+          entry.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+          entry.put("output", output.toString());
+          add(entry);
+        }
+      };
+    }
+
+    BufferedReader replayOutput(String command) throws InterruptedException {
+      Map<String, Object> entry = next("gh", command);
+      return new BufferedReader(new StringReader(Json.getString(entry, "output")));
+    }
+
+    void recordResponse(String method, URI uri, String body, Response response, long nanos) {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("type", "http");
+      entry.put("request", httpRequest(method, uri, body));
+      entry.put("millis", TimeUnit.NANOSECONDS.toMillis(nanos));
+      entry.put("status", response.status);
+      entry.put("headers", response.headers);
+      entry.put("body", response.body);
+      add(entry);
+    }
+
+    Response replayResponse(String method, URI uri, String body) throws InterruptedException {
+      Map<String, Object> entry = next("http", httpRequest(method, uri, body));
+      Map<String, String> headers = new LinkedHashMap<>();
+      Json.asObject(Json.get(entry, "headers"))
+          .forEach((name, value) -> headers.put(name, String.valueOf(value)));
+      return new Response(
+          Integer.parseInt(Json.getNumber(entry, "status")),
+          headers,
+          Json.getString(entry, "body"));
+    }
+
+    /** Writes the recorded responses to the file. This does nothing when replaying. */
+    void save() throws IOException {
+      if (replaying) return;
+      Path parent = file.toAbsolutePath().getParent();
+      if (parent != null) Files.createDirectories(parent);
+      Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+      try (Writer writer =
+          new BufferedWriter(
+              new OutputStreamWriter(
+                  isGzipped(file)
+                      ? new GZIPOutputStream(Files.newOutputStream(temp))
+                      : Files.newOutputStream(temp),
+                  StandardCharsets.UTF_8))) {
+        writer.write(Json.write(Map.of("version", VERSION)));
+        writer.write('\n');
+        synchronized (recorded) {
+          for (Map<String, Object> entry : recorded) {
+            writer.write(Json.write(entry));
+            writer.write('\n');
+          }
+        }
+      } catch (IOException e) {
+        Files.deleteIfExists(temp);
+        throw e;
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      System.err.printf("INFO: %d responses are recorded in %s%n", recorded.size(), file);
+    }
+
+    private void add(Map<String, Object> entry) {
+      synchronized (recorded) {
+        recorded.add(entry);
+      }
+    }
+
+    private Map<String, Object> next(String type, String request) throws InterruptedException {
+      Map<String, Object> entry;
+      synchronized (responses) {
+        Deque<Map<String, Object>> deque = responses.get(type + " " + request);
+        if (deque == null) {
+          throw new IllegalStateException("No response is recorded for the request: " + request);
+        }
+        entry = deque.size() > 1 ? deque.poll() : deque.peek();
+      }
+      long latency =
+          latencyMillis == RECORDED_LATENCY
+              ? Long.parseLong(Json.getNumber(entry, "millis"))
+              : latencyMillis;
+      if (latency > 0) Thread.sleep(latency);
+      return entry;
+    }
+
+    private static boolean isGzipped(Path file) {
+      return file.getFileName().toString().endsWith(".gz");
+    }
+
+    private static String key(Map<String, Object> entry) {
+      return Json.getString(entry, "type") + " " + Json.getString(entry, "request");
+    }
+
+    /** Returns the request without the host, so that it can be replayed for any API URL. */
+    private static String httpRequest(String method, URI uri, String body) {
+      String path = uri.getRawPath() + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+      return method + " " + path + (body == null ? "" : "\n" + body);
+    }
+
+    /** An HTTP response with the headers about the rate limit. */
+    static class Response {
+      static final List<String> HEADERS =
+          List.of("x-ratelimit-limit", "x-ratelimit-remaining", "x-ratelimit-reset", "retry-after");
+
+      final int status;
+      final Map<String, String> headers;
+      final String body;
+
+      Response(int status, Map<String, String> headers, String body) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+      }
+
+      OptionalLong header(String name) {
+        String value = headers.get(name);
+        if (value == null) return OptionalLong.empty();
+        try {
+          return OptionalLong.of(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+          return OptionalLong.empty();
+        }
+      }
+    }
+  }
+
+  /**
+   * Keeps the release note in memory and serves it on a local HTTP endpoint, so that the current
+   * state of the next release can be seen at any time. The server is notified that a PR was
+   * changed, e.g., by a relay of the webhook of the repository, and then only the PR is fetched and
+   * parsed again. The release note texts of the other PRs are kept as they were parsed, and {@code
+   * categoryMap} and {@code sameAsItems} are rebuilt from them in memory, since a change of a PR
+   * can move the texts merged by "Same as" across the categories. The rebuild takes milliseconds
+   * even for thousands of PRs, and the release note is the same as the one created from scratch.
+   *
+   * <ul>
+   *   <li>{@code GET /release-note}: Returns the release note as a markdown.
+   *   <li>{@code POST /events}: Notifies that a PR was changed. The body is the payload of a {@code
+   *       pull_request} webhook event, or just {@code {"number": 123}}. A PR which isn't known yet
+   *       is added if it's listed in the project (or the git range) now.
+   * </ul>
+   */
+  static class ReleaseNoteDaemon implements Closeable {
+    private final ReleaseNoteCreation creation;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    /**
+     * The release note texts of the PRs as they were parsed, in the order of the listing. The text
+     * is null if the PR doesn't have a release note.
+     */
+    private final Map<String, ReleaseNoteText> releaseNoteTexts = new LinkedHashMap<>();
+
+    private String projectId;
+    /** The rendered release note, which is read without waiting for the update in progress. */
+    private volatile String releaseNote = "";
+
+    ReleaseNoteDaemon(ReleaseNoteCreation creation, InetSocketAddress address) throws IOException {
+      this.creation = creation;
+      server = HttpServer.create(address, 0);
+      server.createContext("/release-note", this::handleReleaseNote);
+      server.createContext("/events", this::handleEvent);
+      server.setExecutor(executor);
+    }
+
+    /**
+     * Creates the release note of all the PRs, the same as {@link
+     * ReleaseNoteCreation#createReleaseNote()}.
+     */
+    synchronized void load() throws Exception {
+      if (creation.gitRange == null || creation.checkProject) {
+        projectId = creation.ghContext.getProjectId();
+      }
+      List<String> prNumbers = creation.listPullRequests(projectId);
+      ExecutorService fetchExecutor = creation.createExecutor();
+      try {
+        creation.processPullRequests(prNumbers, fetchExecutor);
+      } finally {
+        fetchExecutor.shutdownNow();
+      }
+      creation.reportDroppedPullRequests();
+
+      for (String prNumber : prNumbers) {
+        ReleaseNoteText releaseNoteText = creation.releaseNoteTextIndex.get(prNumber);
+        releaseNoteTexts.put(prNumber, releaseNoteText == null ? null : releaseNoteText.copy());
+      }
+      rebuild();
+    }
+
+    void start() {
+      server.start();
+      System.err.printf(
+          "INFO: serving the release note of %d PRs on http://%s:%d/release-note%n",
+          releaseNoteTexts.size(),
+          server.getAddress().getHostString(),
+          server.getAddress().getPort());
+    }
+
+    InetSocketAddress getAddress() {
+      return server.getAddress();
+    }
+
+    String getReleaseNote() {
+      return releaseNote;
+    }
+
+    /**
+     * Fetches and parses the PR again, and updates the release note.
+     *
+     * @return false if the PR is ignored since it isn't in the release
+     */
+    synchronized boolean update(String prNumber) throws Exception {
+      if (!releaseNoteTexts.containsKey(prNumber)) {
+        List<String> prNumbers = creation.listPullRequests(projectId);
+        if (!prNumbers.contains(prNumber)) return false;
+
+        // The PRs which were removed from the project since the last listing are removed too
+        Map<String, ReleaseNoteText> listed = new LinkedHashMap<>();
+        for (String listedPrNumber : prNumbers) {
+          listed.put(listedPrNumber, releaseNoteTexts.get(listedPrNumber));
+        }
+        releaseNoteTexts.clear();
+        releaseNoteTexts.putAll(listed);
+      }
+
+      creation.ghContext.forget(prNumber);
+      creation.ghContext.fetchPullRequests(List.of(prNumber));
+      releaseNoteTexts.put(prNumber, creation.fetchReleaseNoteText(prNumber));
+      creation.droppedPullRequests.remove(prNumber);
+      rebuild();
+      return true;
+    }
+
+    private void rebuild() {
+      creation.categoryMap.clear();
+      creation.sameAsItems.clear();
+      creation.releaseNoteTextIndex.clear();
+      for (ReleaseNoteText releaseNoteText : releaseNoteTexts.values()) {
+        // The texts are copied since the topic texts are changed when they are merged
+        if (releaseNoteText != null) creation.addReleaseNoteText(releaseNoteText.copy());
+      }
+      creation.assortSameAsItems();
+      releaseNote = creation.renderMarkdown();
+    }
+
+    private void handleReleaseNote(HttpExchange exchange) throws IOException {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        respond(exchange, 405, "Method not allowed\n");
+        return;
+      }
+      exchange.getResponseHeaders().set("Content-Type", "text/markdown; charset=utf-8");
+      respond(exchange, 200, releaseNote);
+    }
+
+    private void handleEvent(HttpExchange exchange) throws IOException {
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        respond(exchange, 405, "Method not allowed\n");
+        return;
+      }
+      String event = exchange.getRequestHeaders().getFirst("X-GitHub-Event");
+      Object payload;
+      try {
+        payload =
+            Json.parse(
+                new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+      } catch (RuntimeException e) {
+        respond(exchange, 400, "Invalid payload: " + e.getMessage() + "\n");
+        return;
+      }
+      String prNumber = Json.getNumber(payload, "pull_request", "number");
+      if (prNumber == null) prNumber = Json.getNumber(payload, "number");
+      String repository = Json.getString(payload, "repository", "name");
+      if (event != null && !event.equals("pull_request")) {
+        respond(exchange, 202, "Ignored the event: " + event + "\n");
+        return;
+      } else if (prNumber == null) {
+        respond(exchange, 400, "No PR number in the payload\n");
+        return;
+      } else if (repository != null && !repository.equals(creation.ghContext.repository)) {
+        respond(exchange, 202, "Ignored the PR of another repository: " + repository + "\n");
+        return;
+      }
+
+      try {
+        if (update(prNumber)) {
+          System.err.println("INFO: updated the PR: " + prNumber);
+          respond(exchange, 200, "Updated #" + prNumber + "\n");
+        } else {
+          respond(exchange, 202, "Ignored #" + prNumber + ", which isn't in the release\n");
+        }
+      } catch (Exception e) {
+        System.err.println("ERROR: failed updating the PR: " + prNumber);
+        e.printStackTrace();
+        respond(exchange, 502, "Failed updating #" + prNumber + ": " + e + "\n");
+      }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(bytes);
+      }
+    }
+
+    @Override
+    public void close() {
+      server.stop(0);
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Lists the PRs merged between two refs of a local clone from the commit history, instead of the
+   * items of the project. The PR of a commit is read from its subject, i.e., {@code Merge pull
+   * request #123 from ...} of a merge commit and the {@code (#123)} suffix of a squashed commit.
+   * The PRs are listed in the order they were merged, and each of them only once.
+   */
+  static class GitRange {
+    private static final int TIME_OUT_IN_SEC = 60;
+    private static final Pattern PATTERN_MERGE_COMMIT =
+        Pattern.compile("^Merge pull request #([0-9]+) ");
+    private static final Pattern PATTERN_SQUASH_COMMIT = Pattern.compile("\\(#([0-9]+)\\) *$");
+
+    final Path directory;
+    /** The range of the form {@code <from>..<to>}, e.g., {@code v3.9.0..v4.0.0}. */
+    final String range;
+
+    private final Metrics metrics;
+
+    GitRange(Path directory, String range, Metrics metrics) {
+      if (!range.contains("..")) {
+        throw new IllegalArgumentException("The git range must be <from>..<to>: " + range);
+      }
+      this.directory = directory;
+      this.range = range;
+      this.metrics = metrics;
+    }
+
+    List<String> pullRequestNumbers() throws IOException {
+      Process p =
+          new ProcessBuilder(
+                  "git", "-C", directory.toString(), "log", "--reverse", "--format=%s", range)
+              .start();
+      p.getOutputStream().close();
+      Set<String> prNumbers = new LinkedHashSet<>();
+      try (BufferedReader br =
+          new BufferedReader(
+              new ProcessOutputReader(p, "git log " + range, TIME_OUT_IN_SEC, metrics))) {
+        String subject;
+        while ((subject = br.readLine()) != null) {
+          String prNumber = parsePullRequestNumber(subject);
+          if (prNumber != null) prNumbers.add(prNumber);
+        }
+      }
+      return new ArrayList<>(prNumbers);
+    }
+
+    /**
+     * Returns the number of the PR which the commit was merged with, or null if it wasn't merged
+     * with a PR. A squashed commit can have more than one suffix, e.g., {@code Fix A (#1) (#2)} for
+     * a backport, and the last one is the PR which was merged.
+     */
+    static String parsePullRequestNumber(String subject) {
+      Matcher matcher = PATTERN_MERGE_COMMIT.matcher(subject);
+      if (matcher.find()) return matcher.group(1);
+      matcher = PATTERN_SQUASH_COMMIT.matcher(subject);
+      if (matcher.find()) return matcher.group(1);
+      return null;
+    }
+  }
+
+  /**
+   * An on-disk index of the project numbers keyed by the owner and the title of the project. The
+   * number of a project never changes, so the entries never expire.
+   */
+  static class ProjectIndex {
+    private final Path file;
+
+    ProjectIndex(Path file) {
+      this.file = file;
+    }
+
+    synchronized String get(String owner, String title) {
+      return load().getProperty(key(owner, title));
+    }
+
+    synchronized void put(String owner, String title, String projectId) {
+      Properties index = load();
+      index.setProperty(key(owner, title), projectId);
+      try {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), "projects", ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+          index.store(writer, null);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        System.err.println("WARN: failed writing the project index: " + file);
+      }
+    }
+
+    private Properties load() {
+      Properties index = new Properties();
+      if (!Files.isRegularFile(file)) return index;
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        index.load(reader);
+      } catch (IOException e) {
+        System.err.println("WARN: failed reading the project index: " + file);
+      }
+      return index;
+    }
+
+    private static String key(String owner, String title) {
+      return owner + "/" + title;
+    }
+  }
+
+  /**
+   * A snapshot of the parsed release note texts of the PRs in the last run, which is saved as JSON.
+   * Each PR is recorded with its {@code updatedAt}, and the record is reused while the {@code
+   * updatedAt} of the PR is unchanged. The PRs which don't have a release note text (i.e., not
+   * merged or N/A) are recorded without the category. The texts are recorded before the same-as
+   * items are merged, so the merge is done again with the added or updated PRs.
+   */
+  static class ReleaseNoteSnapshot {
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final String key;
+    private final Map<String, Map<String, Object>> pullRequests = new LinkedHashMap<>();
+
+    private ReleaseNoteSnapshot(Path file, String key) {
+      this.file = file;
+      this.key = key;
+    }
+
+    /**
+     * Loads the snapshot from the file. An empty snapshot is returned if the file doesn't exist or
+     * is for another project.
+     */
+    static ReleaseNoteSnapshot load(Path file, String key) {
+      ReleaseNoteSnapshot snapshot = new ReleaseNoteSnapshot(file, key);
+      if (!Files.isRegularFile(file)) return snapshot;
+      try {
+        Object root = Json.parse(Files.readString(file, StandardCharsets.UTF_8));
+        Object version = Json.get(root, "version");
+        if (!(version instanceof Number) || ((Number) version).intValue() != VERSION) {
+          System.err.println("INFO: the snapshot is for another version of this script: " + file);
+        } else if (!key.equals(Json.getString(root, "key"))) {
+          System.err.println("INFO: the snapshot is for another project: " + file);
+        } else {
+          for (Map.Entry<String, Object> entry : Json.getObject(root, "pullRequests").entrySet()) {
+            snapshot.pullRequests.put(entry.getKey(), Json.asObject(entry.getValue()));
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        System.err.println("WARN: failed reading the snapshot: " + file);
+      }
+      return snapshot;
+    }
+
+    boolean isUpToDate(String prNumber, String updatedAt) {
+      Map<String, Object> pr = pullRequests.get(prNumber);
+      return pr != null && updatedAt != null && updatedAt.equals(pr.get("updatedAt"));
+    }
+
+    /** Returns a new release note text of the PR, or null if it doesn't have a release note. */
+    ReleaseNoteText get(String prNumber) {
+      Map<String, Object> pr = pullRequests.get(prNumber);
+      String category = pr == null ? null : Json.getString(pr, "category");
+      if (category == null) return null;
+
+      ReleaseNoteText releaseNoteText = new ReleaseNoteText();
+      releaseNoteText.category = Category.fromLabel(category);
+      releaseNoteText.text = Json.getString(pr, "text");
+      releaseNoteText.prNumbers.add(prNumber);
+      for (Object topicPrNumber : Json.getList(pr, "sameAs")) {
+        releaseNoteText.sameAsPrNumbers.add((String) topicPrNumber);
+      }
+      return releaseNoteText;
+    }
+
+    /** Records the release note text of the PR, which is null if it doesn't have one. */
+    void put(String prNumber, String updatedAt, ReleaseNoteText releaseNoteText) {
+      if (updatedAt == null) {
+        pullRequests.remove(prNumber);
+        return;
+      }
+      Map<String, Object> pr = new LinkedHashMap<>();
+      pr.put("updatedAt", updatedAt);
+      if (releaseNoteText != null) {
+        pr.put(
+            "category",
+            (releaseNoteText.category == null ? Category.MISCELLANEOUS : releaseNoteText.category)
+                .getLabel());
+        if (releaseNoteText.text != null) pr.put("text", releaseNoteText.text);
+        if (!releaseNoteText.sameAsPrNumbers.isEmpty()) {
+          pr.put("sameAs", new ArrayList<>(releaseNoteText.sameAsPrNumbers));
+        }
+      }
+      pullRequests.put(prNumber, pr);
+    }
+
+    void remove(String prNumber) {
+      pullRequests.remove(prNumber);
+    }
+
+    /** Removes the PRs which are no longer in the project. */
+    void retainAll(Collection<String> prNumbers) {
+      pullRequests.keySet().retainAll(new HashSet<>(prNumbers));
+    }
+
+    void save() {
+      Map<String, Object> root = new LinkedHashMap<>();
+      root.put("version", VERSION);
+      root.put("key", key);
+      root.put("pullRequests", pullRequests);
+      try {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "snapshot", ".tmp");
+        Files.writeString(temp, Json.write(root), StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        System.err.println("WARN: failed writing the snapshot: " + file);
+      }
+    }
+  }
+
+  /**
+   * An on-disk cache of PRs. Each PR is stored as a properties file with its state, category label
+   * and release note section, and the entry is valid only while the {@code updatedAt} of the PR is
+   * unchanged. When the number of entries exceeds the limit, the least recently used entries are
+   * removed.
+   */
+  static class PullRequestCache {
+    private static final String SUFFIX = ".properties";
+
+    private final Path directory;
+    private final int maxEntries;
+
+    PullRequestCache(Path directory, int maxEntries) {
+      this.directory = directory;
+      this.maxEntries = maxEntries;
+    }
+
+    /** Returns the cached PR, or null if it isn't cached or it was updated after cached. */
+    PullRequest get(String owner, String repository, String prNumber, String updatedAt) {
+      if (updatedAt == null) return null;
+      Path file = entryPath(owner, repository, prNumber);
+      if (!Files.isRegularFile(file)) return null;
+
+      Properties entry = new Properties();
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        entry.load(reader);
+        if (!updatedAt.equals(entry.getProperty("updatedAt"))) return null;
+        // Touch the entry for the LRU eviction
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      } catch (IOException e) {
+        System.err.println("WARN: failed reading the cache: " + file);
+        return null;
+      }
+
+      String category = entry.getProperty("category", "");
+      return new PullRequest(
+          prNumber,
+          entry.getProperty("state"),
+          updatedAt,
+          category.isEmpty() ? new ArrayList<>() : new ArrayList<>(List.of(category)),
+          entry.getProperty("releaseNoteSection", ""));
+    }
+
+    void put(String owner, String repository, PullRequest pr) {
+      if (pr.updatedAt == null) return;
+      Properties entry = new Properties();
+      entry.setProperty("updatedAt", pr.updatedAt);
+      entry.setProperty("state", pr.state);
+      entry.setProperty(
+          "category",
+          pr.labels.stream()
+              .filter(Category::isValidLabel)
+              .findFirst()
+              .map(label -> Category.fromLabel(label).getLabel())
+              .orElse(""));
+      entry.setProperty("releaseNoteSection", extractReleaseNoteSection(pr.body));
+
+      Path file = entryPath(owner, repository, pr.number);
+      try {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), pr.number, ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+          entry.store(writer, null);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        System.err.println("WARN: failed writing the cache: " + file);
+      }
+    }
+
+    /** Removes the least recently used entries so that the number of entries is within limit. */
+    void evict() {
+      if (!Files.isDirectory(directory)) return;
+      List<Path> entries;
+      try (Stream<Path> files = Files.walk(directory)) {
+        entries =
+            files
+                .filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                .sorted(Comparator.comparing(PullRequestCache::lastModified).reversed())
+                .collect(Collectors.toList());
+      } catch (IOException e) {
+        System.err.println("WARN: failed listing the cache: " + directory);
+        return;
+      }
+
+      for (Path file : entries.subList(Math.min(maxEntries, entries.size()), entries.size())) {
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException e) {
+          System.err.println("WARN: failed removing the cache: " + file);
+        }
+      }
+    }
+
+    private Path entryPath(String owner, String repository, String prNumber) {
+      return directory.resolve(owner).resolve(repository).resolve(prNumber + SUFFIX);
+    }
+
+    private static FileTime lastModified(Path file) {
+      try {
+        return Files.getLastModifiedTime(file);
+      } catch (IOException e) {
+        return FileTime.fromMillis(0);
+      }
+    }
+  }
+
+  public static class GitHubContext {
+
+    private static final String MERGED_STATE = "merged";
+    static final int ITEMS_PAGE_SIZE = 100;
+    static final int PROJECTS_PAGE_SIZE = 20;
+    private static final int PROCESS_TIME_OUT_IN_SEC = 10;
+    private static final int LISTING_BATCH_SIZE = 100;
+    static final String GRAPHQL_UPDATED_AT_FIELDS = "number updatedAt";
+    static final String GRAPHQL_PULL_REQUEST_FIELDS =
+        "number state updatedAt body labels(first: 100) { nodes { name } }";
+    /**
+     * The fields of the content of a project item. Only the small fields to tell the merged PRs of
+     * the repository are listed, and the labels and body are fetched later only for the PRs which
+     * aren't in the cache or the snapshot.
+     */
+    static final String GRAPHQL_PROJECT_ITEM_FIELDS =
+        "__typename ... on PullRequest { repository { name } number state updatedAt }";
+    /**
+     * The fields of the content of a project item with the same fields of a PR as a batch, so that
+     * the listed PRs don't need to be fetched again.
+     */
+    static final String GRAPHQL_PROJECT_ITEM_FIELDS_WITH_BODIES =
+        "__typename ... on PullRequest { repository { name } " + GRAPHQL_PULL_REQUEST_FIELDS + " }";
+    private static final String JQ_PULL_REQUEST_TSV =
+        "[(.number | tostring), .state, .updatedAt, (.body | @base64)]"
+            + " + [.labels.nodes[].name] | @tsv";
+    private static final String JQ_PULL_REQUEST_FIELDS =
+        ".data.repository | to_entries[] | select(.value != null) | .value | "
+            + JQ_PULL_REQUEST_TSV;
+    private static final String JQ_PULL_REQUEST_UPDATED_AT =
+        ".data.repository | to_entries[] | select(.value != null) | .value"
+            + " | [(.number | tostring), .updatedAt] | @tsv";
+
+    final String owner;
+    final String projectTitlePrefix;
+    final String version;
+    final String repository;
+    /** The fetched PRs, which are shared with {@link #forVersion} since they are the same PRs. */
+    private Map<String, PullRequest> pullRequests = new ConcurrentHashMap<>();
+    /** The {@code updatedAt} of the PRs listed from the project, shared the same as the PRs. */
+    private Map<String, String> listedUpdatedAts = new ConcurrentHashMap<>();
+    private int batchSize = Options.DEFAULT_BATCH_SIZE;
+    /** Whether the labels and body of the PRs are listed with the project items. */
+    boolean bodiesListed = true;
+    private int processTimeOutInSec = PROCESS_TIME_OUT_IN_SEC;
+    private PullRequestCache cache;
+    private ProjectIndex projectIndex;
+    /** The resolved project numbers by title, which are shared with {@link #forRepository}. */
+    private Map<String, String> projectIds = new HashMap<>();
+
+    Metrics metrics = new Metrics();
+    RequestScheduler scheduler =
+        new RequestScheduler(1, RequestScheduler.DEFAULT_RETRY_BUDGET, metrics);
+    GitHubFixtures fixtures;
+
+    public GitHubContext(String owner, String projectTitString, String version, String repository) {
+      this.owner = owner;
+      this.projectTitlePrefix = projectTitString;
+      this.version = version;
+      this.repository = repository;
+    }
+
+    /**
+     * Returns the context for another repository in the same project. The contexts share the
+     * resolved project number, so the project is looked up only once for all the repositories. The
+     * fixtures and the settings of the context are also shared.
+     */
+    GitHubContext forRepository(String repository) {
+      return forRelease(version, repository);
+    }
+
+    /**
+     * Returns the context for another version of the repository, whose project is the one of the
+     * version. The fixtures and the settings of the context are shared.
+     */
+    GitHubContext forVersion(String version) {
+      return forRelease(version, repository);
+    }
+
+    GitHubContext forRelease(String version, String repository) {
+      return share(new GitHubContext(owner, projectTitlePrefix, version, repository));
+    }
+
+    <T extends GitHubContext> T share(T context) {
+      GitHubContext shared = context;
+      if (repository.equals(shared.repository)) {
+        shared.pullRequests = pullRequests;
+        shared.listedUpdatedAts = listedUpdatedAts;
+      }
+      shared.projectIds = projectIds;
+      shared.fixtures = fixtures;
+      shared.batchSize = batchSize;
+      shared.bodiesListed = bodiesListed;
+      shared.processTimeOutInSec = processTimeOutInSec;
+      return context;
+    }
+
+    /**
+     * Returns the number of the project whose title is exactly {@link #getProjectTitle()}. The
+     * resolved number is kept in the project index if it's set, so the lookup is skipped in the
+     * following runs.
+     */
+    String getProjectId() throws Exception {
+      String title = getProjectTitle();
+      // The contexts for the other repositories wait for the number resolved by the first one
+      synchronized (projectIds) {
+        String projectId = projectIds.get(title);
+        if (projectId == null) {
+          projectId = resolveProjectId(title);
+          projectIds.put(title, projectId);
+        }
+        return projectId;
+      }
+    }
+
+    private String resolveProjectId(String title) throws Exception {
+      if (projectIndex != null) {
+        String projectId = projectIndex.get(owner, title);
+        if (projectId != null) return projectId;
+      }
+
+      String projectId =
+          scheduler.call(metrics, "findProjectNumber", () -> findProjectNumber(title));
+      if (projectId == null) throw new RuntimeException("Couldn't get the projectId");
+      if (projectIndex != null) projectIndex.put(owner, title, projectId);
+      return projectId;
+    }
+
+    /**
+     * Searches the projects of the owner with the title and returns the number of the first one
+     * whose title is exactly the same. The search includes closed projects so that we can run this
+     * script to the closed project for debug. The search results are fetched page by page, and the
+     * following pages are not fetched once the project is found. The title is passed as a variable
+     * of the query, so it can have any characters.
+     *
+     * @return the project number, or null if not found
+     */
+    String findProjectNumber(String title) throws Exception {
+      try (BufferedReader br =
+          runSubProcessAndGetOutputAsReader(
+              format(
+                  "gh api graphql --paginate -f title=%s -f query=%s --jq %s",
+                  shellQuote(title),
+                  shellQuote(
+                      buildOwnerQuery(
+                          "$endCursor: String, $title: String!",
+                          format(
+                              "projectsV2(first: %d, after: $endCursor, query: $title) {"
+                                  + " nodes { number title } pageInfo { hasNextPage endCursor } }",
+                              PROJECTS_PAGE_SIZE))),
+                  shellQuote(
+                      format(
+                          ".data.%s.projectsV2.nodes[] | select(.title == %s) | .number",
+                          ownerField(), Json.quote(title)))))) {
+
+        // Closing the reader stops fetching the following pages
+        return br.readLine();
+      }
+    }
+
+    /** Returns the title of the version project. (e.g., ScalarDB 4.0.0) */
+    String getProjectTitle() {
+      return projectTitlePrefix + " " + getVersion();
+    }
+
+    String getVersion() {
+      int index = this.version.indexOf("-");
+      if (index == -1) {
+        return this.version;
+      }
+      // Remove the suffix after the dash. (e.g., 4.0.0-rc1 -> 4.0.0)
+      return this.version.substring(0, index);
+    }
+
+    List<String> getPullRequestNumbers(String projectId) throws Exception {
+      List<String> prNumbers = new ArrayList<>();
+      pullRequestNumbers(projectId).forEachRemaining(prNumbers::add);
+      return prNumbers;
+    }
+
+    /**
+     * Returns the numbers of the merged PRs of the repository in the project. The project items are
+     * listed page by page with a GraphQL cursor, and the PR numbers of a page are available as soon
+     * as the page is fetched. Each page is fetched as a request of its own, so the timeout and the
+     * retries apply to a page instead of the whole project.
+     *
+     * <p>ProjectV2 items can't be filtered by the state of their PRs on the server, so the items
+     * are filtered as they are listed. The labels and body of the PRs are listed with the items and
+     * kept as fetched, so the listed PRs don't need another request. If the bodies aren't listed
+     * (see {@link #setBodiesListed(boolean)}), only the number, state and {@code updatedAt} are
+     * listed, and the listed {@code updatedAt} is kept so that the cache and the snapshot don't
+     * need to fetch it again.
+     */
+    Iterator<String> pullRequestNumbers(String projectId) throws Exception {
+      return new PageIterator() {
+        @Override
+        String fetchPage(String cursor, List<String> prNumbers) throws Exception {
+          List<String> page = new ArrayList<>();
+          String nextCursor =
+              scheduler.call(
+                  metrics,
+                  "fetchPullRequestNumbers",
+                  () -> fetchPullRequestNumbers(cursor, projectId, page));
+          prNumbers.addAll(page);
+          return nextCursor;
+        }
+      };
+    }
+
+    /**
+     * Fetches a page of the merged PRs of the project. Their numbers are added to the list, and the
+     * PRs (or only their {@code updatedAt} if the bodies aren't listed) are kept. The first line of
+     * the output is the cursor of the next page, which is empty on the last page.
+     *
+     * @return the cursor of the next page, or null if it's the last page
+     */
+    String fetchPullRequestNumbers(String cursor, String projectId, List<String> prNumbers)
+        throws Exception {
+      String items = format(".data.%s.projectV2.items", ownerField());
+      try (BufferedReader br =
+          runSubProcessAndGetOutputAsReader(
+              format(
+                  "gh api graphql%s -f query=%s --jq %s",
+                  cursor == null ? "" : " -f endCursor=" + shellQuote(cursor),
+                  shellQuote(
+                      buildOwnerQuery(
+                          "$endCursor: String",
+                          format(
+                              "projectV2(number: %d) { items(first: %d, after: $endCursor) {"
+                                  + " nodes { content { %s } }"
+                                  + " pageInfo { hasNextPage endCursor } } }",
+                              Integer.parseInt(projectId),
+                              ITEMS_PAGE_SIZE,
+                              projectItemFields()))),
+                  shellQuote(
+                      format(
+                          "(%1$s.pageInfo | if .hasNextPage then .endCursor else \"\" end),"
+                              + " (%1$s.nodes[].content | select(.__typename == \"PullRequest\""
+                              + " and .repository.name == %2$s and .state == \"MERGED\") | %3$s)",
+                          items,
+                          Json.quote(this.repository),
+                          bodiesListed
+                              ? JQ_PULL_REQUEST_TSV
+                              : "[(.number | tostring), .updatedAt] | @tsv"))))) {
+
+        String nextCursor = br.readLine();
+        if (nextCursor == null) throw new RuntimeException("Couldn't get the project items");
+        String line;
+        while ((line = br.readLine()) != null) {
+          if (line.isEmpty()) continue;
+          if (bodiesListed) {
+            prNumbers.add(addListedPullRequest(parsePullRequestFields(line)));
+            continue;
+          }
+          String[] fields = line.split("\t", -1);
+          if (fields.length != 2)
+            throw new IllegalArgumentException("Unexpected project item fields: " + line);
+          prNumbers.add(addListedPullRequest(fields[0], fields[1]));
+        }
+        return nextCursor.isEmpty() ? null : nextCursor;
+      }
+    }
+
+    /** Keeps the PR listed with its labels and body from the project, and returns its number. */
+    String addListedPullRequest(PullRequest pr) {
+      pullRequests.put(pr.number, pr);
+      return addListedPullRequest(pr.number, pr.updatedAt);
+    }
+
+    /** Keeps the {@code updatedAt} of the PR listed from the project, and returns its number. */
+    String addListedPullRequest(String prNumber, String updatedAt) {
+      if (updatedAt != null) listedUpdatedAts.put(prNumber, updatedAt);
+      return prNumber;
+    }
+
+    /**
+     * Whether the PR is a merged PR of the repository. Only these PRs are listed from the project.
+     */
+    boolean isListed(String repository, String state) {
+      return this.repository.equals(repository) && MERGED_STATE.equalsIgnoreCase(state);
+    }
+
+    /**
+     * Builds a GraphQL query for the owner of the projects. The owner is the viewer if it is
+     * {@code @me}, the same as {@code gh project}.
+     */
+    String buildOwnerQuery(String variables, String selection) {
+      return "@me".equals(owner)
+          ? format("query(%s) { viewer { %s } }", variables, selection)
+          : format(
+              "query(%s) { repositoryOwner(login: %s) { ... on ProjectV2Owner { %s } } }",
+              variables, Json.quote(owner), selection);
+    }
+
+    /** Returns the field of the owner in the response of {@link #buildOwnerQuery}. */
+    String ownerField() {
+      return "@me".equals(owner) ? "viewer" : "repositoryOwner";
+    }
+
+    void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets whether the labels and body of the PRs are listed with the project items. They are
+     * listed by default, which saves the batches for the listed PRs. They should not be listed if
+     * the PRs are read from the cache or the snapshot, since their bodies would be downloaded on
+     * every run, or if the project is listed for each of several repositories.
+     */
+    void setBodiesListed(boolean bodiesListed) {
+      this.bodiesListed = bodiesListed;
+    }
+
+    /** Returns the fields of the content of a project item to list. */
+    String projectItemFields() {
+      return bodiesListed ? GRAPHQL_PROJECT_ITEM_FIELDS_WITH_BODIES : GRAPHQL_PROJECT_ITEM_FIELDS;
+    }
+
+    void setCache(PullRequestCache cache) {
+      this.cache = cache;
+    }
+
+    void setProjectIndex(ProjectIndex projectIndex) {
+      this.projectIndex = projectIndex;
+    }
+
+    void setMetrics(Metrics metrics) {
+      this.metrics = metrics;
+    }
+
+    void setScheduler(RequestScheduler scheduler) {
+      this.scheduler = scheduler;
+    }
+
+    /** Sets the fixtures to which the responses are recorded, or from which they are replayed. */
+    void setFixtures(GitHubFixtures fixtures) {
+      this.fixtures = fixtures;
+    }
+
+    /**
+     * Fetches the state, labels and body of the given PRs with one GraphQL query per {@code
+     * batchSize} PRs, and keeps them so that {@link #isPullRequestMerged(String)}, {@link
+     * #getCategoryFromPullRequest(String)} and {@link #getPullRequestBody(String)} don't need to
+     * call the API for each PR. If a batch fails, the PRs in it are fetched one by one later.
+     *
+     * <p>If the cache is set, only the {@code updatedAt} of the PRs is fetched first, and the PRs
+     * which are not updated since they were cached are read from the cache.
+     */
+    void fetchPullRequests(List<String> prNumbers) throws InterruptedException {
+      fetchPullRequests(prNumbers, new DirectExecutorService());
+    }
+
+    /** Same as {@link #fetchPullRequests(List)}, but the batches are fetched on the executor. */
+    void fetchPullRequests(List<String> prNumbers, ExecutorService executor)
+        throws InterruptedException {
+      if (batchSize <= 1) return;
+
+      // The PRs listed with their labels and body are already fetched
+      List<String> targets =
+          prNumbers.stream()
+              .filter(prNumber -> !pullRequests.containsKey(prNumber))
+              .collect(Collectors.toList());
+      if (cache != null) {
+        Map<String, String> updatedAts = fetchUpdatedAts(targets, executor);
+        List<String> uncached = new ArrayList<>();
+        for (String prNumber : targets) {
+          PullRequest cached = cache.get(owner, repository, prNumber, updatedAts.get(prNumber));
+          if (cached != null) {
+            metrics.increment(Metrics.CACHE_HITS);
+            pullRequests.put(prNumber, cached);
+          } else {
+            uncached.add(prNumber);
+          }
+        }
+        System.err.printf(
+            "INFO: %d of %d PRs are read from the cache%n",
+            targets.size() - uncached.size(), targets.size());
+        targets = uncached;
+      }
+
+      runInBatches(targets, batchSize, executor, this::fetchPullRequestsInBatch);
+
+      if (cache != null) {
+        for (String prNumber : targets) {
+          PullRequest pr = pullRequests.get(prNumber);
+          if (pr != null) cache.put(owner, repository, pr);
+        }
+        cache.evict();
+      }
+    }
+
+    /**
+     * Forgets the fetched PR and its listed {@code updatedAt}, so that it's fetched again when it's
+     * read next time.
+     */
+    void forget(String prNumber) {
+      pullRequests.remove(prNumber);
+      listedUpdatedAts.remove(prNumber);
+    }
+
+    /**
+     * Fetches the {@code updatedAt} of the PRs in batches on the executor. The PRs which failed to
+     * be fetched are not in the returned map. The ones of the PRs listed from the project are read
+     * from the listing without a request.
+     */
+    Map<String, String> fetchUpdatedAts(List<String> prNumbers, ExecutorService executor)
+        throws InterruptedException {
+      Map<String, String> updatedAts = new ConcurrentHashMap<>();
+      List<String> targets = new ArrayList<>();
+      for (String prNumber : prNumbers) {
+        String updatedAt = listedUpdatedAts.get(prNumber);
+        if (updatedAt != null) {
+          updatedAts.put(prNumber, updatedAt);
+        } else {
+          targets.add(prNumber);
+        }
+      }
+      runInBatches(
+          targets,
+          LISTING_BATCH_SIZE,
+          executor,
+          batch ->
+              updatedAts.putAll(
+                  scheduler.call(
+                      metrics, "fetchUpdatedAtInBatch", () -> fetchUpdatedAtInBatch(batch))));
+      return updatedAts;
+    }
+
+    private void runInBatches(
+        List<String> prNumbers, int size, ExecutorService executor, BatchTask task)
+        throws InterruptedException {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int from = 0; from < prNumbers.size(); from += size) {
+        List<String> batch = prNumbers.subList(from, Math.min(from + size, prNumbers.size()));
+        futures.add(
+            executor.submit(
+                () -> {
+                  try {
+                    task.run(batch);
+                  } catch (Exception e) {
+                    metrics.increment(Metrics.BATCH_FAILURES);
+                    System.err.println("WARN: failed fetching the PRs at once. PRs: " + batch);
+                    if (DEBUG != null) e.printStackTrace();
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+    }
+
+    private void fetchPullRequestsInBatch(List<String> prNumbers) throws Exception {
+      for (PullRequest pr :
+          scheduler.call(metrics, "queryPullRequests", () -> queryPullRequests(prNumbers))) {
+        pullRequests.put(pr.number, pr);
+      }
+    }
+
+    /** Fetches the state, updatedAt, body and labels of the PRs with one GraphQL query. */
+    List<PullRequest> queryPullRequests(List<String> prNumbers) throws Exception {
+      try (BufferedReader br =
+          runBatchQuery(prNumbers, GRAPHQL_PULL_REQUEST_FIELDS, JQ_PULL_REQUEST_FIELDS)) {
+
+        List<PullRequest> prs = new ArrayList<>();
+        String line;
+        while ((line = br.readLine()) != null) {
+          if (line.isEmpty()) continue;
+          prs.add(parsePullRequestFields(line));
+        }
+        return prs;
+      }
+    }
+
+    /** Fetches the updatedAt of the PRs with one GraphQL query. */
+    Map<String, String> fetchUpdatedAtInBatch(List<String> prNumbers) throws Exception {
+      try (BufferedReader br =
+          runBatchQuery(prNumbers, GRAPHQL_UPDATED_AT_FIELDS, JQ_PULL_REQUEST_UPDATED_AT)) {
+
+        Map<String, String> updatedAts = new HashMap<>();
+        String line;
+        while ((line = br.readLine()) != null) {
+          String[] fields = line.split("\t", -1);
+          if (fields.length == 2) updatedAts.put(fields[0], fields[1]);
+        }
+        return updatedAts;
+      }
+    }
+
+    private BufferedReader runBatchQuery(List<String> prNumbers, String fields, String jq)
+        throws Exception {
+      return runSubProcessAndGetOutputAsReader(
+          format(
+              "gh api graphql -f owner=%s -f name=%s -f query=%s --jq %s",
+              shellQuote(this.owner),
+              shellQuote(this.repository),
+              shellQuote(buildBatchQuery(prNumbers, fields)),
+              shellQuote(jq)));
+    }
+
+    /**
+     * Quotes the value as a single word of the shell command, so that it can have any characters,
+     * e.g., {@code '} in a project title.
+     */
+    static String shellQuote(String value) {
+      return "'" + value.replace("'", "'\\''") + "'";
+    }
+
+    /**
+     * Builds a GraphQL query which gets the fields of the PRs with aliases (e.g., {@code pr123}).
+     * The query takes the {@code owner} and {@code name} of the repository as its variables.
+     */
+    static String buildBatchQuery(List<String> prNumbers, String fields) {
+      StringBuilder query = new StringBuilder();
+      query.append("query($owner: String!, $name: String!) {");
+      query.append(" repository(owner: $owner, name: $name) {");
+      for (String prNumber : prNumbers) {
+        query.append(
+            format(
+                " pr%1$s: pullRequest(number: %1$s) { %2$s }", Integer.parseInt(prNumber), fields));
+      }
+      query.append(" } }");
+      return query.toString();
+    }
+
+    /**
+     * Parses a line of tab-separated fields: number, state, updatedAt, base64-encoded body and
+     * labels.
+     */
+    static PullRequest parsePullRequestFields(String line) {
+      String[] fields = line.split("\t", -1);
+      if (fields.length < 4)
+        throw new IllegalArgumentException("Unexpected pull request fields: " + line);
+      String body = new String(Base64.getDecoder().decode(fields[3]), StandardCharsets.UTF_8);
+      List<String> labels = Arrays.asList(fields).subList(4, fields.length);
+      return new PullRequest(fields[0], fields[1], fields[2], new ArrayList<>(labels), body);
+    }
+
+    private interface BatchTask {
+      void run(List<String> prNumbers) throws Exception;
+    }
+
+    /**
+     * Returns the fetched PR. If the PR hasn't been fetched yet, it's fetched by {@link
+     * #fetchPullRequest(String)} if {@link #fetchesPullRequest()}. Otherwise, this returns null and
+     * the caller gets the field on demand.
+     */
+    private PullRequest getFetchedPullRequest(String prNumber) throws Exception {
+      PullRequest pr = pullRequests.get(prNumber);
+      if (pr == null && fetchesPullRequest()) {
+        // The PR should have been fetched in a batch, so it's fetched again by itself
+        if (batchSize > 1) metrics.increment(Metrics.RETRIES);
+        pr = scheduler.call(metrics, "fetchPullRequest", () -> fetchPullRequest(prNumber));
+        if (pr != null) pullRequests.put(prNumber, pr);
+      }
+      return pr;
+    }
+
+    /**
+     * Returns whether {@link #fetchPullRequest(String)} fetches a PR. This returns false since each
+     * field of the PR is fetched with {@code gh pr view} on demand.
+     */
+    boolean fetchesPullRequest() {
+      return false;
+    }
+
+    /** Fetches a PR which wasn't fetched in a batch. */
+    PullRequest fetchPullRequest(String prNumber) throws Exception {
+      throw new UnsupportedOperationException("A pull request is fetched field by field");
+    }
+
+    private String getPullRequestState(String prNumber) throws Exception {
+      PullRequest pr = getFetchedPullRequest(prNumber);
+      if (pr != null) return pr.state;
+
+      return scheduler.call(
+          metrics,
+          "getPullRequestState",
+          () -> {
+            try (BufferedReader br =
+                runSubProcessAndGetOutputAsReader(
+                    format(
+                        "gh pr view %s --repo %s --jq \".state\" --json state",
+                        prNumber, shellQuote(this.owner + "/" + this.repository)))) {
+
+              String line = br.readLine(); // Assuming only one line exists.
+              if (line == null) throw new RuntimeException("Couldn't get the project state");
+              return line;
+            }
+          });
+    }
+
+    boolean isPullRequestMerged(String prNumber) throws Exception {
+      String state = getPullRequestState(prNumber);
+      return MERGED_STATE.equalsIgnoreCase(state);
+    }
+
+    Category getCategoryFromPullRequest(String prNumber) throws Exception {
+      PullRequest pr = getFetchedPullRequest(prNumber);
+      if (pr != null) {
+        return pr.labels.stream()
+            .filter(this::isValidCategory)
+            .findFirst()
+            .map(Category::fromLabel)
+            .orElse(Category.MISCELLANEOUS);
+      }
+
+      return scheduler.call(
+          metrics,
+          "getCategoryFromPullRequest",
+          () -> {
+            try (BufferedReader br =
+                runSubProcessAndGetOutputAsReader(
+                    format(
+                        "gh pr view %s --repo %s --jq \".labels[].name\" --json labels",
+                        prNumber, shellQuote(this.owner + "/" + this.repository)))) {
+
+              String line;
+              while ((line = br.readLine()) != null) {
+                if (isValidCategory(line)) return Category.fromLabel(line);
+              }
+              return Category.MISCELLANEOUS;
+            }
+          });
+    }
+
+    /**
+     * Returns the body of the PR. If the PR wasn't fetched in a batch, the body is read with {@code
+     * gh pr view} to the end, so that the request is retried if {@code gh} fails on the way.
+     */
+    BufferedReader getPullRequestBody(String prNumber) throws Exception {
+      PullRequest pr = getFetchedPullRequest(prNumber);
+      if (pr != null) return new BufferedReader(new StringReader(pr.body));
+
+      String body =
+          scheduler.call(
+              metrics,
+              "getPullRequestBody",
+              () -> {
+                try (BufferedReader br =
+                    runSubProcessAndGetOutputAsReader(
+                        format(
+                            "gh pr view %s --repo %s --jq \".body\" --json body",
+                            prNumber, shellQuote(this.owner + "/" + this.repository)))) {
+                  StringWriter writer = new StringWriter();
+                  br.transferTo(writer);
+                  return writer.toString();
+                }
+              });
+      return new BufferedReader(new StringReader(body));
+    }
+
+    void setProcessTimeOutInSec(int processTimeOutInSec) {
+      this.processTimeOutInSec = processTimeOutInSec;
+    }
+
+    /**
+     * Runs the command and returns a reader which streams the standard output of the process. The
+     * standard error is drained concurrently so that the process is never blocked on it, and the
+     * process is killed if it doesn't end within the timeout even while the output is being read.
+     * The caller must close the reader, which also kills the process if it's still running.
+     */
+    BufferedReader runSubProcessAndGetOutputAsReader(String command) throws Exception {
+      if (fixtures != null && fixtures.isReplaying()) return fixtures.replayOutput(command);
+
+      if (DEBUG != null) System.err.printf("Executed: %s%n", command);
+      metrics.increment(Metrics.SUBPROCESSES);
+      Process p = new ProcessBuilder("bash", "-c", command).start();
+      p.getOutputStream().close();
+      Reader reader =
+          new ProcessOutputReader(
+              p, command, scheduler.getDeadline().timeOutInSec(processTimeOutInSec), metrics);
+      if (fixtures != null) reader = fixtures.recordOutput(command, reader);
+      return new BufferedReader(reader);
+    }
+
+    private boolean isValidCategory(String category) {
+      return Category.isValidLabel(category);
+    }
+  }
+
+  /**
+   * A {@link GitHubContext} which calls the GitHub GraphQL and REST APIs with {@link HttpClient}
+   * instead of running {@code gh} in a subprocess. The connections are kept alive (over HTTP/2 if
+   * available) during the run and the responses are parsed in-process.
+   */
+  static class HttpGitHubContext extends GitHubContext {
+    private static final Duration REQUEST_TIME_OUT = Duration.ofSeconds(30);
+    private static final long SECONDARY_RATE_LIMIT_WAIT_MILLIS = 60_000;
+
+    private final LazyHttpClient client;
+    private final URI restUrl;
+    private final URI graphQlUrl;
+    private final String token;
+
+    HttpGitHubContext(
+        String owner,
+        String projectTitlePrefix,
+        String version,
+        String repository,
+        URI restUrl,
+        URI graphQlUrl,
+        String token) {
+      this(
+          owner,
+          projectTitlePrefix,
+          version,
+          repository,
+          new LazyHttpClient(),
+          restUrl,
+          graphQlUrl,
+          token);
+    }
+
+    private HttpGitHubContext(
+        String owner,
+        String projectTitlePrefix,
+        String version,
+        String repository,
+        LazyHttpClient client,
+        URI restUrl,
+        URI graphQlUrl,
+        String token) {
+      super(owner, projectTitlePrefix, version, repository);
+      this.client = client;
+      this.restUrl = restUrl;
+      this.graphQlUrl = graphQlUrl;
+      this.token = token;
+    }
+
+    /**
+     * Creates the HTTP client on the first request. Initializing the client (and its TLS context)
+     * takes hundreds of milliseconds, which isn't needed when the responses are replayed.
+     */
+    private static final class LazyHttpClient {
+      private HttpClient client;
+
+      synchronized HttpClient get() {
+        if (client == null) {
+          client =
+              HttpClient.newBuilder()
+                  .version(HttpClient.Version.HTTP_2)
+                  .connectTimeout(REQUEST_TIME_OUT)
+                  .build();
+        }
+        return client;
+      }
+    }
+
+    /** Returns the context for another repository, which also shares the HTTP client. */
+    @Override
+    HttpGitHubContext forRelease(String version, String repository) {
+      return share(
+          new HttpGitHubContext(
+              owner, projectTitlePrefix, version, repository, client, restUrl, graphQlUrl, token));
+    }
+
+    /**
+     * Creates the context from the environment variables. The URLs of the APIs can be changed with
+     * {@code GITHUB_API_URL} and {@code GITHUB_GRAPHQL_URL}, which are also set in GitHub Actions.
+     */
+    static HttpGitHubContext fromEnvironment(
+        String owner, String projectTitlePrefix, String version, String repository) {
+      return fromEnvironment(owner, projectTitlePrefix, version, repository, true);
+    }
+
+    static HttpGitHubContext fromEnvironment(
+        String owner,
+        String projectTitlePrefix,
+        String version,
+        String repository,
+        boolean tokenRequired) {
+      String token = System.getenv("GH_TOKEN");
+      if (token == null) token = System.getenv("GITHUB_TOKEN");
+      if (token == null && tokenRequired)
+        throw new IllegalStateException("GH_TOKEN or GITHUB_TOKEN is needed for the HTTP client");
+
+      String restUrl = System.getenv("GITHUB_API_URL");
+      if (restUrl == null) restUrl = "https://api.github.com";
+      String graphQlUrl = System.getenv("GITHUB_GRAPHQL_URL");
+      if (graphQlUrl == null) graphQlUrl = restUrl + "/graphql";
+
+      return new HttpGitHubContext(
+          owner,
+          projectTitlePrefix,
+          version,
+          repository,
+          URI.create(restUrl),
+          URI.create(graphQlUrl),
+          token);
+    }
+
+    @Override
+    String findProjectNumber(String title) throws Exception {
+      String cursor = null;
+      do {
+        Map<String, Object> projects =
+            Json.getObject(
+                queryOwner(
+                    format(
+                        "projectsV2(first: %d, after: $cursor, query: %s) {"
+                            + " nodes { number title } pageInfo { hasNextPage endCursor } }",
+                        PROJECTS_PAGE_SIZE, Json.quote(title)),
+                    cursor),
+                "projectsV2");
+        for (Object node : Json.getList(projects, "nodes")) {
+          if (title.equals(Json.getString(node, "title"))) {
+            return Json.getNumber(node, "number");
+          }
+        }
+        cursor = nextCursor(projects);
+      } while (cursor != null);
+      return null;
+    }
+
+    @Override
+    String fetchPullRequestNumbers(String cursor, String projectId, List<String> prNumbers)
+        throws Exception {
+      Map<String, Object> items =
+          Json.getObject(
+              queryOwner(
+                  format(
+                      "projectV2(number: %d) { items(first: %d, after: $cursor) { nodes {"
+                          + " content { %s } } pageInfo { hasNextPage endCursor } } }",
+                      Integer.parseInt(projectId), ITEMS_PAGE_SIZE, projectItemFields()),
+                  cursor),
+              "projectV2",
+              "items");
+      for (Object node : Json.getList(items, "nodes")) {
+        Object content = Json.get(node, "content");
+        if (content == null || !"PullRequest".equals(Json.getString(content, "__typename")))
+          continue;
+        if (!isListed(
+            Json.getString(content, "repository", "name"), Json.getString(content, "state")))
+          continue;
+        prNumbers.add(
+            bodiesListed
+                ? addListedPullRequest(toPullRequest(content))
+                : addListedPullRequest(
+                    Json.getNumber(content, "number"), Json.getString(content, "updatedAt")));
+      }
+      return nextCursor(items);
+    }
+
+    @Override
+    List<PullRequest> queryPullRequests(List<String> prNumbers) throws Exception {
+      List<PullRequest> prs = new ArrayList<>();
+      for (Object node : queryPullRequestFields(prNumbers, GRAPHQL_PULL_REQUEST_FIELDS)) {
+        prs.add(toPullRequest(node));
+      }
+      return prs;
+    }
+
+    /** Reads the PR with the fields of {@link #GRAPHQL_PULL_REQUEST_FIELDS}. */
+    private static PullRequest toPullRequest(Object node) {
+      List<String> labels = new ArrayList<>();
+      for (Object label : Json.getList(node, "labels", "nodes")) {
+        labels.add(Json.getString(label, "name"));
+      }
+      String body = Json.getString(node, "body");
+      return new PullRequest(
+          Json.getNumber(node, "number"),
+          Json.getString(node, "state"),
+          Json.getString(node, "updatedAt"),
+          labels,
+          body == null ? "" : body);
+    }
+
+    @Override
+    Map<String, String> fetchUpdatedAtInBatch(List<String> prNumbers) throws Exception {
+      Map<String, String> updatedAts = new HashMap<>();
+      for (Object node : queryPullRequestFields(prNumbers, GRAPHQL_UPDATED_AT_FIELDS)) {
+        updatedAts.put(Json.getNumber(node, "number"), Json.getString(node, "updatedAt"));
+      }
+      return updatedAts;
+    }
+
+    @Override
+    boolean fetchesPullRequest() {
+      return true;
+    }
+
+    @Override
+    PullRequest fetchPullRequest(String prNumber) throws Exception {
+      Object pr =
+          send(
+              "GET",
+              URI.create(restUrl + format("/repos/%s/%s/pulls/%s", owner, repository, prNumber)),
+              null);
+
+      List<String> labels = new ArrayList<>();
+      for (Object label : Json.getList(pr, "labels")) {
+        labels.add(Json.getString(label, "name"));
+      }
+      String state =
+          Json.get(pr, "merged_at") != null
+              ? "MERGED"
+              : Json.getString(pr, "state").toUpperCase(Locale.ROOT);
+      String body = Json.getString(pr, "body");
+      return new PullRequest(
+          prNumber, state, Json.getString(pr, "updated_at"), labels, body == null ? "" : body);
+    }
+
+    private List<Object> queryPullRequestFields(List<String> prNumbers, String fields)
+        throws Exception {
+      Map<String, Object> variables = new LinkedHashMap<>();
+      variables.put("owner", owner);
+      variables.put("name", repository);
+      Object repositoryNode =
+          Json.get(graphQl(buildBatchQuery(prNumbers, fields), variables), "repository");
+
+      List<Object> nodes = new ArrayList<>();
+      for (Object node : Json.asObject(repositoryNode).values()) {
+        if (node != null) nodes.add(node);
+      }
+      return nodes;
+    }
+
+    /** Runs a query for the owner of the projects with the cursor. */
+    private Object queryOwner(String selection, String cursor) throws Exception {
+      Map<String, Object> variables = new LinkedHashMap<>();
+      variables.put("cursor", cursor);
+      Object data = graphQl(buildOwnerQuery("$cursor: String", selection), variables);
+      Object ownerNode = Json.get(data, ownerField());
+      if (ownerNode == null) throw new RuntimeException("Couldn't find the owner: " + owner);
+      return ownerNode;
+    }
+
+    private static String nextCursor(Object connection) {
+      Object pageInfo = Json.get(connection, "pageInfo");
+      if (!Boolean.TRUE.equals(Json.get(pageInfo, "hasNextPage"))) return null;
+      return Json.getString(pageInfo, "endCursor");
+    }
+
+    /** Sends a GraphQL query and returns its {@code data}. */
+    Object graphQl(String query, Map<String, Object> variables) throws Exception {
+      Map<String, Object> request = new LinkedHashMap<>();
+      request.put("query", query);
+      request.put("variables", variables);
+
+      Object response = send("POST", graphQlUrl, Json.write(request));
+      Object errors = Json.get(response, "errors");
+      Object data = Json.get(response, "data");
+      if (errors != null) {
+        for (Object error : Json.getList(errors)) {
+          if ("RATE_LIMITED".equals(Json.getString(error, "type"))) {
+            throw new RetryableException(
+                "GraphQL query was rate limited: " + Json.write(errors),
+                true,
+                SECONDARY_RATE_LIMIT_WAIT_MILLIS);
+          }
+        }
+        if (data == null) throw new RuntimeException("GraphQL query failed: " + Json.write(errors));
+        if (DEBUG != null) System.err.printf("GraphQL errors: %s%n", Json.write(errors));
+      }
+      return data;
+    }
+
+    /**
+     * Sends the request and returns the parsed response body.
+     *
+     * @param requestBody the request body, or null if the request has no body
+     */
+    private Object send(String method, URI uri, String requestBody) throws Exception {
+      GitHubFixtures.Response response =
+          fixtures != null && fixtures.isReplaying()
+              ? fixtures.replayResponse(method, uri, requestBody)
+              : exchange(method, uri, requestBody);
+      String body = response.body;
+      OptionalLong remaining = response.header("x-ratelimit-remaining");
+      if (remaining.isPresent()) {
+        scheduler.onRateLimit(
+            response.header("x-ratelimit-limit").orElse(0),
+            remaining.getAsLong(),
+            response.header("x-ratelimit-reset").orElse(0));
+      }
+
+      int status = response.status;
+      if (status != 200) {
+        String message = format("Request failed. status: %d, uri: %s, body: %s", status, uri, body);
+        boolean rateLimited =
+            status == 429
+                || (status == 403
+                    && (remaining.orElse(-1) == 0
+                        || body.toLowerCase(Locale.ROOT).contains("rate limit")));
+        if (rateLimited) {
+          OptionalLong retryAfter = response.header("retry-after");
+          // GitHub asks to wait at least a minute for the secondary rate limit without retry-after
+          long retryAfterMillis =
+              retryAfter.isPresent()
+                  ? TimeUnit.SECONDS.toMillis(retryAfter.getAsLong())
+                  : remaining.orElse(-1) == 0 ? 0 : SECONDARY_RATE_LIMIT_WAIT_MILLIS;
+          throw new RetryableException(message, true, retryAfterMillis);
+        }
+        if (status >= 500) throw new RetryableException(message, false, 0);
+        throw new RuntimeException(message);
+      }
+      return Json.parse(body);
+    }
+
+    /** Sends the request to GitHub. The response is recorded if the fixtures are recording. */
+    private GitHubFixtures.Response exchange(String method, URI uri, String requestBody)
+        throws Exception {
+      HttpRequest request =
+          HttpRequest.newBuilder(uri)
+              .method(
+                  method,
+                  requestBody == null
+                      ? HttpRequest.BodyPublishers.noBody()
+                      : HttpRequest.BodyPublishers.ofString(requestBody))
+              .timeout(scheduler.getDeadline().timeout(REQUEST_TIME_OUT))
+              .header("Authorization", "Bearer " + token)
+              .header("Accept", "application/vnd.github+json")
+              .header("X-GitHub-Api-Version", "2022-11-28")
+              .build();
+      if (DEBUG != null) System.err.printf("Requested: %s %s%n", request.method(), request.uri());
+
+      metrics.increment(Metrics.HTTP_REQUESTS);
+      long start = System.nanoTime();
+      HttpResponse<byte[]> httpResponse;
+      try {
+        httpResponse =
+            metrics.time(
+                "httpRequest", () -> client.get().send(request, BodyHandlers.ofByteArray()));
+      } catch (HttpTimeoutException e) {
+        metrics.increment(Metrics.TIMEOUTS);
+        throw new RetryableException("Request timed out. uri: " + request.uri(), e);
+      } catch (IOException e) {
+        throw new RetryableException("Request failed. uri: " + request.uri(), e);
+      }
+      metrics.add(Metrics.BYTES_READ, httpResponse.body().length);
+
+      Map<String, String> headers = new LinkedHashMap<>();
+      for (String name : GitHubFixtures.Response.HEADERS) {
+        httpResponse.headers().firstValue(name).ifPresent(value -> headers.put(name, value));
+      }
+      GitHubFixtures.Response response =
+          new GitHubFixtures.Response(
+              httpResponse.statusCode(),
+              headers,
+              new String(httpResponse.body(), StandardCharsets.UTF_8));
+      if (fixtures != null) {
+        fixtures.recordResponse(method, uri, requestBody, response, System.nanoTime() - start);
+      }
+      return response;
+    }
+  }
+
+  /**
+   * A minimal JSON reader and writer. Objects are read as {@link Map}, arrays as {@link List},
+   * numbers as {@link Long} or {@link Double}.
+   */
+  static final class Json {
+    private final String text;
+    private int pos;
+
+    private Json(String text) {
+      this.text = text;
+    }
+
+    static Object parse(String text) {
+      Json json = new Json(text);
+      Object value = json.readValue();
+      json.skipWhitespace();
+      if (json.pos != text.length()) throw json.error("Unexpected trailing characters");
+      return value;
+    }
+
+    /** Returns the value at the path of keys, or null if any of them doesn't exist. */
+    static Object get(Object node, String... keys) {
+      for (String key : keys) {
+        if (!(node instanceof Map)) return null;
+        node = ((Map<?, ?>) node).get(key);
+      }
+      return node;
+    }
+
+    static String getString(Object node, String... keys) {
+      Object value = get(node, keys);
+      return value == null ? null : value.toString();
+    }
+
+    /** Returns the integral number at the path as a string (e.g., a PR number). */
+    static String getNumber(Object node, String... keys) {
+      Object value = get(node, keys);
+      return value == null ? null : String.valueOf(((Number) value).longValue());
+    }
+
+    static Map<String, Object> getObject(Object node, String... keys) {
+      return asObject(get(node, keys));
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> asObject(Object node) {
+      if (!(node instanceof Map)) throw new IllegalArgumentException("Not a JSON object: " + node);
+      return (Map<String, Object>) node;
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Object> getList(Object node, String... keys) {
+      Object value = get(node, keys);
+      return value instanceof List ? (List<Object>) value : new ArrayList<>();
+    }
+
+    static String write(Object value) {
+      StringBuilder builder = new StringBuilder();
+      write(builder, value);
+      return builder.toString();
+    }
+
+    private static void write(StringBuilder builder, Object value) {
+      if (value == null) {
+        builder.append("null");
+      } else if (value instanceof String) {
+        builder.append(quote((String) value));
+      } else if (value instanceof Number || value instanceof Boolean) {
+        builder.append(value);
+      } else if (value instanceof Map) {
+        builder.append('{');
+        String separator = "";
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+          builder.append(separator).append(quote(entry.getKey().toString())).append(':');
+          write(builder, entry.getValue());
+          separator = ",";
+        }
+        builder.append('}');
+      } else if (value instanceof Collection) {
+        builder.append('[');
+        String separator = "";
+        for (Object element : (Collection<?>) value) {
+          builder.append(separator);
+          write(builder, element);
+          separator = ",";
+        }
+        builder.append(']');
+      } else {
+        throw new IllegalArgumentException("Unsupported type: " + value.getClass());
+      }
+    }
+
+    /** Returns the string as a JSON string literal, which is also a GraphQL string literal. */
+    static String quote(String value) {
+      StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        switch (c) {
+          case '"':
+            builder.append("\\\"");
+            break;
+          case '\\':
+            builder.append("\\\\");
+            break;
+          case '\n':
+            builder.append("\\n");
+            break;
+          case '\r':
+            builder.append("\\r");
+            break;
+          case '\t':
+            builder.append("\\t");
+            break;
+          default:
+            if (c < 0x20) {
+              builder.append(format("\\u%04x", (int) c));
+            } else {
+              builder.append(c);
+            }
+        }
+      }
+      return builder.append('"').toString();
+    }
+
+    private Object readValue() {
+      skipWhitespace();
+      if (pos >= text.length()) throw error("Unexpected end of JSON");
+      char c = text.charAt(pos);
+      switch (c) {
+        case '{':
+          return readObject();
+        case '[':
+          return readArray();
+        case '"':
+          return readString();
+        case 't':
+          return readLiteral("true", Boolean.TRUE);
+        case 'f':
+          return readLiteral("false", Boolean.FALSE);
+        case 'n':
+          return readLiteral("null", null);
+        default:
+          return readNumber();
+      }
+    }
+
+    private Map<String, Object> readObject() {
+      Map<String, Object> object = new LinkedHashMap<>();
+      pos++; // '{'
+      skipWhitespace();
+      if (peek() == '}') {
+        pos++;
+        return object;
+      }
+      while (true) {
+        skipWhitespace();
+        String key = readString();
+        skipWhitespace();
+        expect(':');
+        object.put(key, readValue());
+        skipWhitespace();
+        if (peek() == ',') {
+          pos++;
+        } else {
+          expect('}');
+          return object;
+        }
+      }
+    }
+
+    private List<Object> readArray() {
+      List<Object> array = new ArrayList<>();
+      pos++; // '['
+      skipWhitespace();
+      if (peek() == ']') {
+        pos++;
+        return array;
+      }
+      while (true) {
+        array.add(readValue());
+        skipWhitespace();
+        if (peek() == ',') {
+          pos++;
+        } else {
+          expect(']');
+          return array;
+        }
+      }
+    }
+
+    private String readString() {
+      expect('"');
+      StringBuilder builder = new StringBuilder();
+      while (true) {
+        if (pos >= text.length()) throw error("Unterminated string");
+        char c = text.charAt(pos++);
+        if (c == '"') return builder.toString();
+        if (c != '\\') {
+          builder.append(c);
+          continue;
+        }
+        if (pos >= text.length()) throw error("Unterminated string");
+        char escaped = text.charAt(pos++);
+        switch (escaped) {
+          case 'b':
+            builder.append('\b');
+            break;
+          case 'f':
+            builder.append('\f');
+            break;
+          case 'n':
+            builder.append('\n');
+            break;
+          case 'r':
+            builder.append('\r');
+            break;
+          case 't':
+            builder.append('\t');
+            break;
+          case 'u':
+            if (pos + 4 > text.length()) throw error("Invalid unicode escape");
+            builder.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+            pos += 4;
+            break;
+          default:
+            builder.append(escaped);
+        }
+      }
+    }
+
+    private Object readLiteral(String literal, Object value) {
+      if (!text.startsWith(literal, pos)) throw error("Unexpected token");
+      pos += literal.length();
+      return value;
+    }
+
+    private Number readNumber() {
+      int start = pos;
+      while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) != -1) pos++;
+      String number = text.substring(start, pos);
+      if (number.isEmpty()) throw error("Unexpected token");
+      if (number.contains(".") || number.contains("e") || number.contains("E")) {
+        return Double.parseDouble(number);
+      }
+      return Long.parseLong(number);
+    }
+
+    private void skipWhitespace() {
+      while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+    }
+
+    private char peek() {
+      if (pos >= text.length()) throw error("Unexpected end of JSON");
+      return text.charAt(pos);
+    }
+
+    private void expect(char c) {
+      if (peek() != c) throw error("Expected '" + c + "'");
+      pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at " + pos);
     }
   }
 }
@@ -0,0 +1,55 @@
+import java.util.Arrays;
+
+/**
+ * ReleaseNotes is the entry point of the prebuilt jar of the scripts. The first argument is the
+ * subcommand, which is one of the scripts, and the rest of the arguments are passed to it as they
+ * are. e.g., {@code java -jar release-note-script.jar create scalar-labs ScalarDB 4.0.0 scalardb}
+ * is the same as {@code java ReleaseNoteCreation.java scalar-labs ScalarDB 4.0.0 scalardb}, but the
+ * scripts aren't compiled on each run.
+ */
+@SuppressWarnings("DefaultPackage")
+public class ReleaseNotes {
+
+  public static void main(String... args) throws Exception {
+    if (args.length == 0) {
+      printUsage();
+      System.exit(1);
+    }
+
+    String[] subcommandArgs = Arrays.copyOfRange(args, 1, args.length);
+    switch (args[0]) {
+      case "create":
+        ReleaseNoteCreation.main(subcommandArgs);
+        break;
+      case "merge":
+        MergeReleaseNotes.main(subcommandArgs);
+        break;
+      case "all":
+        ReleaseAll.main(subcommandArgs);
+        break;
+      case "-h":
+      case "--help":
+        printUsage();
+        break;
+      default:
+        System.err.printf("Unknown subcommand: %s%n%n", args[0]);
+        printUsage();
+        System.exit(1);
+    }
+  }
+
+  private static void printUsage() {
+    System.err.printf("Usage: release-notes <subcommand> [arguments]%n");
+    System.err.printf("%nSubcommands:%n");
+    System.err.printf(
+        "    create  Create the release note body for a repository (%s.java).%n",
+        ReleaseNoteCreation.class.getSimpleName());
+    System.err.printf(
+        "    merge   Merge the release note bodies for ScalarDB (%s.java).%n",
+        MergeReleaseNotes.class.getSimpleName());
+    System.err.printf(
+        "    all     Create the release note bodies of all the repositories and merge them (%s).%n",
+        ReleaseAll.class.getSimpleName());
+    System.err.printf("%nThe arguments of the subcommands are the same as the scripts.%n");
+  }
+}
@@ -1,12 +1,17 @@
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Objects;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class MergeReleaseNotesTest {
 
@@ -42,6 +47,244 @@ public class MergeReleaseNotesTest {
     assertThat(stdout).isEqualTo(expected);
   }
 
+  @Test
+  void loadAll_manifestWithAdditionalRepository_outputInOrderOfManifest(@TempDir Path directory)
+      throws Exception {
+    // Arrange
+    Files.writeString(
+        directory.resolve("manifest.csv"),
+        "# repository, edition, display name, file\n"
+            + "scalardb, community, ScalarDB, scalardb.md\n"
+            + "\n"
+            + "analytics, enterprise, ScalarDB Analytics, analytics.md\n"
+            + "cluster , Enterprise , ScalarDB Cluster , inputs/cluster.md\n");
+    Files.writeString(
+        directory.resolve("scalardb.md"),
+        "## Summary\n\n## Enhancements\n- A text of ScalarDB (#1)\n");
+    Files.writeString(
+        directory.resolve("analytics.md"),
+        "## Summary\n\n## Enhancements\n- A text of Analytics (#2)\n"
+            + "## Bug fixes\n- A fix of Analytics (#3 #4)\n");
+    Files.createDirectories(directory.resolve("inputs"));
+    Files.writeString(
+        directory.resolve("inputs/cluster.md"),
+        "## Summary\n\n## Enhancements\n- A text of Cluster (#5)\n");
+    MergeReleaseNotes sut = new MergeReleaseNotes();
+
+    // Act
+    List<MergeReleaseNotes.Input> inputs =
+        MergeReleaseNotes.Input.readManifest(directory.resolve("manifest.csv"));
+    sut.loadAll(inputs);
+
+    // Assert
+    assertThat(inputs)
+        .extracting(input -> input.repository.getDisplayName())
+        .containsExactly("ScalarDB", "ScalarDB Analytics", "ScalarDB Cluster");
+    assertThat(captureOutput(sut))
+        .isEqualTo(
+            "## Summary\n\n"
+                + "## Community edition\n"
+                + "### Enhancements\n"
+                + "- A text of ScalarDB (#1)\n\n"
+                + "## Enterprise edition\n"
+                + "### Enhancements\n"
+                + "#### ScalarDB Analytics\n"
+                + "- A text of Analytics\n"
+                + "#### ScalarDB Cluster\n"
+                + "- A text of Cluster\n"
+                + "### Bug fixes\n"
+                + "#### ScalarDB Analytics\n"
+                + "- A fix of Analytics\n\n");
+  }
+
+  @Test
+  void loadAll_defaultInputs_outputSameAsLoadedOneByOne() throws Exception {
+    // Arrange
+    Path directory =
+        Paths.get(
+                Objects.requireNonNull(this.getClass().getClassLoader().getResource("scalardb.md"))
+                    .toURI())
+            .getParent();
+    MergeReleaseNotes sut = new MergeReleaseNotes();
+
+    // Act
+    sut.loadAll(MergeReleaseNotes.Input.defaults(directory));
+
+    // Assert
+    assertThat(captureOutput(sut)).isEqualTo(loadExpectedReleaseNote("expected.md"));
+  }
+
+  @Test
+  void loadAll_jsonLinesInputs_textsReadAsTheyAreWithoutParsingMarkdown(@TempDir Path directory)
+      throws Exception {
+    // Arrange
+    Files.writeString(
+        directory.resolve("scalardb.jsonl"),
+        "{\"repository\":\"scalardb\",\"category\":\"bugfix\","
+            + "\"text\":\"Fixed (a) bug\",\"pullRequests\":[\"1\",\"2\"]}\n"
+            + "{\"repository\":\"scalardb\",\"category\":\"enhancement\","
+            + "\"text\":\"## Not a header\",\"pullRequests\":[\"3\"]}\n");
+    Files.writeString(
+        directory.resolve("cluster.jsonl"),
+        "\n{\"repository\":\"cluster\",\"category\":\"enhancement\","
+            + "\"text\":\"Supported \\\"X\\\" (see #9)\",\"pullRequests\":[\"4\"]}\n");
+    Files.writeString(
+        directory.resolve("sql.md"), "## Summary\n\n## Enhancements\n- A text of SQL (#5)\n");
+    MergeReleaseNotes sut = new MergeReleaseNotes();
+
+    // Act
+    sut.loadAll(
+        List.of(
+            new MergeReleaseNotes.Input(
+                MergeReleaseNotes.Repository.DB,
+                MergeReleaseNotes.Edition.COMMUNITY,
+                directory.resolve("scalardb.jsonl")),
+            new MergeReleaseNotes.Input(
+                MergeReleaseNotes.Repository.CLUSTER,
+                MergeReleaseNotes.Edition.ENTERPRISE,
+                directory.resolve("cluster.jsonl")),
+            new MergeReleaseNotes.Input(
+                MergeReleaseNotes.Repository.SQL,
+                MergeReleaseNotes.Edition.ENTERPRISE,
+                directory.resolve("sql.md"))));
+
+    // Assert
+    assertThat(captureOutput(sut))
+        .isEqualTo(
+            "## Summary\n\n"
+                + "## Community edition\n"
+                + "### Enhancements\n"
+                + "- ## Not a header (#3)\n"
+                + "### Bug fixes\n"
+                + "- Fixed (a) bug (#1 #2)\n\n"
+                + "## Enterprise edition\n"
+                + "### Enhancements\n"
+                + "#### ScalarDB Cluster\n"
+                + "- Supported \"X\" (see #9)\n"
+                + "#### ScalarDB SQL\n"
+                + "- A text of SQL\n\n");
+  }
+
+  @Test
+  void parse_invalidJsonLinesRecord_failedWithLineNumber(@TempDir Path directory) throws Exception {
+    // Arrange
+    Files.writeString(
+        directory.resolve("scalardb.jsonl"),
+        "{\"category\":\"bugfix\",\"text\":\"A fix\",\"pullRequests\":[\"1\"]}\n"
+            + "{\"category\":\"unknown\",\"text\":\"A text\",\"pullRequests\":[\"2\"]}\n");
+
+    // Act
+    Throwable thrown =
+        catchThrowable(
+            () ->
+                MergeReleaseNotes.parse(
+                    new MergeReleaseNotes.Input(
+                        MergeReleaseNotes.Repository.DB,
+                        MergeReleaseNotes.Edition.COMMUNITY,
+                        directory.resolve("scalardb.jsonl"))));
+
+    // Assert
+    assertThat(thrown)
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("scalardb.jsonl:2")
+        .hasMessageContaining("Invalid label: unknown");
+  }
+
+  @Test
+  void output_withOutputFiles_outputAllFormatsInOnePass(@TempDir Path directory) throws Exception {
+    // Arrange
+    Files.writeString(
+        directory.resolve("scalardb.md"),
+        "## Summary\n\n## Enhancements\n- A text of <ScalarDB> (#1)\n");
+    Files.writeString(
+        directory.resolve("cluster.md"),
+        "## Summary\n\n## Enhancements\n- A text of Cluster (#2)\n"
+            + "## Bug fixes\n- A fix of \"Cluster\" (#3 #4)\n");
+    MergeReleaseNotes sut =
+        new MergeReleaseNotes(
+            List.of(
+                directory.resolve("merged.md"),
+                directory.resolve("merged.json"),
+                directory.resolve("merged.html")));
+    sut.loadAll(
+        List.of(
+            new MergeReleaseNotes.Input(
+                MergeReleaseNotes.Repository.DB,
+                MergeReleaseNotes.Edition.COMMUNITY,
+                directory.resolve("scalardb.md")),
+            new MergeReleaseNotes.Input(
+                MergeReleaseNotes.Repository.CLUSTER,
+                MergeReleaseNotes.Edition.ENTERPRISE,
+                directory.resolve("cluster.md"))));
+
+    // Act
+    String stdout = captureOutput(sut);
+
+    // Assert
+    assertThat(stdout)
+        .isEqualTo(
+            "## Summary\n\n"
+                + "## Community edition\n"
+                + "### Enhancements\n"
+                + "- A text of <ScalarDB> (#1)\n\n"
+                + "## Enterprise edition\n"
+                + "### Enhancements\n"
+                + "#### ScalarDB Cluster\n"
+                + "- A text of Cluster\n"
+                + "### Bug fixes\n"
+                + "#### ScalarDB Cluster\n"
+                + "- A fix of \"Cluster\"\n\n");
+    assertThat(Files.readString(directory.resolve("merged.md"))).isEqualTo(stdout);
+    assertThat(Files.readString(directory.resolve("merged.json")))
+        .isEqualTo(
+            "{\"editions\":[\n"
+                + "{\"edition\":\"Community\",\"categories\":[\n"
+                + "{\"category\":\"Enhancements\",\"repositories\":[\n"
+                + "{\"repository\":\"scalardb\",\"displayName\":\"ScalarDB\",\"releaseNotes\":[\n"
+                + "\"A text of <ScalarDB> (#1)\"]}]}]},\n"
+                + "{\"edition\":\"Enterprise\",\"categories\":[\n"
+                + "{\"category\":\"Enhancements\",\"repositories\":[\n"
+                + "{\"repository\":\"cluster\",\"displayName\":\"ScalarDB"
+                + " Cluster\",\"releaseNotes\":[\n"
+                + "\"A text of Cluster\"]}]},\n"
+                + "{\"category\":\"Bug fixes\",\"repositories\":[\n"
+                + "{\"repository\":\"cluster\",\"displayName\":\"ScalarDB"
+                + " Cluster\",\"releaseNotes\":[\n"
+                + "\"A fix of \\\"Cluster\\\"\"]}]}]}\n"
+                + "]}\n");
+    assertThat(Files.readString(directory.resolve("merged.html")))
+        .isEqualTo(
+            "<h2>Summary</h2>\n"
+                + "<h2>Community edition</h2>\n"
+                + "<h3>Enhancements</h3>\n"
+                + "<ul>\n"
+                + "<li>A text of &lt;ScalarDB&gt; (#1)</li>\n"
+                + "</ul>\n"
+                + "<h2>Enterprise edition</h2>\n"
+                + "<h3>Enhancements</h3>\n"
+                + "<h4>ScalarDB Cluster</h4>\n"
+                + "<ul>\n"
+                + "<li>A text of Cluster</li>\n"
+                + "</ul>\n"
+                + "<h3>Bug fixes</h3>\n"
+                + "<h4>ScalarDB Cluster</h4>\n"
+                + "<ul>\n"
+                + "<li>A fix of &quot;Cluster&quot;</li>\n"
+                + "</ul>\n");
+  }
+
+  String captureOutput(MergeReleaseNotes sut) {
+    PrintStream original = System.out;
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(baos, false, StandardCharsets.UTF_8));
+    try {
+      sut.output();
+    } finally {
+      System.setOut(original);
+    }
+    return baos.toString(StandardCharsets.UTF_8);
+  }
+
   void loadOneFile(
       MergeReleaseNotes sut,
       MergeReleaseNotes.Edition edition,
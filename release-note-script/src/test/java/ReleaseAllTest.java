@@ -0,0 +1,221 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ReleaseAllTest {
+
+  @Test
+  void createReleaseNotes_communityAndEnterpriseRepositories_outputSameAsMergedFromFiles(
+      @TempDir Path directory) throws Exception {
+    // Arrange
+    AtomicInteger projectLookups = new AtomicInteger();
+    HttpServer server = startStubServer(projectLookups, Set.of());
+    URI url = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    ReleaseNoteCreation.HttpGitHubContext ghContext =
+        new ReleaseNoteCreation.HttpGitHubContext(
+            "owner", "ScalarDB", "4.0.0", "scalardb", url, url.resolve("/graphql"), "token");
+    List<MergeReleaseNotes.Input> inputs =
+        List.of(
+            new MergeReleaseNotes.Input(
+                MergeReleaseNotes.Repository.DB,
+                MergeReleaseNotes.Edition.COMMUNITY,
+                directory.resolve("scalardb.md")),
+            new MergeReleaseNotes.Input(
+                MergeReleaseNotes.Repository.CLUSTER,
+                MergeReleaseNotes.Edition.ENTERPRISE,
+                directory.resolve("cluster.md")));
+    ReleaseAll sut =
+        new ReleaseAll(
+            ghContext,
+            new ReleaseNoteCreation.Options(),
+            inputs,
+            List.of(directory.resolve("merged.json")));
+
+    // Act
+    PrintStream original = System.out;
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(baos, false, StandardCharsets.UTF_8));
+    try {
+      sut.createReleaseNotes();
+    } finally {
+      System.setOut(original);
+      server.stop(0);
+    }
+    String stdout = baos.toString(StandardCharsets.UTF_8);
+
+    // Assert
+    assertThat(projectLookups.get()).isEqualTo(1);
+    assertThat(sut.droppedPullRequests).isEmpty();
+    assertThat(Files.readString(directory.resolve("scalardb.md")))
+        .contains("## Enhancements\n- Added a feature to ScalarDB. (#1)\n");
+    assertThat(Files.readString(directory.resolve("cluster.md")))
+        .contains("## Enhancements\n- Added a feature to Cluster. (#3)\n")
+        .contains("## Bug fixes\n- Fixed a bug in Cluster. (#2)\n");
+    assertThat(stdout)
+        .isEqualTo(
+            "## Summary\n\n"
+                + "## Community edition\n"
+                + "### Enhancements\n"
+                + "- Added a feature to ScalarDB. (#1)\n\n"
+                + "## Enterprise edition\n"
+                + "### Enhancements\n"
+                + "#### ScalarDB Cluster\n"
+                + "- Added a feature to Cluster.\n"
+                + "### Bug fixes\n"
+                + "#### ScalarDB Cluster\n"
+                + "- Fixed a bug in Cluster.\n\n");
+    // The same as the release note merged from the markdown files by MergeReleaseNotes
+    MergeReleaseNotes merge = new MergeReleaseNotes();
+    merge.loadAll(inputs);
+    baos.reset();
+    System.setOut(new PrintStream(baos, false, StandardCharsets.UTF_8));
+    try {
+      merge.output();
+    } finally {
+      System.setOut(original);
+    }
+    assertThat(stdout).isEqualTo(baos.toString(StandardCharsets.UTF_8));
+    assertThat(Files.readString(directory.resolve("merged.json"))).contains("\"Community\"");
+  }
+
+  @Test
+  void createReleaseNotes_retriedRequestsOfRepositories_retryBudgetShared(@TempDir Path directory)
+      throws Exception {
+    // Arrange
+    Set<String> failedRepositories = ConcurrentHashMap.newKeySet();
+    failedRepositories.addAll(List.of("scalardb", "cluster"));
+    HttpServer server = startStubServer(new AtomicInteger(), failedRepositories);
+    URI url = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    ReleaseNoteCreation.HttpGitHubContext ghContext =
+        new ReleaseNoteCreation.HttpGitHubContext(
+            "owner", "ScalarDB", "4.0.0", "scalardb", url, url.resolve("/graphql"), "token");
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    options.retryBudget = 10;
+    ReleaseAll sut =
+        new ReleaseAll(
+            ghContext,
+            options,
+            List.of(
+                new MergeReleaseNotes.Input(
+                    MergeReleaseNotes.Repository.DB,
+                    MergeReleaseNotes.Edition.COMMUNITY,
+                    directory.resolve("scalardb.md")),
+                new MergeReleaseNotes.Input(
+                    MergeReleaseNotes.Repository.CLUSTER,
+                    MergeReleaseNotes.Edition.ENTERPRISE,
+                    directory.resolve("cluster.md"))),
+            List.of());
+
+    // Act
+    PrintStream original = System.out;
+    System.setOut(new PrintStream(new ByteArrayOutputStream(), false, StandardCharsets.UTF_8));
+    try {
+      sut.createReleaseNotes();
+    } finally {
+      System.setOut(original);
+      server.stop(0);
+    }
+
+    // Assert
+    assertThat(failedRepositories).isEmpty();
+    assertThat(sut.droppedPullRequests).isEmpty();
+    assertThat(Files.readString(directory.resolve("cluster.md")))
+        .contains("## Bug fixes\n- Fixed a bug in Cluster. (#2)\n");
+    // A retry of each repository is drawn from the budget of the run
+    assertThat(sut.scheduler.remainingRetryBudget()).isEqualTo(8);
+  }
+
+  /**
+   * Starts the stub server of GitHub for ScalarDB 4.0.0, which has PR 1 of scalardb, and PR 2 and
+   * PR 3 of cluster.
+   *
+   * @param failedRepositories the repositories whose first request of the PRs fails with 502
+   */
+  HttpServer startStubServer(AtomicInteger projectLookups, Set<String> failedRepositories)
+      throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          String body =
+              new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+          String repository = body.contains("\"name\":\"cluster\"") ? "cluster" : "scalardb";
+          String response;
+          if (!body.contains("projectV") && failedRepositories.remove(repository)) {
+            exchange.sendResponseHeaders(502, -1);
+            exchange.close();
+            return;
+          } else if (body.contains("projectsV2(")) {
+            projectLookups.incrementAndGet();
+            response =
+                "{\"data\":{\"repositoryOwner\":{\"projectsV2\":{\"nodes\":["
+                    + "{\"number\":4,\"title\":\"ScalarDB 4.0.0\"}],"
+                    + "\"pageInfo\":{\"hasNextPage\":false,\"endCursor\":null}}}}}";
+          } else if (body.contains("projectV2(")) {
+            response =
+                "{\"data\":{\"repositoryOwner\":{\"projectV2\":{\"items\":{\"nodes\":["
+                    + pullRequestItem(1, "scalardb")
+                    + ","
+                    + pullRequestItem(2, "cluster")
+                    + ","
+                    + pullRequestItem(3, "cluster")
+                    + "],\"pageInfo\":{\"hasNextPage\":false,\"endCursor\":null}}}}}}";
+          } else if (repository.equals("cluster")) {
+            response =
+                "{\"data\":{\"repository\":{"
+                    + pullRequest(2, "bugfix", "Fixed a bug in Cluster.")
+                    + ","
+                    + pullRequest(3, "enhancement", "Added a feature to Cluster.")
+                    + "}}}";
+          } else {
+            response =
+                "{\"data\":{\"repository\":{"
+                    + pullRequest(1, "enhancement", "Added a feature to ScalarDB.")
+                    + "}}}";
+          }
+          byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, bytes.length);
+          try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+          }
+        });
+    server.start();
+    return server;
+  }
+
+  String pullRequestItem(int number, String repository) {
+    return "{\"content\":{\"__typename\":\"PullRequest\",\"number\":"
+        + number
+        + ",\"repository\":{\"name\":\""
+        + repository
+        + "\"},\"state\":\"MERGED\",\"updatedAt\":\"2023-10-01T00:00:00Z\"}}";
+  }
+
+  String pullRequest(int number, String label, String text) {
+    return "\"pr"
+        + number
+        + "\":{\"number\":"
+        + number
+        + ",\"state\":\"MERGED\",\"updatedAt\":\"2023-10-01T00:00:00Z\","
+        + "\"body\":\"## Release notes\\n"
+        + text
+        + "\",\"labels\":{\"nodes\":[{\"name\":\""
+        + label
+        + "\"}]}}";
+  }
+}
@@ -1,19 +1,55 @@
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
+import static org.mockito.AdditionalMatchers.and;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.sun.net.httpserver.HttpServer;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.EnumSource;
@@ -21,6 +57,8 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 public class ReleaseNoteCreationTest {
 
+  private static final String UPDATED_AT = "2023-10-01T00:00:00Z";
+
   // @Test
   @ParameterizedTest
   @MethodSource
@@ -140,6 +178,88 @@ public class ReleaseNoteCreationTest {
         .isEqualTo("A topic pull request. Additional comment 1. Additional comment 2.");
   }
 
+  @Test
+  void assortSameAsItems_chainOfSameAs_mergedIntoTopicPullRequest() throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext ghContextMock = mock(ReleaseNoteCreation.GitHubContext.class);
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "3", ReleaseNoteCreation.Category.BUGFIX, "Fixed it.\nSame as #2");
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "2", ReleaseNoteCreation.Category.IMPROVEMENT, "Improved it.\nSame as #1");
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "1", ReleaseNoteCreation.Category.ENHANCEMENT, "Added a feature.");
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "4", ReleaseNoteCreation.Category.BUGFIX, "Same as #9");
+
+    ReleaseNoteCreation sut = new ReleaseNoteCreation(ghContextMock);
+    for (String prNumber : List.of("3", "2", "1", "4")) sut.extractReleaseNoteInfo(prNumber);
+
+    // Act
+    sut.assortSameAsItems();
+
+    // Assert
+    assertThat(sut.categoryMap.get(ReleaseNoteCreation.Category.BUGFIX)).isEmpty();
+    assertThat(sut.categoryMap.get(ReleaseNoteCreation.Category.IMPROVEMENT)).isEmpty();
+    List<ReleaseNoteCreation.ReleaseNoteText> releaseNoteTexts =
+        sut.categoryMap.get(ReleaseNoteCreation.Category.ENHANCEMENT);
+    assertThat(releaseNoteTexts).hasSize(1);
+    assertThat(releaseNoteTexts.get(0).prNumbers).containsExactly("1", "3", "2");
+    assertThat(releaseNoteTexts.get(0).text).isEqualTo("Added a feature. Fixed it. Improved it.");
+  }
+
+  @Test
+  void assortSameAsItems_cycleOfSameAs_mergedIntoSmallestPullRequest() throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext ghContextMock = mock(ReleaseNoteCreation.GitHubContext.class);
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "12", ReleaseNoteCreation.Category.BUGFIX, "Fixed it.\nSame as #11");
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "11", ReleaseNoteCreation.Category.IMPROVEMENT, "Improved it.\nSame as #12");
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "13", ReleaseNoteCreation.Category.BUGFIX, "Same as #12");
+
+    ReleaseNoteCreation sut = new ReleaseNoteCreation(ghContextMock);
+    for (String prNumber : List.of("12", "11", "13")) sut.extractReleaseNoteInfo(prNumber);
+
+    // Act
+    sut.assortSameAsItems();
+
+    // Assert
+    assertThat(sut.categoryMap.get(ReleaseNoteCreation.Category.BUGFIX)).isEmpty();
+    List<ReleaseNoteCreation.ReleaseNoteText> releaseNoteTexts =
+        sut.categoryMap.get(ReleaseNoteCreation.Category.IMPROVEMENT);
+    assertThat(releaseNoteTexts).hasSize(1);
+    assertThat(releaseNoteTexts.get(0).prNumbers).containsExactly("11", "12", "13");
+    assertThat(releaseNoteTexts.get(0).text).isEqualTo("Improved it. Fixed it.");
+  }
+
+  @Test
+  void assortSameAsItems_longChainOfSameAs_mergedInLinearTime() {
+    // Arrange
+    int count = 100_000;
+    ReleaseNoteCreation sut =
+        new ReleaseNoteCreation(mock(ReleaseNoteCreation.GitHubContext.class));
+    for (int i = 1; i <= count; i++) {
+      ReleaseNoteCreation.ReleaseNoteText rnText = new ReleaseNoteCreation.ReleaseNoteText();
+      rnText.category = ReleaseNoteCreation.Category.ENHANCEMENT;
+      rnText.prNumbers.add(String.valueOf(i));
+      if (i > 1) rnText.sameAsPrNumbers.add(String.valueOf(i - 1));
+      sut.addReleaseNoteText(rnText);
+    }
+
+    // Act
+    long start = System.nanoTime();
+    sut.assortSameAsItems();
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+    // Assert
+    List<ReleaseNoteCreation.ReleaseNoteText> releaseNoteTexts =
+        sut.categoryMap.get(ReleaseNoteCreation.Category.ENHANCEMENT);
+    assertThat(releaseNoteTexts).hasSize(1);
+    assertThat(releaseNoteTexts.get(0).prNumbers).hasSize(count);
+    assertThat(elapsed).isLessThan(Duration.ofSeconds(5));
+  }
+
   @Test
   void extractReleaseNoteInfo_withoutCategory_addedToMiscellaneousCategory() throws Exception {
     // Arrange
@@ -235,6 +355,1357 @@ public class ReleaseNoteCreationTest {
     assertThat(stdout).isEqualTo(expected);
   }
 
+  @Test
+  void outputReleaseNote_notApplicableAfterSameAs_mergedIntoTopicPullRequest() throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext ghContextMock = mock(ReleaseNoteCreation.GitHubContext.class);
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "1", ReleaseNoteCreation.Category.ENHANCEMENT, "A topic pull request.");
+    addMockBehaviourToGitHubContext(
+        ghContextMock,
+        "2",
+        ReleaseNoteCreation.Category.BUGFIX,
+        "Additional comment.\nSame as #1\nN/A");
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "3", ReleaseNoteCreation.Category.BUGFIX, "N/A\nSame as #1");
+    ReleaseNoteCreation sut = new ReleaseNoteCreation(ghContextMock);
+    sut.extractReleaseNoteInfo("1");
+    sut.extractReleaseNoteInfo("2");
+    sut.extractReleaseNoteInfo("3");
+
+    // Act
+    String stdout = captureReleaseNote(sut);
+
+    // Assert
+    assertThat(stdout)
+        .isEqualTo(
+            "## Summary\n\n"
+                + "## Enhancements\n"
+                + "- A topic pull request. Additional comment. (#1 #2)\n\n\n");
+  }
+
+  @Test
+  void outputReleaseNote_withOutputFiles_outputAllFormatsInOnePass(@TempDir Path directory)
+      throws Exception {
+    // Arrange
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    options.outputFiles.add(directory.resolve("release-note.md").toString());
+    options.outputFiles.add(directory.resolve("release-note.json").toString());
+    options.outputFiles.add(directory.resolve("release-note.html").toString());
+    options.outputFiles.add(directory.resolve("release-note.jsonl").toString());
+    Map<String, String> texts = new LinkedHashMap<>();
+    texts.put("1", "Added <Scan> & \"Get\".");
+    texts.put("2", "Same as #1");
+    texts.put("3", "Fixed C.");
+    ReleaseNoteCreation sut =
+        new ReleaseNoteCreation(snapshotGhContext(texts, updatedAts(texts)), options);
+    sut.processPullRequests(
+        new ArrayList<>(texts.keySet()), new ReleaseNoteCreation.DirectExecutorService());
+
+    // Act
+    String stdout = captureReleaseNote(sut);
+
+    // Assert
+    assertThat(stdout)
+        .isEqualTo(
+            "## Summary\n\n"
+                + "## Enhancements\n"
+                + "- Added <Scan> & \"Get\". (#1 #2)\n"
+                + "- Fixed C. (#3)\n\n\n");
+    assertThat(Files.readString(directory.resolve("release-note.md"))).isEqualTo(stdout);
+    assertThat(Files.readString(directory.resolve("release-note.json")))
+        .isEqualTo(
+            "{\"categories\":[\n"
+                + "{\"category\":\"enhancement\",\"displayName\":\"Enhancements\",\"releaseNotes\":[\n"
+                + "{\"text\":\"Added <Scan> & \\\"Get\\\".\",\"pullRequests\":[\"1\",\"2\"]},\n"
+                + "{\"text\":\"Fixed C.\",\"pullRequests\":[\"3\"]}]}\n"
+                + "]}\n");
+    assertThat(Files.readString(directory.resolve("release-note.html")))
+        .isEqualTo(
+            "<h2>Summary</h2>\n"
+                + "<h2>Enhancements</h2>\n"
+                + "<ul>\n"
+                + "<li>Added &lt;Scan&gt; &amp; &quot;Get&quot;. (#1 #2)</li>\n"
+                + "<li>Fixed C. (#3)</li>\n"
+                + "</ul>\n");
+    assertThat(Files.readString(directory.resolve("release-note.jsonl")))
+        .isEqualTo(
+            "{\"repository\":null,\"category\":\"enhancement\","
+                + "\"text\":\"Added <Scan> & \\\"Get\\\".\",\"pullRequests\":[\"1\",\"2\"]}\n"
+                + "{\"repository\":null,\"category\":\"enhancement\","
+                + "\"text\":\"Fixed C.\",\"pullRequests\":[\"3\"]}\n");
+  }
+
+  @Test
+  void createReleaseNote_withMetricsFile_reportPhasesOperationsAndOutcomes(@TempDir Path directory)
+      throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext ghContextMock = mock(ReleaseNoteCreation.GitHubContext.class);
+    when(ghContextMock.getProjectId()).thenReturn("1");
+    when(ghContextMock.pullRequestNumbers("1")).thenReturn(List.of("1", "2", "3", "4").iterator());
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "1", ReleaseNoteCreation.Category.ENHANCEMENT, "Added A.");
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "2", ReleaseNoteCreation.Category.ENHANCEMENT, "N/A");
+    when(ghContextMock.isPullRequestMerged("3")).thenReturn(false);
+    when(ghContextMock.isPullRequestMerged("4")).thenReturn(true);
+    when(ghContextMock.getPullRequestBody("4")).thenThrow(new IOException("Timed out"));
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    options.metricsFile = directory.resolve("metrics/report.json").toString();
+    ReleaseNoteCreation sut = new ReleaseNoteCreation(ghContextMock, options);
+
+    // Act
+    PrintStream original = System.out;
+    System.setOut(new PrintStream(new ByteArrayOutputStream(), false, StandardCharsets.UTF_8));
+    try {
+      sut.createReleaseNote();
+    } finally {
+      System.setOut(original);
+    }
+
+    // Assert
+    Object report =
+        ReleaseNoteCreation.Json.parse(Files.readString(directory.resolve("metrics/report.json")));
+    assertThat(ReleaseNoteCreation.Json.asObject(ReleaseNoteCreation.Json.get(report, "phases")))
+        .containsOnlyKeys(
+            "getProjectId", "processPullRequests", "assortSameAsItems", "outputReleaseNote");
+    assertThat(ReleaseNoteCreation.Json.get(report, "counters", "prs.merged")).isEqualTo(1L);
+    assertThat(ReleaseNoteCreation.Json.get(report, "counters", "prs.notApplicable")).isEqualTo(1L);
+    assertThat(ReleaseNoteCreation.Json.get(report, "counters", "prs.unmerged")).isEqualTo(1L);
+    assertThat(ReleaseNoteCreation.Json.get(report, "counters", "prs.failed")).isEqualTo(1L);
+    assertThat(ReleaseNoteCreation.Json.get(report, "operations", "listPullRequests", "count"))
+        .isEqualTo(1L);
+    assertThat(ReleaseNoteCreation.Json.get(report, "operations", "getPullRequestBody", "count"))
+        .isEqualTo(3L);
+    assertThat(ReleaseNoteCreation.Json.get(report, "operations", "getPullRequestBody", "errors"))
+        .isEqualTo(1L);
+    assertThat(sut.droppedPullRequests).containsOnlyKeys("4");
+  }
+
+  @Test
+  void createReleaseNote_deadlinePassed_releaseNoteCreatedFromProcessedPullRequests()
+      throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext ghContextMock = mock(ReleaseNoteCreation.GitHubContext.class);
+    when(ghContextMock.getProjectId()).thenReturn("1");
+    when(ghContextMock.pullRequestNumbers("1")).thenReturn(List.of("1", "2", "3").iterator());
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "1", ReleaseNoteCreation.Category.ENHANCEMENT, "Added A.");
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "3", ReleaseNoteCreation.Category.BUGFIX, "Fixed C.");
+    when(ghContextMock.isPullRequestMerged("2")).thenReturn(true);
+    when(ghContextMock.getCategoryFromPullRequest("2"))
+        .thenReturn(ReleaseNoteCreation.Category.ENHANCEMENT);
+    when(ghContextMock.getPullRequestBody("2"))
+        .thenAnswer(
+            invocation -> {
+              // GitHub doesn't respond until the processing is cancelled
+              Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+              return normalPullRequestBody("Added B.");
+            });
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    options.parallelism = 2;
+    options.deadlineSeconds = 1;
+    ReleaseNoteCreation sut = new ReleaseNoteCreation(ghContextMock, options);
+
+    // Act
+    long start = System.nanoTime();
+    String stdout;
+    PrintStream original = System.out;
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(baos, false, StandardCharsets.UTF_8));
+    try {
+      sut.createReleaseNote();
+    } finally {
+      System.setOut(original);
+    }
+    stdout = baos.toString(StandardCharsets.UTF_8);
+
+    // Assert
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(10));
+    assertThat(stdout)
+        .isEqualTo(
+            "## Summary\n\n"
+                + "## Enhancements\n"
+                + "- Added A. (#1)\n\n"
+                + "## Bug fixes\n"
+                + "- Fixed C. (#3)\n\n\n");
+    assertThat(sut.isDeadlineExceeded()).isTrue();
+    assertThat(sut.unprocessedPullRequests).containsExactly("2");
+    assertThat(sut.droppedPullRequests).isEmpty();
+  }
+
+  @Test
+  void createReleaseNote_deadlinePassedWithoutParallelism_followingPullRequestsNotStarted()
+      throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext ghContextMock = mock(ReleaseNoteCreation.GitHubContext.class);
+    when(ghContextMock.getProjectId()).thenReturn("1");
+    when(ghContextMock.pullRequestNumbers("1")).thenReturn(List.of("1", "2", "3").iterator());
+    for (String prNumber : List.of("1", "2", "3")) {
+      when(ghContextMock.isPullRequestMerged(prNumber)).thenReturn(true);
+      when(ghContextMock.getCategoryFromPullRequest(prNumber))
+          .thenReturn(ReleaseNoteCreation.Category.ENHANCEMENT);
+      when(ghContextMock.getPullRequestBody(prNumber))
+          .thenAnswer(
+              invocation -> {
+                // Each PR is processed on the calling thread, so it can't be cancelled
+                Thread.sleep(1500);
+                return normalPullRequestBody("Added " + prNumber + ".");
+              });
+    }
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    options.parallelism = 1;
+    options.deadlineSeconds = 1;
+    ReleaseNoteCreation sut = new ReleaseNoteCreation(ghContextMock, options);
+
+    // Act
+    long start = System.nanoTime();
+    String stdout;
+    PrintStream original = System.out;
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(baos, false, StandardCharsets.UTF_8));
+    try {
+      sut.createReleaseNote();
+    } finally {
+      System.setOut(original);
+    }
+    stdout = baos.toString(StandardCharsets.UTF_8);
+
+    // Assert
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(3));
+    assertThat(stdout).isEqualTo("## Summary\n\n## Enhancements\n- Added 1. (#1)\n\n\n");
+    assertThat(sut.isDeadlineExceeded()).isTrue();
+    assertThat(sut.unprocessedPullRequests).containsExactly("2", "3");
+    verify(ghContextMock, never()).getPullRequestBody("2");
+    verify(ghContextMock, never()).getPullRequestBody("3");
+  }
+
+  @Test
+  void deadline_noneOrLater_timeoutsNotShortened() {
+    // Arrange
+    ReleaseNoteCreation.Deadline later =
+        ReleaseNoteCreation.Deadline.after(Duration.ofSeconds(60));
+
+    // Act
+    int noDeadlineTimeOut = ReleaseNoteCreation.Deadline.NONE.timeOutInSec(10);
+    Duration noDeadlineTimeout = ReleaseNoteCreation.Deadline.NONE.timeout(Duration.ofSeconds(30));
+    int shortTimeOut = later.timeOutInSec(10);
+    int longTimeOut = later.timeOutInSec(120);
+
+    // Assert
+    assertThat(noDeadlineTimeOut).isEqualTo(10);
+    assertThat(noDeadlineTimeout).isEqualTo(Duration.ofSeconds(30));
+    assertThat(shortTimeOut).isEqualTo(10);
+    assertThat(longTimeOut).isBetween(59, 60);
+  }
+
+  @Test
+  void requestScheduler_backoffBeyondDeadline_failedWithoutRetry() {
+    // Arrange
+    ReleaseNoteCreation.RequestScheduler sut =
+        new ReleaseNoteCreation.RequestScheduler(
+            1, 10, 60_000, 60_000, new ReleaseNoteCreation.Metrics());
+    sut.setDeadline(ReleaseNoteCreation.Deadline.after(Duration.ofSeconds(5)));
+    AtomicInteger requests = new AtomicInteger();
+
+    // Act
+    Throwable thrown =
+        catchThrowable(
+            () ->
+                sut.call(
+                    "request",
+                    () -> {
+                      requests.incrementAndGet();
+                      throw new ReleaseNoteCreation.RetryableException(
+                          "Rate limited", true, 10_000);
+                    }));
+
+    // Assert
+    assertThat(thrown)
+        .isInstanceOf(ReleaseNoteCreation.DeadlineExceededException.class)
+        .hasCauseInstanceOf(ReleaseNoteCreation.RetryableException.class);
+    assertThat(requests).hasValue(1);
+  }
+
+  @Test
+  void gitRange_squashedAndMergeCommits_pullRequestsListedInMergedOrder(@TempDir Path directory)
+      throws Exception {
+    // Arrange
+    git(directory, "init", "-q", "-b", "main");
+    commit(directory, "Initial commit");
+    git(directory, "tag", "v1.0.0");
+    commit(directory, "Add A (#3)");
+    git(directory, "checkout", "-q", "-b", "feature");
+    commit(directory, "Work on B");
+    git(directory, "checkout", "-q", "main");
+    git(
+        directory,
+        "merge",
+        "-q",
+        "--no-ff",
+        "-m",
+        "Merge pull request #1 from owner/feature",
+        "feature");
+    commit(directory, "Backport C (#2) (#5)");
+    commit(directory, "Revert \"Add A (#3)\" (#4)");
+    commit(directory, "Bump the version");
+    git(directory, "tag", "v1.1.0");
+    commit(directory, "Add D (#6)");
+    ReleaseNoteCreation.GitRange sut =
+        new ReleaseNoteCreation.GitRange(
+            directory, "v1.0.0..v1.1.0", new ReleaseNoteCreation.Metrics());
+
+    // Act
+    List<String> prNumbers = sut.pullRequestNumbers();
+
+    // Assert
+    assertThat(prNumbers).containsExactly("3", "1", "5", "4");
+  }
+
+  @Test
+  void createReleaseNote_withGitRangeAndCheckProject_missingPullRequestsReported(
+      @TempDir Path directory) throws Exception {
+    // Arrange
+    git(directory, "init", "-q", "-b", "main");
+    commit(directory, "Initial commit");
+    commit(directory, "Add A (#1)");
+    commit(directory, "Fix B (#2)");
+    ReleaseNoteCreation.GitHubContext ghContextMock = mock(ReleaseNoteCreation.GitHubContext.class);
+    when(ghContextMock.getProjectId()).thenReturn("7");
+    when(ghContextMock.getProjectTitle()).thenReturn("ScalarDB 4.0.0");
+    when(ghContextMock.getPullRequestNumbers("7")).thenReturn(List.of("1"));
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "1", ReleaseNoteCreation.Category.ENHANCEMENT, "Added A.");
+    addMockBehaviourToGitHubContext(
+        ghContextMock, "2", ReleaseNoteCreation.Category.BUGFIX, "Fixed B.");
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    options.parse("--git-range=HEAD~2..HEAD", "--git-dir=" + directory, "--check-project");
+    ReleaseNoteCreation sut = new ReleaseNoteCreation(ghContextMock, options);
+
+    // Act
+    PrintStream originalOut = System.out;
+    PrintStream originalErr = System.err;
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(new ByteArrayOutputStream(), false, StandardCharsets.UTF_8));
+    System.setErr(new PrintStream(err, false, StandardCharsets.UTF_8));
+    try {
+      sut.createReleaseNote();
+    } finally {
+      System.setOut(originalOut);
+      System.setErr(originalErr);
+    }
+
+    // Assert
+    assertThat(sut.categoryMap.get(ReleaseNoteCreation.Category.ENHANCEMENT))
+        .extracting(rnText -> rnText.text)
+        .containsExactly("Added A.");
+    assertThat(sut.categoryMap.get(ReleaseNoteCreation.Category.BUGFIX))
+        .extracting(rnText -> rnText.text)
+        .containsExactly("Fixed B.");
+    assertThat(err.toString(StandardCharsets.UTF_8))
+        .contains("WARN: 1 PRs in HEAD~2..HEAD are missing from the project ScalarDB 4.0.0")
+        .contains("WARN:   #2");
+    verify(ghContextMock, never()).pullRequestNumbers(anyString());
+  }
+
+  @Test
+  void histogram_recordedLatencies_countedInBucketsOfTheirUpperBounds() {
+    // Arrange
+    ReleaseNoteCreation.Metrics.Histogram histogram = new ReleaseNoteCreation.Metrics.Histogram();
+
+    // Act
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(500), false);
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(1), false);
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(30), true);
+    histogram.record(TimeUnit.MINUTES.toNanos(1), false);
+
+    // Assert
+    Map<String, Object> report = histogram.toReport();
+    assertThat(report).containsEntry("count", 4L).containsEntry("errors", 1L);
+    assertThat(report).containsEntry("minMillis", 0.5).containsEntry("maxMillis", 60000.0);
+    assertThat(ReleaseNoteCreation.Json.getList(report, "buckets"))
+        .filteredOn(
+            bucket -> !Long.valueOf(0).equals(ReleaseNoteCreation.Json.get(bucket, "count")))
+        .extracting(bucket -> ReleaseNoteCreation.Json.get(bucket, "le"))
+        .containsExactly(1L, 50L, "+Inf");
+  }
+
+  @Test
+  void processPullRequests_inParallel_outputSameAsSequentialProcessing() throws Exception {
+    // Arrange
+    List<String> prNumbers = List.of("1", "2", "3", "4", "5", "6", "7", "8");
+    ReleaseNoteCreation sequential = new ReleaseNoteCreation(slowGhContext(prNumbers));
+    ReleaseNoteCreation parallel = new ReleaseNoteCreation(slowGhContext(prNumbers));
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    // Act
+    sequential.processPullRequests(prNumbers, new ReleaseNoteCreation.DirectExecutorService());
+    parallel.processPullRequests(prNumbers, executor);
+    executor.shutdown();
+
+    // Assert
+    assertThat(captureReleaseNote(parallel)).isEqualTo(captureReleaseNote(sequential));
+  }
+
+  @Test
+  void processPullRequestsIncrementally_updatedAndAddedPullRequests_outputSameAsFullRebuild(
+      @TempDir Path directory) throws Exception {
+    // Arrange
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    options.snapshotFile = directory.resolve("snapshot.json").toString();
+    Map<String, String> firstTexts = new LinkedHashMap<>();
+    firstTexts.put("1", "Added A.");
+    firstTexts.put("2", "Same as #1");
+    firstTexts.put("3", "Fixed C.");
+    firstTexts.put("4", "N/A");
+    Map<String, String> secondTexts = new LinkedHashMap<>(firstTexts);
+    secondTexts.put("2", "Improved B.");
+    secondTexts.remove("3");
+    secondTexts.put("5", "Same as #1");
+    Map<String, String> secondUpdatedAts = updatedAts(secondTexts);
+    secondUpdatedAts.put("2", "2023-10-02T00:00:00Z");
+
+    ReleaseNoteCreation.GitHubContext firstContext =
+        snapshotGhContext(firstTexts, updatedAts(firstTexts));
+    ReleaseNoteCreation.GitHubContext secondContext =
+        snapshotGhContext(secondTexts, secondUpdatedAts);
+    ReleaseNoteCreation.GitHubContext thirdContext =
+        snapshotGhContext(secondTexts, secondUpdatedAts);
+    ReleaseNoteCreation fullRebuild =
+        new ReleaseNoteCreation(snapshotGhContext(secondTexts, secondUpdatedAts));
+    ReleaseNoteCreation second = new ReleaseNoteCreation(secondContext, options);
+    ReleaseNoteCreation third = new ReleaseNoteCreation(thirdContext, options);
+    ExecutorService executor = new ReleaseNoteCreation.DirectExecutorService();
+
+    // Act
+    new ReleaseNoteCreation(firstContext, options)
+        .processPullRequestsIncrementally(new ArrayList<>(firstTexts.keySet()), executor);
+    second.processPullRequestsIncrementally(new ArrayList<>(secondTexts.keySet()), executor);
+    third.processPullRequestsIncrementally(new ArrayList<>(secondTexts.keySet()), executor);
+    fullRebuild.processPullRequests(new ArrayList<>(secondTexts.keySet()), executor);
+
+    // Assert
+    String expected = captureReleaseNote(fullRebuild);
+    assertThat(expected).contains("- Added A. (#1 #5)", "- Improved B. (#2)");
+    assertThat(captureReleaseNote(second)).isEqualTo(expected);
+    assertThat(captureReleaseNote(third)).isEqualTo(expected);
+    verify(secondContext).getPullRequestBody("2");
+    verify(secondContext).getPullRequestBody("5");
+    verify(secondContext, never()).getPullRequestBody("1");
+    verify(secondContext, never()).getPullRequestBody("4");
+    verify(thirdContext, never()).getPullRequestBody(anyString());
+  }
+
+  @Test
+  void createReleaseNote_cachedProjectRerun_onlyUpdatedPullRequestsFetched(@TempDir Path directory)
+      throws Exception {
+    // Arrange
+    Map<String, String> updatedAts = new LinkedHashMap<>();
+    for (String prNumber : List.of("1", "2", "3", "4")) updatedAts.put(prNumber, UPDATED_AT);
+    List<String> fetchedBodies = new ArrayList<>();
+    HttpServer server = startProjectStubServer(updatedAts, fetchedBodies);
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    options.cacheDirectory = directory.toString();
+
+    try {
+      // Act
+      ReleaseNoteCreation first = new ReleaseNoteCreation(httpGhContext(server), options);
+      captureCreatedReleaseNote(first);
+      List<String> firstFetchedBodies = new ArrayList<>(fetchedBodies);
+      fetchedBodies.clear();
+      updatedAts.put("2", "2023-10-02T00:00:00Z");
+      ReleaseNoteCreation second = new ReleaseNoteCreation(httpGhContext(server), options);
+      String releaseNote = captureCreatedReleaseNote(second);
+
+      // Assert
+      assertThat(firstFetchedBodies).containsExactly("1", "2", "3");
+      assertThat(fetchedBodies).containsExactly("2");
+      assertThat(releaseNote)
+          .contains(
+              "- Updated at 2023-10-01T00:00:00Z. (#1)",
+              "- Updated at 2023-10-02T00:00:00Z. (#2)",
+              "- Updated at 2023-10-01T00:00:00Z. (#3)");
+      assertThat(second.metrics.count(ReleaseNoteCreation.Metrics.CACHE_HITS)).isEqualTo(2);
+      // The project, its items and the bodies are fetched at first, and the project is indexed
+      assertThat(first.metrics.count(ReleaseNoteCreation.Metrics.HTTP_REQUESTS)).isEqualTo(3);
+      assertThat(second.metrics.count(ReleaseNoteCreation.Metrics.HTTP_REQUESTS)).isEqualTo(2);
+      assertThat(second.metrics.count(ReleaseNoteCreation.Metrics.BYTES_READ))
+          .isLessThan(first.metrics.count(ReleaseNoteCreation.Metrics.BYTES_READ) / 2);
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void createReleaseNote_snapshotProjectRerun_requestsAndBytesOnlyForUpdatedPullRequests(
+      @TempDir Path directory) throws Exception {
+    // Arrange
+    Map<String, String> updatedAts = new LinkedHashMap<>();
+    for (String prNumber : List.of("1", "2", "3", "4")) updatedAts.put(prNumber, UPDATED_AT);
+    List<String> fetchedBodies = new ArrayList<>();
+    HttpServer server = startProjectStubServer(updatedAts, fetchedBodies);
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    options.cacheDirectory = null;
+    options.snapshotFile = directory.resolve("snapshot.json").toString();
+
+    try {
+      // Act
+      ReleaseNoteCreation first = new ReleaseNoteCreation(httpGhContext(server), options);
+      captureCreatedReleaseNote(first);
+      fetchedBodies.clear();
+      updatedAts.put("2", "2023-10-02T00:00:00Z");
+      ReleaseNoteCreation second = new ReleaseNoteCreation(httpGhContext(server), options);
+      String releaseNote = captureCreatedReleaseNote(second);
+      List<String> secondFetchedBodies = new ArrayList<>(fetchedBodies);
+      fetchedBodies.clear();
+      ReleaseNoteCreation third = new ReleaseNoteCreation(httpGhContext(server), options);
+      String thirdReleaseNote = captureCreatedReleaseNote(third);
+
+      // Assert
+      assertThat(thirdReleaseNote).isEqualTo(releaseNote);
+      assertThat(secondFetchedBodies).containsExactly("2");
+      assertThat(fetchedBodies).isEmpty();
+      assertThat(releaseNote)
+          .contains(
+              "- Updated at 2023-10-01T00:00:00Z. (#1)",
+              "- Updated at 2023-10-02T00:00:00Z. (#2)",
+              "- Updated at 2023-10-01T00:00:00Z. (#3)");
+      assertThat(second.metrics.count(ReleaseNoteCreation.Metrics.SNAPSHOT_HITS)).isEqualTo(2);
+      assertThat(third.metrics.count(ReleaseNoteCreation.Metrics.SNAPSHOT_HITS)).isEqualTo(3);
+      // Only the project and its items are fetched when no PR is updated
+      assertThat(first.metrics.count(ReleaseNoteCreation.Metrics.HTTP_REQUESTS)).isEqualTo(3);
+      assertThat(second.metrics.count(ReleaseNoteCreation.Metrics.HTTP_REQUESTS)).isEqualTo(3);
+      assertThat(third.metrics.count(ReleaseNoteCreation.Metrics.HTTP_REQUESTS)).isEqualTo(2);
+      assertThat(second.metrics.count(ReleaseNoteCreation.Metrics.BYTES_READ))
+          .isLessThan(first.metrics.count(ReleaseNoteCreation.Metrics.BYTES_READ) / 2);
+      assertThat(third.metrics.count(ReleaseNoteCreation.Metrics.BYTES_READ))
+          .isLessThan(second.metrics.count(ReleaseNoteCreation.Metrics.BYTES_READ) / 10);
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void createReleaseNotes_multipleVersions_distinctPullRequestsFetchedOnlyOnce(
+      @TempDir Path directory) throws Exception {
+    // Arrange
+    Map<String, String> texts = new LinkedHashMap<>();
+    texts.put("1", "Fixed A.");
+    texts.put("2", "Fixed B.");
+    texts.put("3", "Same as #2");
+    texts.put("4", "Added D.");
+    ReleaseNoteCreation.GitHubContext ghContextMock = snapshotGhContext(texts, updatedAts(texts));
+    Map<String, List<String>> projects = new LinkedHashMap<>();
+    projects.put("3.12.3", List.of("1", "2"));
+    projects.put("3.13.1", List.of("1", "2", "3"));
+    projects.put("3.14.0", List.of("1", "2", "3", "4"));
+    for (Map.Entry<String, List<String>> project : projects.entrySet()) {
+      ReleaseNoteCreation.GitHubContext versionContextMock =
+          mock(ReleaseNoteCreation.GitHubContext.class);
+      when(versionContextMock.getProjectId()).thenReturn(project.getKey());
+      when(versionContextMock.getPullRequestNumbers(project.getKey()))
+          .thenReturn(project.getValue());
+      when(ghContextMock.forVersion(project.getKey())).thenReturn(versionContextMock);
+    }
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    options.outputFiles.add(directory.resolve("release-note.md").toString());
+
+    // Act
+    Map<String, ReleaseNoteCreation> releaseNotes =
+        ReleaseNoteCreation.createReleaseNotes(
+            ghContextMock, new ArrayList<>(projects.keySet()), options);
+
+    // Assert
+    assertThat(releaseNotes).containsOnlyKeys(projects.keySet());
+    assertThat(Files.readString(directory.resolve("release-note.3.12.3.md")))
+        .isEqualTo("## Summary\n\n## Enhancements\n- Fixed A. (#1)\n- Fixed B. (#2)\n\n\n");
+    assertThat(Files.readString(directory.resolve("release-note.3.13.1.md")))
+        .isEqualTo("## Summary\n\n## Enhancements\n- Fixed A. (#1)\n- Fixed B. (#2 #3)\n\n\n");
+    assertThat(Files.readString(directory.resolve("release-note.3.14.0.md")))
+        .isEqualTo(
+            "## Summary\n\n## Enhancements\n"
+                + "- Fixed A. (#1)\n- Fixed B. (#2 #3)\n- Added D. (#4)\n\n\n");
+    for (String prNumber : texts.keySet()) {
+      verify(ghContextMock, times(1)).getPullRequestBody(prNumber);
+    }
+  }
+
+  @Test
+  void releaseNoteDaemon_pullRequestChangedEvents_onlyChangedPullRequestsFetchedAgain()
+      throws Exception {
+    // Arrange
+    Map<String, String> texts = new LinkedHashMap<>();
+    texts.put("1", "Added A.");
+    texts.put("2", "Same as #1");
+    texts.put("3", "Fixed C.");
+    ReleaseNoteCreation.GitHubContext ghContextMock = mock(ReleaseNoteCreation.GitHubContext.class);
+    when(ghContextMock.getProjectId()).thenReturn("1");
+    when(ghContextMock.getPullRequestNumbers("1"))
+        .thenAnswer(invocation -> new ArrayList<>(texts.keySet()));
+    when(ghContextMock.isPullRequestMerged(anyString())).thenReturn(true);
+    when(ghContextMock.getCategoryFromPullRequest(anyString()))
+        .thenReturn(ReleaseNoteCreation.Category.ENHANCEMENT);
+    when(ghContextMock.getPullRequestBody(anyString()))
+        .thenAnswer(
+            invocation -> normalPullRequestBody(texts.get(invocation.<String>getArgument(0))));
+    ReleaseNoteCreation.ReleaseNoteDaemon sut =
+        new ReleaseNoteCreation.ReleaseNoteDaemon(
+            new ReleaseNoteCreation(ghContextMock), new InetSocketAddress("127.0.0.1", 0));
+    sut.load();
+    sut.start();
+    HttpClient client = HttpClient.newHttpClient();
+
+    try {
+      // Act
+      texts.put("2", "Improved B.");
+      texts.put("4", "Same as #3");
+      HttpResponse<String> changed =
+          postEvent(client, sut, "{\"action\":\"edited\",\"pull_request\":{\"number\":2}}");
+      HttpResponse<String> added = postEvent(client, sut, "{\"number\":4}");
+      HttpResponse<String> unknown = postEvent(client, sut, "{\"number\":5}");
+      HttpResponse<String> releaseNote =
+          client.send(
+              HttpRequest.newBuilder(
+                      URI.create(
+                          "http://127.0.0.1:" + sut.getAddress().getPort() + "/release-note"))
+                  .build(),
+              HttpResponse.BodyHandlers.ofString());
+
+      // Assert
+      assertThat(changed.statusCode()).isEqualTo(200);
+      assertThat(added.statusCode()).isEqualTo(200);
+      assertThat(unknown.statusCode()).isEqualTo(202);
+      ReleaseNoteCreation fullRebuild = new ReleaseNoteCreation(snapshotGhContext(texts, Map.of()));
+      fullRebuild.processPullRequests(
+          new ArrayList<>(texts.keySet()), new ReleaseNoteCreation.DirectExecutorService());
+      assertThat(releaseNote.statusCode()).isEqualTo(200);
+      assertThat(releaseNote.body())
+          .isEqualTo(captureReleaseNote(fullRebuild))
+          .contains("- Added A. (#1)", "- Improved B. (#2)", "- Fixed C. (#3 #4)");
+      verify(ghContextMock, times(1)).getPullRequestBody("1");
+      verify(ghContextMock, times(2)).getPullRequestBody("2");
+      verify(ghContextMock, never()).getPullRequestBody("5");
+    } finally {
+      sut.close();
+    }
+  }
+
+  @Test
+  void processPullRequests_prNumbersStillListed_processingStartedForFilledBatch() throws Exception {
+    // Arrange
+    CountDownLatch firstPrProcessed = new CountDownLatch(1);
+    ReleaseNoteCreation.GitHubContext ghContextMock = mock(ReleaseNoteCreation.GitHubContext.class);
+    when(ghContextMock.isPullRequestMerged(anyString()))
+        .thenAnswer(
+            invocation -> {
+              if (invocation.getArgument(0).equals("1")) firstPrProcessed.countDown();
+              return true;
+            });
+    when(ghContextMock.getCategoryFromPullRequest(anyString()))
+        .thenReturn(ReleaseNoteCreation.Category.IMPROVEMENT);
+    when(ghContextMock.getPullRequestBody(anyString()))
+        .thenAnswer(invocation -> normalPullRequestBody("Text " + invocation.getArgument(0)));
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    options.parse("--batch-size=2");
+    ReleaseNoteCreation sut = new ReleaseNoteCreation(ghContextMock, options);
+
+    // The last page is listed only after the first PR is processed
+    Iterator<String> prNumbers =
+        new Iterator<>() {
+          private final Iterator<String> delegate = List.of("1", "2", "3").iterator();
+          private boolean waitedForFirstPr;
+
+          @Override
+          public boolean hasNext() {
+            return delegate.hasNext();
+          }
+
+          @Override
+          public String next() {
+            String next = delegate.next();
+            if (next.equals("3") && !waitedForFirstPr) {
+              try {
+                waitedForFirstPr = firstPrProcessed.await(10, TimeUnit.SECONDS);
+              } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+              }
+            }
+            return next;
+          }
+        };
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    // Act
+    sut.processPullRequests(prNumbers, executor);
+    executor.shutdown();
+
+    // Assert
+    assertThat(firstPrProcessed.getCount()).isZero();
+    assertThat(sut.categoryMap.get(ReleaseNoteCreation.Category.IMPROVEMENT))
+        .extracting(rnText -> rnText.text)
+        .containsExactly("Text 1", "Text 2", "Text 3");
+  }
+
+  @Test
+  void pullRequestNumbers_paginatedItems_mergedPullRequestsOfRepositoryListedWithFields()
+      throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext sut =
+        spy(new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0", "scalardb"));
+    sut.setBatchSize(2);
+    doReturn(
+            pullRequestFieldsLines(
+                "next",
+                pullRequestFields("1", "MERGED", "## Release notes\nA text.\n", "enhancement")))
+        .when(sut)
+        .runSubProcessAndGetOutputAsReader(startsWith("gh api graphql -f query="));
+    doReturn(
+            pullRequestFieldsLines(
+                "", pullRequestFields("3", "MERGED", "## Release notes\nN/A\n", "bugfix")))
+        .when(sut)
+        .runSubProcessAndGetOutputAsReader(startsWith("gh api graphql -f endCursor='next'"));
+
+    // Act
+    List<String> prNumbers = sut.getPullRequestNumbers("4");
+    sut.fetchPullRequests(prNumbers);
+
+    // Assert
+    assertThat(prNumbers).containsExactly("1", "3");
+    verify(sut, times(2))
+        .runSubProcessAndGetOutputAsReader(
+            and(
+                contains("projectV2(number: 4) { items(first: 100, after: $endCursor)"),
+                and(
+                    contains(
+                        "... on PullRequest { repository { name } number state updatedAt body"),
+                    and(
+                        contains(".repository.name == \"scalardb\""),
+                        contains(".state == \"MERGED\"")))));
+    // The listed PRs aren't fetched again
+    assertThat(sut.isPullRequestMerged("1")).isTrue();
+    assertThat(sut.getCategoryFromPullRequest("1"))
+        .isEqualTo(ReleaseNoteCreation.Category.ENHANCEMENT);
+    assertThat(sut.getPullRequestBody("3").lines()).containsExactly("## Release notes", "N/A");
+    verify(sut, times(2)).runSubProcessAndGetOutputAsReader(anyString());
+  }
+
+  @Test
+  void getPullRequestBody_notFetchedInBatch_fetchedWithGhWithoutRetry() throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext sut =
+        spy(new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0", "scalardb"));
+    ReleaseNoteCreation.Metrics metrics = new ReleaseNoteCreation.Metrics();
+    sut.setMetrics(metrics);
+    sut.setBatchSize(2);
+    doReturn(pullRequestFieldsLines("## Release notes", "Text."))
+        .when(sut)
+        .runSubProcessAndGetOutputAsReader(endsWith("--json body"));
+
+    // Act
+    BufferedReader body = sut.getPullRequestBody("5");
+
+    // Assert
+    assertThat(body.lines()).containsExactly("## Release notes", "Text.");
+    verify(sut).runSubProcessAndGetOutputAsReader(startsWith("gh pr view 5 "));
+    assertThat(metrics.count(ReleaseNoteCreation.Metrics.RETRIES)).isEqualTo(0);
+  }
+
+  @Test
+  void pullRequestNumbers_bodiesNotListed_mergedPullRequestsListedWithUpdatedAt()
+      throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext sut =
+        spy(new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0", "scalardb"));
+    sut.setBodiesListed(false);
+    doReturn(pullRequestFieldsLines("next", "1\t" + UPDATED_AT))
+        .when(sut)
+        .runSubProcessAndGetOutputAsReader(startsWith("gh api graphql -f query="));
+    doReturn(pullRequestFieldsLines("", "3\t2023-10-02T00:00:00Z"))
+        .when(sut)
+        .runSubProcessAndGetOutputAsReader(startsWith("gh api graphql -f endCursor='next'"));
+
+    // Act
+    List<String> prNumbers = sut.getPullRequestNumbers("4");
+    Map<String, String> updatedAts =
+        sut.fetchUpdatedAts(prNumbers, new ReleaseNoteCreation.DirectExecutorService());
+
+    // Assert
+    assertThat(prNumbers).containsExactly("1", "3");
+    verify(sut, times(2))
+        .runSubProcessAndGetOutputAsReader(
+            and(
+                contains("projectV2(number: 4) { items(first: 100, after: $endCursor)"),
+                and(
+                    contains("... on PullRequest { repository { name } number state updatedAt }"),
+                    and(
+                        contains(".repository.name == \"scalardb\""),
+                        contains(".state == \"MERGED\"")))));
+    verify(sut, never()).runSubProcessAndGetOutputAsReader(contains("body"));
+    // The updatedAt of the listed PRs is read from the listing without a request
+    assertThat(updatedAts)
+        .containsEntry("1", UPDATED_AT)
+        .containsEntry("3", "2023-10-02T00:00:00Z");
+    verify(sut, times(2)).runSubProcessAndGetOutputAsReader(anyString());
+  }
+
+  @Test
+  void fetchPullRequests_batchFetched_accessorsReadFromFetchedPullRequests() throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext ghContext =
+        spy(new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0", "scalardb"));
+    ghContext.setBatchSize(2);
+    doReturn(
+            pullRequestFieldsLines(
+                pullRequestFields("1", "MERGED", "## Release notes\nA text.\n", "enhancement"),
+                pullRequestFields("2", "OPEN", "", "bugfix")))
+        .when(ghContext)
+        .runSubProcessAndGetOutputAsReader(contains("pr1: pullRequest(number: 1)"));
+    doReturn(
+            pullRequestFieldsLines(
+                pullRequestFields("3", "MERGED", "## Release notes\nN/A\n", "test", "bugfix")))
+        .when(ghContext)
+        .runSubProcessAndGetOutputAsReader(contains("pr3: pullRequest(number: 3)"));
+
+    // Act
+    ghContext.fetchPullRequests(List.of("1", "2", "3"));
+
+    // Assert
+    verify(ghContext, times(2)).runSubProcessAndGetOutputAsReader(startsWith("gh api graphql"));
+    assertThat(ghContext.isPullRequestMerged("1")).isTrue();
+    assertThat(ghContext.isPullRequestMerged("2")).isFalse();
+    assertThat(ghContext.isPullRequestMerged("3")).isTrue();
+    assertThat(ghContext.getCategoryFromPullRequest("1"))
+        .isEqualTo(ReleaseNoteCreation.Category.ENHANCEMENT);
+    assertThat(ghContext.getCategoryFromPullRequest("3"))
+        .isEqualTo(ReleaseNoteCreation.Category.BUGFIX);
+    assertThat(ghContext.getPullRequestBody("1").lines())
+        .containsExactly("## Release notes", "A text.");
+    verify(ghContext, never()).runSubProcessAndGetOutputAsReader(startsWith("gh pr view"));
+  }
+
+  @ParameterizedTest
+  @MethodSource
+  void releaseNoteSectionParser_variousLines_parsedSameAsRegularExpressions(String section)
+      throws Exception {
+    // Arrange
+    String body = "## Description\r\nSome description\r\n\r\n" + section + "\n## Others\n- x\n";
+
+    // Act
+    ReleaseNoteCreation.ReleaseNoteSection parsed =
+        ReleaseNoteCreation.ReleaseNoteSectionParser.parse(body);
+    ReleaseNoteCreation.ReleaseNoteSection parsedFromReader =
+        ReleaseNoteCreation.ReleaseNoteSectionParser.parse(
+            new BufferedReader(new StringReader(body)));
+
+    // Assert
+    ReleaseNoteCreation.ReleaseNoteSection expected = parseWithRegularExpressions(body);
+    for (ReleaseNoteCreation.ReleaseNoteSection actual : List.of(parsed, parsedFromReader)) {
+      assertThat(actual.kind).isEqualTo(expected.kind);
+      assertThat(actual.text).isEqualTo(expected.text);
+      assertThat(actual.sameAsPrNumbers).isEqualTo(expected.sameAsPrNumbers);
+    }
+  }
+
+  static Stream<String> releaseNoteSectionParser_variousLines_parsedSameAsRegularExpressions() {
+    return Stream.of(
+        "## Release notes\n- Added a feature.",
+        "##Release Notes  \nAdded a feature.\n\n",
+        "## release note\n  -  Fixed a bug.  ",
+        "## Release  notess\n- Not a section.",
+        "## Release notes\n- N/A",
+        "## Release notes\nNA  ",
+        "## Release notes\n- N/A.",
+        "## Release notes\n- Same as #123",
+        "## Release notes\nsame As  45 \n- Same as #1\nA text after same as.",
+        "## Release notes\n- Sameas #12",
+        "## Release notes\n- Same  as #12",
+        "## Release notes\n- Same as #12a",
+        "## Release notes\n- Added a feature.\n- \n",
+        "## Release notes\n-",
+        "## Release notes\n   ",
+        "## Release notes\n- \u65e5\u672c\u8a9e\n- ASCII text.\n- \u65e5\u672c\u8a9e",
+        "## Release notes\n- Tab\tseparated",
+        "## Release notes\r\n- CRLF text.\r\n##\r\n- After the next header.",
+        "No release note section.");
+  }
+
+  @Test
+  void extractReleaseNoteSection_crlfBody_sectionNormalizedToLf() {
+    // Act
+    String section =
+        ReleaseNoteCreation.extractReleaseNoteSection(
+            "## Description\r\nabc\r\n## Release notes\r\n- Text\r\n\r\n## Related\r\n- #1\r\n");
+
+    // Assert
+    assertThat(section).isEqualTo("## Release notes\n- Text\n\n");
+  }
+
+  @Test
+  void parsePullRequestFields_noLabels_parsedWithEmptyLabels() {
+    // Act
+    ReleaseNoteCreation.PullRequest pr =
+        ReleaseNoteCreation.GitHubContext.parsePullRequestFields(
+            pullRequestFields("10", "CLOSED", "body"));
+
+    // Assert
+    assertThat(pr.number).isEqualTo("10");
+    assertThat(pr.state).isEqualTo("CLOSED");
+    assertThat(pr.body).isEqualTo("body");
+    assertThat(pr.labels).isEmpty();
+  }
+
+  @Test
+  void constructor_cacheWithoutBatchedFetch_rejected(@TempDir Path cacheDir) {
+    // Arrange
+    ReleaseNoteCreation.Options options = new ReleaseNoteCreation.Options();
+    options.cacheDirectory = cacheDir.toString();
+    options.batchSize = 1;
+
+    // Act
+    Throwable thrown =
+        catchThrowable(
+            () ->
+                new ReleaseNoteCreation(
+                    new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0", "scalardb"),
+                    options));
+
+    // Assert
+    assertThat(thrown)
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("--batch-size=1");
+  }
+
+  @Test
+  void fetchPullRequests_withCache_fetchOnlyUpdatedPullRequests(@TempDir Path cacheDir)
+      throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext firstRun = cachedGhContext(cacheDir);
+    doReturn(
+            pullRequestFieldsLines(
+                pullRequestFields("1", "MERGED", "## Release notes\nText 1.\n", "bugfix"),
+                pullRequestFields("2", "MERGED", "## Release notes\nText 2.\n## Other\n")))
+        .when(firstRun)
+        .runSubProcessAndGetOutputAsReader(contains("body"));
+    firstRun.fetchPullRequests(List.of("1", "2"));
+
+    ReleaseNoteCreation.GitHubContext secondRun = cachedGhContext(cacheDir);
+    doReturn(pullRequestFieldsLines("1\t" + UPDATED_AT, "2\t2023-10-02T00:00:00Z"))
+        .when(secondRun)
+        .runSubProcessAndGetOutputAsReader(contains("number updatedAt }"));
+    doReturn(pullRequestFieldsLines(pullRequestFields("2", "MERGED", "## Release notes\nNew.\n")))
+        .when(secondRun)
+        .runSubProcessAndGetOutputAsReader(contains("body"));
+
+    // Act
+    secondRun.fetchPullRequests(List.of("1", "2"));
+
+    // Assert
+    verify(secondRun)
+        .runSubProcessAndGetOutputAsReader(
+            and(contains("body"), contains("pr2: pullRequest(number: 2)")));
+    verify(secondRun, never())
+        .runSubProcessAndGetOutputAsReader(
+            and(contains("body"), contains("pr1: pullRequest(number: 1)")));
+    assertThat(secondRun.getCategoryFromPullRequest("1"))
+        .isEqualTo(ReleaseNoteCreation.Category.BUGFIX);
+    assertThat(secondRun.getPullRequestBody("1").lines())
+        .containsExactly("## Release notes", "Text 1.");
+    assertThat(secondRun.getPullRequestBody("2").lines())
+        .containsExactly("## Release notes", "New.");
+  }
+
+  @Test
+  void getProjectId_withProjectIndex_resolvedOnlyOnce(@TempDir Path cacheDir) throws Exception {
+    // Arrange
+    ReleaseNoteCreation.ProjectIndex projectIndex =
+        new ReleaseNoteCreation.ProjectIndex(cacheDir.resolve("projects.index"));
+    ReleaseNoteCreation.GitHubContext firstRun =
+        spy(new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0-rc1", "scalardb"));
+    firstRun.setProjectIndex(projectIndex);
+    doReturn(pullRequestFieldsLines("4"))
+        .when(firstRun)
+        .runSubProcessAndGetOutputAsReader(contains("projectsV2("));
+    ReleaseNoteCreation.GitHubContext secondRun =
+        spy(new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0", "scalardb"));
+    secondRun.setProjectIndex(projectIndex);
+
+    // Act
+    String firstProjectId = firstRun.getProjectId();
+    String secondProjectId = secondRun.getProjectId();
+
+    // Assert
+    assertThat(firstProjectId).isEqualTo("4");
+    assertThat(secondProjectId).isEqualTo("4");
+    verify(firstRun)
+        .runSubProcessAndGetOutputAsReader(
+            and(
+                contains("-f title='ScalarDB 4.0.0'"),
+                contains("query: $title"),
+                contains("select(.title == \"ScalarDB 4.0.0\")")));
+    verify(secondRun, never()).runSubProcessAndGetOutputAsReader(anyString());
+  }
+
+  @Test
+  void getProjectId_titleWithQuote_passedAsQuotedArguments() throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext sut =
+        spy(new ReleaseNoteCreation.GitHubContext("owner", "Scalar'DB", "4.0.0", "scalardb"));
+    doReturn(pullRequestFieldsLines("4"))
+        .when(sut)
+        .runSubProcessAndGetOutputAsReader(contains("projectsV2("));
+
+    // Act
+    String projectId = sut.getProjectId();
+
+    // Assert
+    assertThat(projectId).isEqualTo("4");
+    verify(sut)
+        .runSubProcessAndGetOutputAsReader(
+            and(
+                contains("-f title='Scalar'\\''DB 4.0.0'"),
+                contains("select(.title == \"Scalar'\\''DB 4.0.0\")")));
+  }
+
+  @Test
+  void shellQuote_valueWithQuotesAndVariables_passedAsOneWord() throws Exception {
+    // Arrange
+    String value = "it's $HOME \"`x`\" \\";
+    Process process =
+        new ProcessBuilder(
+                "bash", "-c", "printf %s " + ReleaseNoteCreation.GitHubContext.shellQuote(value))
+            .start();
+
+    // Act
+    String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+    // Assert
+    assertThat(process.waitFor()).isEqualTo(0);
+    assertThat(output).isEqualTo(value);
+  }
+
+  @Test
+  void evict_exceededMaxEntries_leastRecentlyUsedEntriesRemoved(@TempDir Path cacheDir) {
+    // Arrange
+    ReleaseNoteCreation.PullRequestCache sut =
+        new ReleaseNoteCreation.PullRequestCache(cacheDir, 2);
+    for (String prNumber : List.of("1", "2", "3")) {
+      sut.put(
+          "owner",
+          "repo",
+          new ReleaseNoteCreation.PullRequest(
+              prNumber, "MERGED", UPDATED_AT, List.of(), "## Release notes\nText\n"));
+    }
+    Path entry1 = cacheDir.resolve("owner").resolve("repo").resolve("1.properties");
+    Path entry2 = cacheDir.resolve("owner").resolve("repo").resolve("2.properties");
+    setLastModifiedTime(entry1, 1000);
+    setLastModifiedTime(entry2, 2000);
+
+    // Act
+    sut.evict();
+
+    // Assert
+    assertThat(sut.get("owner", "repo", "1", UPDATED_AT)).isNull();
+    assertThat(sut.get("owner", "repo", "2", UPDATED_AT)).isNotNull();
+    assertThat(sut.get("owner", "repo", "3", UPDATED_AT)).isNotNull();
+    assertThat(sut.get("owner", "repo", "3", "2023-10-02T00:00:00Z")).isNull();
+  }
+
+  @Test
+  void httpGitHubContext_projectAndItems_resolvedThroughGraphQl() throws Exception {
+    // Arrange
+    AtomicInteger requests = new AtomicInteger();
+    HttpServer server =
+        startStubServer(
+            (method, path, body) -> {
+              requests.incrementAndGet();
+              if (body.contains("projectsV2(")) {
+                return "{\"data\":{\"repositoryOwner\":{\"projectsV2\":{\"nodes\":["
+                    + "{\"number\":3,\"title\":\"ScalarDB Cluster 4.0.0\"},"
+                    + "{\"number\":4,\"title\":\"ScalarDB 4.0.0\"}],"
+                    + "\"pageInfo\":{\"hasNextPage\":false,\"endCursor\":null}}}}}";
+              }
+              boolean firstPage = body.contains("\"cursor\":null");
+              return "{\"data\":{\"repositoryOwner\":{\"projectV2\":{\"items\":{\"nodes\":["
+                  + (firstPage
+                      ? pullRequestItemWithBody(1, "scalardb", "MERGED")
+                          + ",{\"content\":{\"__typename\":\"Issue\"}},"
+                          + pullRequestItemWithBody(2, "other", "MERGED")
+                          + ","
+                          + pullRequestItemWithBody(4, "scalardb", "OPEN")
+                      : pullRequestItemWithBody(3, "scalardb", "MERGED"))
+                  + "],\"pageInfo\":{\"hasNextPage\":"
+                  + firstPage
+                  + ",\"endCursor\":\"next\"}}}}}}";
+            });
+    ReleaseNoteCreation.HttpGitHubContext sut = httpGhContext(server);
+
+    try {
+      // Act
+      String projectId = sut.getProjectId();
+      List<String> prNumbers = sut.getPullRequestNumbers(projectId);
+      sut.fetchPullRequests(prNumbers);
+
+      // Assert
+      assertThat(projectId).isEqualTo("4");
+      assertThat(prNumbers).containsExactly("1", "3");
+      // The listed PRs aren't fetched again
+      assertThat(sut.isPullRequestMerged("3")).isTrue();
+      assertThat(sut.getPullRequestBody("3").lines())
+          .containsExactly("## Release notes", "Text 3.");
+      assertThat(requests).hasValue(3);
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void httpGitHubContext_pullRequests_fetchedInBatchOrOneByOne() throws Exception {
+    // Arrange
+    HttpServer server =
+        startStubServer(
+            (method, path, body) -> {
+              if (method.equals("GET") && path.equals("/repos/owner/scalardb/pulls/2")) {
+                return "{\"number\":2,\"state\":\"closed\",\"merged_at\":\"2023-10-01T00:00:00Z\",\"updated_at\":\"2023-10-01T00:00:00Z\",\"body\":\"##"
+                           + " Release notes\\n"
+                           + "Text 2.\",\"labels\":[{\"name\":\"improvement\"}]}";
+              }
+              return "{\"data\":{\"repository\":{\"pr1\":{\"number\":1,\"state\":\"MERGED\","
+                  + "\"updatedAt\":\"2023-10-01T00:00:00Z\",\"body\":\"## Release notes\\r\\nText"
+                  + " \\\"1\\\".\",\"labels\":{\"nodes\":[{\"name\":\"bugfix\"}]}}}}}";
+            });
+    ReleaseNoteCreation.HttpGitHubContext sut = httpGhContext(server);
+
+    try {
+      // Act
+      sut.fetchPullRequests(List.of("1"));
+
+      // Assert
+      assertThat(sut.isPullRequestMerged("1")).isTrue();
+      assertThat(sut.getCategoryFromPullRequest("1"))
+          .isEqualTo(ReleaseNoteCreation.Category.BUGFIX);
+      assertThat(sut.getPullRequestBody("1").lines())
+          .containsExactly("## Release notes", "Text \"1\".");
+      assertThat(sut.isPullRequestMerged("2")).isTrue();
+      assertThat(sut.getCategoryFromPullRequest("2"))
+          .isEqualTo(ReleaseNoteCreation.Category.IMPROVEMENT);
+      assertThat(sut.getPullRequestBody("2").lines())
+          .containsExactly("## Release notes", "Text 2.");
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void httpGitHubContext_throttledWithRetryAfter_retriedWithReducedConcurrency() throws Exception {
+    // Arrange
+    AtomicInteger requests = new AtomicInteger();
+    HttpServer server =
+        startThrottlingStubServer(
+            requests,
+            2,
+            429,
+            Map.of("Retry-After", "0"),
+            "{\"data\":{\"repository\":{\"pr1\":{\"number\":1,\"state\":\"MERGED\","
+                + "\"updatedAt\":\"2023-10-01T00:00:00Z\",\"body\":\"## Release notes\\nText.\","
+                + "\"labels\":{\"nodes\":[]}}}}}");
+    ReleaseNoteCreation.HttpGitHubContext sut = httpGhContext(server);
+    ReleaseNoteCreation.Metrics metrics = new ReleaseNoteCreation.Metrics();
+    ReleaseNoteCreation.RequestScheduler scheduler =
+        new ReleaseNoteCreation.RequestScheduler(4, 10, 1, 10, metrics);
+    sut.setMetrics(metrics);
+    sut.setScheduler(scheduler);
+
+    try {
+      // Act
+      sut.fetchPullRequests(List.of("1"));
+
+      // Assert
+      assertThat(sut.isPullRequestMerged("1")).isTrue();
+      assertThat(requests.get()).isEqualTo(3);
+      assertThat(metrics.count(ReleaseNoteCreation.Metrics.RETRIES)).isEqualTo(2);
+      assertThat(scheduler.remainingRetryBudget()).isEqualTo(8);
+      // Halved twice by the throttling (4 -> 2 -> 1), and then grown by the success
+      assertThat(scheduler.concurrency()).isEqualTo(2);
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void httpGitHubContext_serverErrorsExceedingRetryBudget_failedLoudly() throws Exception {
+    // Arrange
+    AtomicInteger requests = new AtomicInteger();
+    HttpServer server = startThrottlingStubServer(requests, Integer.MAX_VALUE, 502, Map.of(), "{}");
+    ReleaseNoteCreation.HttpGitHubContext sut = httpGhContext(server);
+    sut.setScheduler(
+        new ReleaseNoteCreation.RequestScheduler(1, 2, 1, 10, new ReleaseNoteCreation.Metrics()));
+
+    try {
+      // Act
+      Throwable thrown = catchThrowable(sut::getProjectId);
+
+      // Assert
+      assertThat(thrown)
+          .isInstanceOf(ReleaseNoteCreation.RetryableException.class)
+          .hasMessageContaining("status: 502");
+      assertThat(requests.get()).isEqualTo(3);
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void httpGitHubContext_recordedResponses_replayedWithoutServer(@TempDir Path directory)
+      throws Exception {
+    // Arrange
+    Path file = directory.resolve("fixtures.jsonl.gz");
+    AtomicInteger requests = new AtomicInteger();
+    HttpServer server =
+        startStubServer(
+            (method, path, body) -> {
+              requests.incrementAndGet();
+              return "{\"data\":{\"repository\":{\"pr1\":{\"number\":1,\"state\":\"MERGED\","
+                  + "\"updatedAt\":\"2023-10-01T00:00:00Z\",\"body\":\"## Release notes\\nText.\","
+                  + "\"labels\":{\"nodes\":[{\"name\":\"bugfix\"}]}}}}}";
+            });
+    ReleaseNoteCreation.GitHubFixtures recording = ReleaseNoteCreation.GitHubFixtures.record(file);
+    ReleaseNoteCreation.HttpGitHubContext recorder = httpGhContext(server);
+    recorder.setFixtures(recording);
+    try {
+      recorder.fetchPullRequests(List.of("1"));
+    } finally {
+      server.stop(0);
+    }
+    recording.save();
+    ReleaseNoteCreation.HttpGitHubContext sut = httpGhContext(server);
+
+    // Act
+    sut.setFixtures(ReleaseNoteCreation.GitHubFixtures.replay(file, 0));
+    sut.fetchPullRequests(List.of("1"));
+
+    // Assert
+    assertThat(requests.get()).isEqualTo(1);
+    assertThat(sut.isPullRequestMerged("1")).isTrue();
+    assertThat(sut.getCategoryFromPullRequest("1")).isEqualTo(ReleaseNoteCreation.Category.BUGFIX);
+    assertThat(sut.getPullRequestBody("1").lines()).containsExactly("## Release notes", "Text.");
+    assertThat(catchThrowable(() -> sut.getPullRequestBody("2")))
+        .hasMessageContaining("No response is recorded");
+  }
+
+  @Test
+  void runSubProcessAndGetOutputAsReader_recordedOutputs_replayedInRecordedOrder(
+      @TempDir Path directory) throws Exception {
+    // Arrange
+    Path file = directory.resolve("fixtures.jsonl.gz");
+    Path counter = directory.resolve("counter");
+    String command = "echo x >> " + counter + "; wc -l < " + counter;
+    ReleaseNoteCreation.GitHubFixtures recording = ReleaseNoteCreation.GitHubFixtures.record(file);
+    ReleaseNoteCreation.GitHubContext recorder =
+        new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0", "scalardb");
+    recorder.setFixtures(recording);
+    for (int i = 0; i < 2; i++) {
+      try (BufferedReader br = recorder.runSubProcessAndGetOutputAsReader(command)) {
+        br.lines().count();
+      }
+    }
+    recording.save();
+    ReleaseNoteCreation.GitHubContext sut =
+        new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0", "scalardb");
+    sut.setFixtures(ReleaseNoteCreation.GitHubFixtures.replay(file, 0));
+
+    // Act
+    List<String> outputs = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      try (BufferedReader br = sut.runSubProcessAndGetOutputAsReader(command)) {
+        outputs.add(br.readLine().trim());
+      }
+    }
+
+    // Assert
+    // The last output is repeated, and the command isn't executed again
+    assertThat(outputs).containsExactly("1", "2", "2");
+    assertThat(Files.readAllLines(counter)).hasSize(2);
+  }
+
+  @Test
+  void runSubProcessAndGetOutputAsReader_rateLimitedByGitHub_failedWithRetryableException()
+      throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext sut =
+        new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0", "scalardb");
+
+    // Act
+    Throwable thrown;
+    try (BufferedReader br =
+        sut.runSubProcessAndGetOutputAsReader(
+            "echo partial; echo 'gh: API rate limit exceeded (HTTP 403)' >&2; exit 1")) {
+      thrown = catchThrowable(() -> br.lines().count());
+    }
+
+    // Assert
+    assertThat(thrown).hasCauseInstanceOf(ReleaseNoteCreation.RetryableException.class);
+    assertThat(((ReleaseNoteCreation.RetryableException) thrown.getCause()).throttled).isTrue();
+  }
+
+  @Test
+  void runSubProcessAndGetOutputAsReader_largeOutputAndStderr_streamedWithoutBlocking()
+      throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext sut =
+        new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0", "scalardb");
+    String command =
+        "head -c 1000000 /dev/zero | tr '\\0' 'e' >&2; "
+            + "for i in $(seq 1 20000); do echo \"line $i\"; done";
+
+    // Act
+    long lines;
+    try (BufferedReader br = sut.runSubProcessAndGetOutputAsReader(command)) {
+      lines = br.lines().count();
+    }
+
+    // Assert
+    assertThat(lines).isEqualTo(20000);
+  }
+
+  @Test
+  void runSubProcessAndGetOutputAsReader_processHangs_killedAtTimeout() throws Exception {
+    // Arrange
+    ReleaseNoteCreation.GitHubContext sut =
+        new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0", "scalardb");
+    sut.setProcessTimeOutInSec(1);
+    long start = System.nanoTime();
+
+    // Act
+    Throwable thrown =
+        catchThrowable(
+            () -> {
+              try (BufferedReader br = sut.runSubProcessAndGetOutputAsReader("echo a; sleep 30")) {
+                br.lines().count();
+              }
+            });
+
+    // Assert
+    assertThat(thrown).hasRootCauseInstanceOf(IOException.class).hasMessageContaining("timeout");
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(10));
+  }
+
+  @Test
+  void json_writtenValue_parsedToSameValue() {
+    // Arrange
+    Map<String, Object> value = new LinkedHashMap<>();
+    value.put("text", "a \"quoted\"\ttext\n\u3042");
+    value.put("number", 123L);
+    value.put("list", List.of(true, false, 1.5));
+    value.put("null", null);
+
+    // Act
+    Object parsed = ReleaseNoteCreation.Json.parse(ReleaseNoteCreation.Json.write(value));
+
+    // Assert
+    assertThat(parsed).isEqualTo(value);
+  }
+
   static Stream<Arguments> extractReleaseNoteInfo_normalText_addedCorrectCategory() {
     return Stream.of(
         arguments(
@@ -247,6 +1718,42 @@ public class ReleaseNoteCreationTest {
             ReleaseNoteCreation.Category.MISCELLANEOUS, "a release note text in miscellaneous"));
   }
 
+  /** Parses the release note section with the regular expressions which were used before. */
+  static ReleaseNoteCreation.ReleaseNoteSection parseWithRegularExpressions(String body)
+      throws IOException {
+    Pattern releaseNoteText = Pattern.compile("^ *-? *(\\p{Print}+)$");
+    Pattern sameAsText = Pattern.compile("^ *-? *[Ss]ame ?[Aa]s +#?([0-9]+) *$");
+    BufferedReader br = new BufferedReader(new StringReader(body));
+    String line;
+    boolean found = false;
+    while ((line = br.readLine()) != null) {
+      if (Pattern.matches("^## *[Rr]elease *[Nn]otes? *", line)) {
+        found = true;
+        break;
+      }
+    }
+
+    String text = null;
+    List<String> sameAsPrNumbers = new ArrayList<>();
+    while ((line = br.readLine()) != null) {
+      if (Pattern.matches("^## *.*", line)) break;
+      if (Pattern.matches("^ *-? *N/?A *$", line)) {
+        return new ReleaseNoteCreation.ReleaseNoteSection(
+            ReleaseNoteCreation.ReleaseNoteSection.Kind.NOT_APPLICABLE, text, sameAsPrNumbers);
+      }
+      Matcher textMatcher = releaseNoteText.matcher(line);
+      Matcher sameAsMatcher = sameAsText.matcher(line);
+      if (sameAsMatcher.matches()) sameAsPrNumbers.add(sameAsMatcher.group(1));
+      else if (textMatcher.matches()) text = textMatcher.group(1);
+    }
+    return new ReleaseNoteCreation.ReleaseNoteSection(
+        found
+            ? ReleaseNoteCreation.ReleaseNoteSection.Kind.FOUND
+            : ReleaseNoteCreation.ReleaseNoteSection.Kind.MISSING,
+        text,
+        sameAsPrNumbers);
+  }
+
   ReleaseNoteCreation.GitHubContext mockedGhContext(
       ReleaseNoteCreation.Category category, String rnText) throws Exception {
     ReleaseNoteCreation.GitHubContext ghContextMock = mock(ReleaseNoteCreation.GitHubContext.class);
@@ -267,6 +1774,286 @@ public class ReleaseNoteCreationTest {
     when(mock.getPullRequestBody(prNumber)).thenReturn(normalPullRequestBody(rnText));
   }
 
+  /** Returns a mocked GitHubContext which responds slower for earlier PRs. */
+  ReleaseNoteCreation.GitHubContext slowGhContext(List<String> prNumbers) throws Exception {
+    ReleaseNoteCreation.GitHubContext ghContextMock = mock(ReleaseNoteCreation.GitHubContext.class);
+    ReleaseNoteCreation.Category[] categories = ReleaseNoteCreation.Category.values();
+    for (int i = 0; i < prNumbers.size(); i++) {
+      String prNumber = prNumbers.get(i);
+      long delayInMillis = (prNumbers.size() - i) * 10L;
+      String rnText = i % 3 == 2 ? "Same as #" + prNumbers.get(i - 1) : "A text of PR " + prNumber;
+      when(ghContextMock.isPullRequestMerged(prNumber))
+          .thenAnswer(
+              invocation -> {
+                Thread.sleep(delayInMillis);
+                return true;
+              });
+      when(ghContextMock.getCategoryFromPullRequest(prNumber))
+          .thenReturn(categories[i % categories.length]);
+      when(ghContextMock.getPullRequestBody(prNumber)).thenReturn(normalPullRequestBody(rnText));
+    }
+    return ghContextMock;
+  }
+
+  /** Returns a mocked GitHubContext whose PRs have the given texts, which are all merged. */
+  ReleaseNoteCreation.GitHubContext snapshotGhContext(
+      Map<String, String> texts, Map<String, String> updatedAts) throws Exception {
+    ReleaseNoteCreation.GitHubContext ghContextMock = mock(ReleaseNoteCreation.GitHubContext.class);
+    when(ghContextMock.fetchUpdatedAts(anyList(), any())).thenReturn(updatedAts);
+    for (Map.Entry<String, String> entry : texts.entrySet()) {
+      when(ghContextMock.isPullRequestMerged(entry.getKey())).thenReturn(true);
+      when(ghContextMock.getCategoryFromPullRequest(entry.getKey()))
+          .thenReturn(ReleaseNoteCreation.Category.ENHANCEMENT);
+      when(ghContextMock.getPullRequestBody(entry.getKey()))
+          .thenAnswer(invocation -> normalPullRequestBody(entry.getValue()));
+    }
+    return ghContextMock;
+  }
+
+  Map<String, String> updatedAts(Map<String, String> texts) {
+    Map<String, String> updatedAts = new LinkedHashMap<>();
+    for (String prNumber : texts.keySet()) updatedAts.put(prNumber, UPDATED_AT);
+    return updatedAts;
+  }
+
+  HttpResponse<String> postEvent(
+      HttpClient client, ReleaseNoteCreation.ReleaseNoteDaemon daemon, String payload)
+      throws Exception {
+    return client.send(
+        HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + daemon.getAddress().getPort() + "/events"))
+            .POST(HttpRequest.BodyPublishers.ofString(payload))
+            .build(),
+        HttpResponse.BodyHandlers.ofString());
+  }
+
+  String captureReleaseNote(ReleaseNoteCreation sut) {
+    PrintStream original = System.out;
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(baos, false, StandardCharsets.UTF_8));
+    try {
+      sut.assortSameAsItems();
+      sut.outputReleaseNote();
+    } finally {
+      System.setOut(original);
+    }
+    return baos.toString(StandardCharsets.UTF_8);
+  }
+
+  ReleaseNoteCreation.GitHubContext cachedGhContext(Path cacheDir) {
+    ReleaseNoteCreation.GitHubContext ghContext =
+        spy(new ReleaseNoteCreation.GitHubContext("owner", "ScalarDB", "4.0.0", "scalardb"));
+    ghContext.setCache(new ReleaseNoteCreation.PullRequestCache(cacheDir, 100));
+    return ghContext;
+  }
+
+  void git(Path directory, String... args) throws Exception {
+    List<String> command = new ArrayList<>(List.of("git", "-C", directory.toString()));
+    command.addAll(List.of(args));
+    ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+    for (String role : List.of("AUTHOR", "COMMITTER")) {
+      builder.environment().put("GIT_" + role + "_NAME", "test");
+      builder.environment().put("GIT_" + role + "_EMAIL", "test@example.com");
+    }
+    Process p = builder.start();
+    String output = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    assertThat(p.waitFor()).as(output).isZero();
+  }
+
+  void commit(Path directory, String message) throws Exception {
+    git(directory, "commit", "-q", "--allow-empty", "-m", message);
+  }
+
+  void setLastModifiedTime(Path file, long millis) {
+    try {
+      Files.setLastModifiedTime(file, FileTime.fromMillis(millis));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  interface StubHandler {
+    String handle(String method, String path, String body);
+  }
+
+  HttpServer startStubServer(StubHandler handler) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          String body =
+              new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+          byte[] response =
+              handler
+                  .handle(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), body)
+                  .getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, response.length);
+          try (OutputStream os = exchange.getResponseBody()) {
+            os.write(response);
+          }
+        });
+    server.start();
+    return server;
+  }
+
+  /**
+   * Starts a stub server of the project "ScalarDB 4.0.0" whose items are the given PRs of scalardb
+   * with their updatedAt. PR 4 isn't merged. The release note of each PR tells its updatedAt, and
+   * the rest of its body is long so that the bytes read are mostly of the bodies. The numbers of
+   * the PRs whose bodies are fetched are added to the list.
+   */
+  HttpServer startProjectStubServer(Map<String, String> updatedAts, List<String> fetchedBodies)
+      throws IOException {
+    Pattern alias = Pattern.compile("pr[0-9]+: pullRequest\\(number: ([0-9]+)\\)");
+    return startStubServer(
+        (method, path, body) -> {
+          if (body.contains("projectsV2(")) {
+            return "{\"data\":{\"repositoryOwner\":{\"projectsV2\":{\"nodes\":["
+                + "{\"number\":4,\"title\":\"ScalarDB 4.0.0\"}],"
+                + "\"pageInfo\":{\"hasNextPage\":false,\"endCursor\":null}}}}}";
+          } else if (body.contains("projectV2(")) {
+            List<String> items = new ArrayList<>();
+            updatedAts.forEach(
+                (number, updatedAt) ->
+                    items.add(
+                        pullRequestItem(
+                            Integer.parseInt(number), "scalardb", state(number), updatedAt)));
+            return "{\"data\":{\"repositoryOwner\":{\"projectV2\":{\"items\":{\"nodes\":["
+                + String.join(",", items)
+                + "],\"pageInfo\":{\"hasNextPage\":false,\"endCursor\":null}}}}}}";
+          }
+          boolean withBodies = body.contains(" body ");
+          List<String> prs = new ArrayList<>();
+          Matcher matcher = alias.matcher(body);
+          while (matcher.find()) {
+            String number = matcher.group(1);
+            String updatedAt = updatedAts.get(number);
+            String pr =
+                "\"pr"
+                    + number
+                    + "\":{\"number\":"
+                    + number
+                    + ",\"state\":\""
+                    + state(number)
+                    + "\",\"updatedAt\":\""
+                    + updatedAt
+                    + "\"";
+            if (withBodies) {
+              fetchedBodies.add(number);
+              String prBody =
+                  "## Release notes\nUpdated at "
+                      + updatedAt
+                      + ".\n\n## Details\n"
+                      + "A long description.\n".repeat(500);
+              pr +=
+                  ",\"body\":"
+                      + ReleaseNoteCreation.Json.quote(prBody)
+                      + ",\"labels\":{\"nodes\":[{\"name\":\"enhancement\"}]}";
+            }
+            prs.add(pr + "}");
+          }
+          return "{\"data\":{\"repository\":{" + String.join(",", prs) + "}}}";
+        });
+  }
+
+  String state(String prNumber) {
+    return "4".equals(prNumber) ? "OPEN" : "MERGED";
+  }
+
+  /** Returns the release note the run writes to the standard output. */
+  String captureCreatedReleaseNote(ReleaseNoteCreation sut) throws Exception {
+    PrintStream original = System.out;
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(baos, false, StandardCharsets.UTF_8));
+    try {
+      sut.createReleaseNote();
+    } finally {
+      System.setOut(original);
+    }
+    return baos.toString(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Starts a stub server which responds with the status and the headers to the first requests, and
+   * then with the body.
+   */
+  HttpServer startThrottlingStubServer(
+      AtomicInteger requests,
+      int throttledRequests,
+      int status,
+      Map<String, String> headers,
+      String body)
+      throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          exchange.getRequestBody().readAllBytes();
+          boolean throttled = requests.getAndIncrement() < throttledRequests;
+          byte[] response =
+              (throttled ? "{\"message\":\"throttled\"}" : body).getBytes(StandardCharsets.UTF_8);
+          if (throttled) headers.forEach(exchange.getResponseHeaders()::add);
+          exchange.sendResponseHeaders(throttled ? status : 200, response.length);
+          try (OutputStream os = exchange.getResponseBody()) {
+            os.write(response);
+          }
+        });
+    server.start();
+    return server;
+  }
+
+  ReleaseNoteCreation.HttpGitHubContext httpGhContext(HttpServer server) {
+    URI url = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    return new ReleaseNoteCreation.HttpGitHubContext(
+        "owner", "ScalarDB", "4.0.0", "scalardb", url, url.resolve("/graphql"), "token");
+  }
+
+  String pullRequestItem(int number, String repository) {
+    return pullRequestItem(number, repository, "MERGED");
+  }
+
+  String pullRequestItem(int number, String repository, String state) {
+    return pullRequestItem(number, repository, state, UPDATED_AT);
+  }
+
+  String pullRequestItem(int number, String repository, String state, String updatedAt) {
+    return "{\"content\":{\"__typename\":\"PullRequest\",\"repository\":{\"name\":\""
+        + repository
+        + "\"},\"number\":"
+        + number
+        + ",\"state\":\""
+        + state
+        + "\",\"updatedAt\":\""
+        + updatedAt
+        + "\"}}";
+  }
+
+  String pullRequestItemWithBody(int number, String repository, String state) {
+    return "{\"content\":{\"__typename\":\"PullRequest\",\"repository\":{\"name\":\""
+        + repository
+        + "\"},\"number\":"
+        + number
+        + ",\"state\":\""
+        + state
+        + "\",\"updatedAt\":\""
+        + UPDATED_AT
+        + "\",\"body\":\"## Release notes\\nText "
+        + number
+        + ".\",\"labels\":{\"nodes\":[{\"name\":\"enhancement\"}]}}}";
+  }
+
+  String pullRequestFields(String number, String state, String body, String... labels) {
+    String encodedBody = Base64.getEncoder().encodeToString(body.getBytes(StandardCharsets.UTF_8));
+    StringBuilder builder =
+        new StringBuilder(number + "\t" + state + "\t" + UPDATED_AT + "\t" + encodedBody);
+    for (String label : labels) builder.append('\t').append(label);
+    return builder.toString();
+  }
+
+  BufferedReader pullRequestFieldsLines(String... lines) {
+    return new BufferedReader(new StringReader(String.join("\n", lines)));
+  }
+
   BufferedReader normalPullRequestBody(String text) {
     String builder = "## Dummy section\n" + "dummy message\n\n" + "## Release note\n" + text + "\n";
     return new BufferedReader(new StringReader(builder));